@@ -0,0 +1,134 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.model.Card;
+import com.knowledgeheroes.model.CardCatalog;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронна обвивка на CardDAO за работа с карти.
+ * 
+ * Всеки метод изпълнява съответния метод на DAO-то чрез {@link AsyncDAO} и
+ * връща CompletableFuture с неговия резултат.
+ */
+public class AsyncCardDAO {
+    private final CardDAO dao;
+    private final AsyncDAO async;
+    
+    /**
+     * Конструктор по подразбиране - използва нов CardDAO и общия изпълнител
+     */
+    public AsyncCardDAO() {
+        this(new CardDAO(), AsyncDAO.getInstance());
+    }
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param dao DAO-то, чиито методи се изпълняват
+     * @param async изпълнител на операциите
+     */
+    public AsyncCardDAO(CardDAO dao, AsyncDAO async) {
+        this.dao = dao;
+        this.async = async;
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#createCard(Card)}
+     */
+    public CompletableFuture<Boolean> createCard(Card card) {
+        return async.supply(() -> dao.createCard(card));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#getCardById(int)}
+     */
+    public CompletableFuture<Card> getCardById(int cardId) {
+        return async.supply(() -> dao.getCardById(cardId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#getAllCards()}
+     */
+    public CompletableFuture<List<Card>> getAllCards() {
+        return async.supply(() -> dao.getAllCards());
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#getCardsByCategory(int)}
+     */
+    public CompletableFuture<List<Card>> getCardsByCategory(int categoryId) {
+        return async.supply(() -> dao.getCardsByCategory(categoryId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#getCardsByRarity(String)}
+     */
+    public CompletableFuture<List<Card>> getCardsByRarity(String rarity) {
+        return async.supply(() -> dao.getCardsByRarity(rarity));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#getCatalog()}
+     */
+    public CompletableFuture<CardCatalog> getCatalog() {
+        return async.supply(() -> dao.getCatalog());
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#updateCard(Card)}
+     */
+    public CompletableFuture<Boolean> updateCard(Card card) {
+        return async.supply(() -> dao.updateCard(card));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#deleteCard(int)}
+     */
+    public CompletableFuture<Boolean> deleteCard(int cardId) {
+        return async.supply(() -> dao.deleteCard(cardId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#addCardToPlayerCollection(int, int)}
+     */
+    public CompletableFuture<Boolean> addCardToPlayerCollection(int playerId, int cardId) {
+        return async.supply(() -> dao.addCardToPlayerCollection(playerId, cardId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#grantCards(int, int[])}
+     */
+    public CompletableFuture<Boolean> grantCards(int playerId, int... cardIds) {
+        return async.supply(() -> dao.grantCards(playerId, cardIds));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#removeCardFromPlayerCollection(int, int)}
+     */
+    public CompletableFuture<Boolean> removeCardFromPlayerCollection(int playerId, int cardId) {
+        return async.supply(() -> dao.removeCardFromPlayerCollection(playerId, cardId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#getPlayerCards(int)}
+     */
+    public CompletableFuture<List<Card>> getPlayerCards(int playerId) {
+        return async.supply(() -> dao.getPlayerCards(playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#playerHasCard(int, int)}
+     */
+    public CompletableFuture<Boolean> playerHasCard(int playerId, int cardId) {
+        return async.supply(() -> dao.playerHasCard(playerId, cardId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link CardDAO#getCardQuantity(int, int)}
+     */
+    public CompletableFuture<Integer> getCardQuantity(int playerId, int cardId) {
+        return async.supply(() -> dao.getCardQuantity(playerId, cardId));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.config.ConnectionPool;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Изпълнител на DAO операции във фонови нишки, който връща CompletableFuture.
+ * 
+ * Използва виртуални нишки, когато JVM ги поддържа (Java 21+), а иначе фиксиран
+ * брой платформени нишки. Едновременно изпълняваните операции са ограничени до
+ * размера на пула от връзки, така че излишните чакат тук, а не в пула.
+ * 
+ * Операциите се изпълняват в други нишки и затова не участват в UnitOfWork
+ * на извикващата нишка. Типизираните фасади (AsyncPlayerDAO, AsyncCardDAO,
+ * AsyncLevelDAO, AsyncLeaderboardDAO, AsyncQuizDAO) използват общия изпълнител.
+ */
+public class AsyncDAO {
+    private static volatile AsyncDAO instance;
+    
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final boolean virtualThreads;
+    
+    /**
+     * Създава изпълнител
+     * 
+     * @param maxConcurrency максимален брой едновременно изпълнявани операции
+     */
+    public AsyncDAO(int maxConcurrency) {
+        int limit = Math.max(1, maxConcurrency);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : newPlatformThreadExecutor(limit);
+        this.permits = new Semaphore(limit);
+    }
+    
+    /**
+     * Връща общия изпълнител, ограничен до размера на общия пул от връзки
+     * 
+     * @return общ изпълнител
+     */
+    public static AsyncDAO getInstance() {
+        AsyncDAO async = instance;
+        if (async == null) {
+            synchronized (AsyncDAO.class) {
+                async = instance;
+                if (async == null) {
+                    async = new AsyncDAO(ConnectionPool.getInstance().getMaxSize());
+                    instance = async;
+                }
+            }
+        }
+        return async;
+    }
+    
+    /**
+     * Изпълнява DAO операция асинхронно
+     * 
+     * @param operation операцията, например () -&gt; playerDAO.getPlayerById(id)
+     * @return future с резултата на операцията
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                return operation.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+    
+    /**
+     * Проверява дали се използват виртуални нишки
+     * 
+     * @return true при виртуални нишки, false при платформени
+     */
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+    
+    /**
+     * Спира приемането на нови операции
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+    
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() чрез reflection, за да се
+     * компилира и работи и на по-стари версии на Java
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    private static ExecutorService newPlatformThreadExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "async-dao-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
\ No newline at end of file
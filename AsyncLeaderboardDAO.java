@@ -0,0 +1,234 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.model.Leaderboard;
+import com.knowledgeheroes.model.LeaderboardEntry;
+import com.knowledgeheroes.model.LeaderboardWindow;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронна обвивка на LeaderboardDAO за работа с класации.
+ * 
+ * Всеки метод изпълнява съответния метод на DAO-то чрез {@link AsyncDAO} и
+ * връща CompletableFuture с неговия резултат.
+ */
+public class AsyncLeaderboardDAO {
+    private final LeaderboardDAO dao;
+    private final AsyncDAO async;
+    
+    /**
+     * Конструктор по подразбиране - използва нов LeaderboardDAO и общия изпълнител
+     */
+    public AsyncLeaderboardDAO() {
+        this(new LeaderboardDAO(), AsyncDAO.getInstance());
+    }
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param dao DAO-то, чиито методи се изпълняват
+     * @param async изпълнител на операциите
+     */
+    public AsyncLeaderboardDAO(LeaderboardDAO dao, AsyncDAO async) {
+        this.dao = dao;
+        this.async = async;
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#createLeaderboard(Leaderboard)}
+     */
+    public CompletableFuture<Boolean> createLeaderboard(Leaderboard leaderboard) {
+        return async.supply(() -> dao.createLeaderboard(leaderboard));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getLeaderboardById(int)}
+     */
+    public CompletableFuture<Leaderboard> getLeaderboardById(int leaderboardId) {
+        return async.supply(() -> dao.getLeaderboardById(leaderboardId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getAllLeaderboards()}
+     */
+    public CompletableFuture<List<Leaderboard>> getAllLeaderboards() {
+        return async.supply(() -> dao.getAllLeaderboards());
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getGlobalLeaderboards()}
+     */
+    public CompletableFuture<List<Leaderboard>> getGlobalLeaderboards() {
+        return async.supply(() -> dao.getGlobalLeaderboards());
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getLeaderboardsByLevelId(int)}
+     */
+    public CompletableFuture<List<Leaderboard>> getLeaderboardsByLevelId(int levelId) {
+        return async.supply(() -> dao.getLeaderboardsByLevelId(levelId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getLeaderboardByCategory(String, int)}
+     */
+    public CompletableFuture<Leaderboard> getLeaderboardByCategory(String category, int levelId) {
+        return async.supply(() -> dao.getLeaderboardByCategory(category, levelId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#updateLeaderboard(Leaderboard)}
+     */
+    public CompletableFuture<Boolean> updateLeaderboard(Leaderboard leaderboard) {
+        return async.supply(() -> dao.updateLeaderboard(leaderboard));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#deleteLeaderboard(int)}
+     */
+    public CompletableFuture<Boolean> deleteLeaderboard(int leaderboardId) {
+        return async.supply(() -> dao.deleteLeaderboard(leaderboardId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#addLeaderboardEntry(int, int, int)}
+     */
+    public CompletableFuture<Boolean> addLeaderboardEntry(int leaderboardId, int playerId, int score) {
+        return async.supply(() -> dao.addLeaderboardEntry(leaderboardId, playerId, score));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#updateLeaderboardEntry(int, int)}
+     */
+    public CompletableFuture<Boolean> updateLeaderboardEntry(int entryId, int score) {
+        return async.supply(() -> dao.updateLeaderboardEntry(entryId, score));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#deleteLeaderboardEntry(int)}
+     */
+    public CompletableFuture<Boolean> deleteLeaderboardEntry(int entryId) {
+        return async.supply(() -> dao.deleteLeaderboardEntry(entryId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#deleteLeaderboardEntries(int)}
+     */
+    public CompletableFuture<Boolean> deleteLeaderboardEntries(int leaderboardId) {
+        return async.supply(() -> dao.deleteLeaderboardEntries(leaderboardId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getTopEntries(int, int)}
+     */
+    public CompletableFuture<List<LeaderboardEntry>> getTopEntries(int leaderboardId, int limit) {
+        return async.supply(() -> dao.getTopEntries(leaderboardId, limit));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getLeaderboardEntries(int)}
+     */
+    public CompletableFuture<List<LeaderboardEntry>> getLeaderboardEntries(int leaderboardId) {
+        return async.supply(() -> dao.getLeaderboardEntries(leaderboardId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getPlayerRank(int, int)}
+     */
+    public CompletableFuture<Integer> getPlayerRank(int leaderboardId, int playerId) {
+        return async.supply(() -> dao.getPlayerRank(leaderboardId, playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getEntriesAroundPlayer(int, int, int)}
+     */
+    public CompletableFuture<List<LeaderboardEntry>> getEntriesAroundPlayer(int leaderboardId, int playerId, int k) {
+        return async.supply(() -> dao.getEntriesAroundPlayer(leaderboardId, playerId, k));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getPlayerScore(int, int)}
+     */
+    public CompletableFuture<Integer> getPlayerScore(int leaderboardId, int playerId) {
+        return async.supply(() -> dao.getPlayerScore(leaderboardId, playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#playerHasEntry(int, int)}
+     */
+    public CompletableFuture<Boolean> playerHasEntry(int leaderboardId, int playerId) {
+        return async.supply(() -> dao.playerHasEntry(leaderboardId, playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#updateOrAddLeaderboardEntry(int, int, int)}
+     */
+    public CompletableFuture<Boolean> updateOrAddLeaderboardEntry(int leaderboardId, int playerId, int score) {
+        return async.supply(() -> dao.updateOrAddLeaderboardEntry(leaderboardId, playerId, score));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#submitScore(int, int, int)}
+     */
+    public CompletableFuture<Boolean> submitScore(int leaderboardId, int playerId, int score) {
+        return async.supply(() -> dao.submitScore(leaderboardId, playerId, score));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#submitWindowScore(int, LeaderboardWindow, int, int)}
+     */
+    public CompletableFuture<Boolean> submitWindowScore(int leaderboardId, LeaderboardWindow window, int playerId, int score) {
+        return async.supply(() -> dao.submitWindowScore(leaderboardId, window, playerId, score));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getWindowTopEntries(int, LeaderboardWindow, int)}
+     */
+    public CompletableFuture<List<LeaderboardEntry>> getWindowTopEntries(int leaderboardId, LeaderboardWindow window, int limit) {
+        return async.supply(() -> dao.getWindowTopEntries(leaderboardId, window, limit));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getPeriodTopEntries(int, LeaderboardWindow, LocalDate, int)}
+     */
+    public CompletableFuture<List<LeaderboardEntry>> getPeriodTopEntries(int leaderboardId, LeaderboardWindow window, LocalDate periodStart, int limit) {
+        return async.supply(() -> dao.getPeriodTopEntries(leaderboardId, window, periodStart, limit));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getWindowPlayerRank(int, LeaderboardWindow, int)}
+     */
+    public CompletableFuture<Integer> getWindowPlayerRank(int leaderboardId, LeaderboardWindow window, int playerId) {
+        return async.supply(() -> dao.getWindowPlayerRank(leaderboardId, window, playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getWindowEntriesAroundPlayer(int, LeaderboardWindow, int, int)}
+     */
+    public CompletableFuture<List<LeaderboardEntry>> getWindowEntriesAroundPlayer(int leaderboardId, LeaderboardWindow window, int playerId, int k) {
+        return async.supply(() -> dao.getWindowEntriesAroundPlayer(leaderboardId, window, playerId, k));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#getWindowPlayerScore(int, LeaderboardWindow, int)}
+     */
+    public CompletableFuture<Integer> getWindowPlayerScore(int leaderboardId, LeaderboardWindow window, int playerId) {
+        return async.supply(() -> dao.getWindowPlayerScore(leaderboardId, window, playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#expireWindowPeriods(LeaderboardWindow, int)}
+     */
+    public CompletableFuture<Integer> expireWindowPeriods(LeaderboardWindow window, int keepPeriods) {
+        return async.supply(() -> dao.expireWindowPeriods(window, keepPeriods));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LeaderboardDAO#loadRankings()}
+     */
+    public CompletableFuture<Boolean> loadRankings() {
+        return async.supply(() -> dao.loadRankings());
+    }
+}
\ No newline at end of file
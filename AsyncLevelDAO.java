@@ -0,0 +1,150 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.dao.LevelDAO.LevelProgress;
+import com.knowledgeheroes.model.Level;
+import com.knowledgeheroes.model.LevelUnlockGraph;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронна обвивка на LevelDAO за работа с нива.
+ * 
+ * Всеки метод изпълнява съответния метод на DAO-то чрез {@link AsyncDAO} и
+ * връща CompletableFuture с неговия резултат.
+ */
+public class AsyncLevelDAO {
+    private final LevelDAO dao;
+    private final AsyncDAO async;
+    
+    /**
+     * Конструктор по подразбиране - използва нов LevelDAO и общия изпълнител
+     */
+    public AsyncLevelDAO() {
+        this(new LevelDAO(), AsyncDAO.getInstance());
+    }
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param dao DAO-то, чиито методи се изпълняват
+     * @param async изпълнител на операциите
+     */
+    public AsyncLevelDAO(LevelDAO dao, AsyncDAO async) {
+        this.dao = dao;
+        this.async = async;
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#createLevel(Level)}
+     */
+    public CompletableFuture<Boolean> createLevel(Level level) {
+        return async.supply(() -> dao.createLevel(level));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#getLevelById(int)}
+     */
+    public CompletableFuture<Level> getLevelById(int levelId) {
+        return async.supply(() -> dao.getLevelById(levelId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#getAllLevels()}
+     */
+    public CompletableFuture<List<Level>> getAllLevels() {
+        return async.supply(() -> dao.getAllLevels());
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#getAllLevels(boolean)}
+     */
+    public CompletableFuture<List<Level>> getAllLevels(boolean withPuzzles) {
+        return async.supply(() -> dao.getAllLevels(withPuzzles));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#updateLevel(Level)}
+     */
+    public CompletableFuture<Boolean> updateLevel(Level level) {
+        return async.supply(() -> dao.updateLevel(level));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#deleteLevel(int)}
+     */
+    public CompletableFuture<Boolean> deleteLevel(int levelId) {
+        return async.supply(() -> dao.deleteLevel(levelId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#getLevelsByDifficulty(String)}
+     */
+    public CompletableFuture<List<Level>> getLevelsByDifficulty(String difficulty) {
+        return async.supply(() -> dao.getLevelsByDifficulty(difficulty));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#getLevelsByDifficulty(String, boolean)}
+     */
+    public CompletableFuture<List<Level>> getLevelsByDifficulty(String difficulty, boolean withPuzzles) {
+        return async.supply(() -> dao.getLevelsByDifficulty(difficulty, withPuzzles));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#savePlayerProgress(int, int, boolean, int, int)}
+     */
+    public CompletableFuture<Boolean> savePlayerProgress(int playerId, int levelId, boolean completed, int stars, int score) {
+        return async.supply(() -> dao.savePlayerProgress(playerId, levelId, completed, stars, score));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#hasPlayerProgress(int, int)}
+     */
+    public CompletableFuture<Boolean> hasPlayerProgress(int playerId, int levelId) {
+        return async.supply(() -> dao.hasPlayerProgress(playerId, levelId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#getPlayerProgress(int, int)}
+     */
+    public CompletableFuture<LevelProgress> getPlayerProgress(int playerId, int levelId) {
+        return async.supply(() -> dao.getPlayerProgress(playerId, levelId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#getAllPlayerProgress(int)}
+     */
+    public CompletableFuture<List<LevelProgress>> getAllPlayerProgress(int playerId) {
+        return async.supply(() -> dao.getAllPlayerProgress(playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#getCompletedLevelIds(int)}
+     */
+    public CompletableFuture<Set<Integer>> getCompletedLevelIds(int playerId) {
+        return async.supply(() -> dao.getCompletedLevelIds(playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#getUnlockedLevelIds(int)}
+     */
+    public CompletableFuture<Set<Integer>> getUnlockedLevelIds(int playerId) {
+        return async.supply(() -> dao.getUnlockedLevelIds(playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#getUnlockGraph()}
+     */
+    public CompletableFuture<LevelUnlockGraph> getUnlockGraph() {
+        return async.supply(() -> dao.getUnlockGraph());
+    }
+    
+    /**
+     * Асинхронен вариант на {@link LevelDAO#deletePlayerProgress(int, int)}
+     */
+    public CompletableFuture<Boolean> deletePlayerProgress(int playerId, int levelId) {
+        return async.supply(() -> dao.deletePlayerProgress(playerId, levelId));
+    }
+}
\ No newline at end of file
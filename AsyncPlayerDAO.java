@@ -0,0 +1,120 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.model.Player;
+import com.knowledgeheroes.model.PlayerPage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронна обвивка на PlayerDAO за работа с играчи.
+ * 
+ * Всеки метод изпълнява съответния метод на DAO-то чрез {@link AsyncDAO} и
+ * връща CompletableFuture с неговия резултат.
+ */
+public class AsyncPlayerDAO {
+    private final PlayerDAO dao;
+    private final AsyncDAO async;
+    
+    /**
+     * Конструктор по подразбиране - използва нов PlayerDAO и общия изпълнител
+     */
+    public AsyncPlayerDAO() {
+        this(new PlayerDAO(), AsyncDAO.getInstance());
+    }
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param dao DAO-то, чиито методи се изпълняват
+     * @param async изпълнител на операциите
+     */
+    public AsyncPlayerDAO(PlayerDAO dao, AsyncDAO async) {
+        this.dao = dao;
+        this.async = async;
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#createPlayer(Player)}
+     */
+    public CompletableFuture<Boolean> createPlayer(Player player) {
+        return async.supply(() -> dao.createPlayer(player));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#getPlayerById(int)}
+     */
+    public CompletableFuture<Player> getPlayerById(int playerId) {
+        return async.supply(() -> dao.getPlayerById(playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#getPlayerByUsername(String)}
+     */
+    public CompletableFuture<Player> getPlayerByUsername(String username) {
+        return async.supply(() -> dao.getPlayerByUsername(username));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#getPlayerByEmail(String)}
+     */
+    public CompletableFuture<Player> getPlayerByEmail(String email) {
+        return async.supply(() -> dao.getPlayerByEmail(email));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#updatePlayer(Player)}
+     */
+    public CompletableFuture<Boolean> updatePlayer(Player player) {
+        return async.supply(() -> dao.updatePlayer(player));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#deletePlayer(int)}
+     */
+    public CompletableFuture<Boolean> deletePlayer(int playerId) {
+        return async.supply(() -> dao.deletePlayer(playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#getAllPlayers()}
+     */
+    public CompletableFuture<List<Player>> getAllPlayers() {
+        return async.supply(() -> dao.getAllPlayers());
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#getPlayersPage(int, int)}
+     */
+    public CompletableFuture<PlayerPage> getPlayersPage(int afterPlayerId, int pageSize) {
+        return async.supply(() -> dao.getPlayersPage(afterPlayerId, pageSize));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#updateLastLogin(int)}
+     */
+    public CompletableFuture<Boolean> updateLastLogin(int playerId) {
+        return async.supply(() -> dao.updateLastLogin(playerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#usernameExists(String)}
+     */
+    public CompletableFuture<Boolean> usernameExists(String username) {
+        return async.supply(() -> dao.usernameExists(username));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#emailExists(String)}
+     */
+    public CompletableFuture<Boolean> emailExists(String email) {
+        return async.supply(() -> dao.emailExists(email));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link PlayerDAO#authenticate(String, String)}
+     */
+    public CompletableFuture<Boolean> authenticate(String username, String password) {
+        return async.supply(() -> dao.authenticate(username, password));
+    }
+}
\ No newline at end of file
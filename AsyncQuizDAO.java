@@ -0,0 +1,213 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.model.Answer;
+import com.knowledgeheroes.model.Question;
+import com.knowledgeheroes.model.Quiz;
+import com.knowledgeheroes.model.QuizSnapshot;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронна обвивка на QuizDAO за работа с куизове, въпроси и отговори.
+ * 
+ * Всеки метод изпълнява съответния метод на DAO-то чрез {@link AsyncDAO} и
+ * връща CompletableFuture с неговия резултат.
+ */
+public class AsyncQuizDAO {
+    private final QuizDAO dao;
+    private final AsyncDAO async;
+    
+    /**
+     * Конструктор по подразбиране - използва нов QuizDAO и общия изпълнител
+     */
+    public AsyncQuizDAO() {
+        this(new QuizDAO(), AsyncDAO.getInstance());
+    }
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param dao DAO-то, чиито методи се изпълняват
+     * @param async изпълнител на операциите
+     */
+    public AsyncQuizDAO(QuizDAO dao, AsyncDAO async) {
+        this.dao = dao;
+        this.async = async;
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#createQuiz(Quiz)}
+     */
+    public CompletableFuture<Boolean> createQuiz(Quiz quiz) {
+        return async.supply(() -> dao.createQuiz(quiz));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getQuizById(int)}
+     */
+    public CompletableFuture<Quiz> getQuizById(int quizId) {
+        return async.supply(() -> dao.getQuizById(quizId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getQuizSnapshot(int)}
+     */
+    public CompletableFuture<QuizSnapshot> getQuizSnapshot(int quizId) {
+        return async.supply(() -> dao.getQuizSnapshot(quizId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getAllQuizzes()}
+     */
+    public CompletableFuture<List<Quiz>> getAllQuizzes() {
+        return async.supply(() -> dao.getAllQuizzes());
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getQuizzesByLevelId(int)}
+     */
+    public CompletableFuture<List<Quiz>> getQuizzesByLevelId(int levelId) {
+        return async.supply(() -> dao.getQuizzesByLevelId(levelId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#updateQuiz(Quiz)}
+     */
+    public CompletableFuture<Boolean> updateQuiz(Quiz quiz) {
+        return async.supply(() -> dao.updateQuiz(quiz));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#deleteQuiz(int)}
+     */
+    public CompletableFuture<Boolean> deleteQuiz(int quizId) {
+        return async.supply(() -> dao.deleteQuiz(quizId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#createQuestion(Question)}
+     */
+    public CompletableFuture<Boolean> createQuestion(Question question) {
+        return async.supply(() -> dao.createQuestion(question));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getQuestionById(int)}
+     */
+    public CompletableFuture<Question> getQuestionById(int questionId) {
+        return async.supply(() -> dao.getQuestionById(questionId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getAllQuestions()}
+     */
+    public CompletableFuture<List<Question>> getAllQuestions() {
+        return async.supply(() -> dao.getAllQuestions());
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getQuestionsByCategory(int)}
+     */
+    public CompletableFuture<List<Question>> getQuestionsByCategory(int categoryId) {
+        return async.supply(() -> dao.getQuestionsByCategory(categoryId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getQuestionsByDifficulty(String)}
+     */
+    public CompletableFuture<List<Question>> getQuestionsByDifficulty(String difficulty) {
+        return async.supply(() -> dao.getQuestionsByDifficulty(difficulty));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#updateQuestion(Question)}
+     */
+    public CompletableFuture<Boolean> updateQuestion(Question question) {
+        return async.supply(() -> dao.updateQuestion(question));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#deleteQuestion(int)}
+     */
+    public CompletableFuture<Boolean> deleteQuestion(int questionId) {
+        return async.supply(() -> dao.deleteQuestion(questionId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#createAnswer(Answer)}
+     */
+    public CompletableFuture<Boolean> createAnswer(Answer answer) {
+        return async.supply(() -> dao.createAnswer(answer));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getAnswerById(int)}
+     */
+    public CompletableFuture<Answer> getAnswerById(int answerId) {
+        return async.supply(() -> dao.getAnswerById(answerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#updateAnswer(Answer)}
+     */
+    public CompletableFuture<Boolean> updateAnswer(Answer answer) {
+        return async.supply(() -> dao.updateAnswer(answer));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#deleteAnswer(int)}
+     */
+    public CompletableFuture<Boolean> deleteAnswer(int answerId) {
+        return async.supply(() -> dao.deleteAnswer(answerId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getQuestionsForQuiz(int)}
+     */
+    public CompletableFuture<List<Question>> getQuestionsForQuiz(int quizId) {
+        return async.supply(() -> dao.getQuestionsForQuiz(quizId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#getAnswersForQuestion(int)}
+     */
+    public CompletableFuture<List<Answer>> getAnswersForQuestion(int questionId) {
+        return async.supply(() -> dao.getAnswersForQuestion(questionId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#linkQuestionToQuiz(int, int, int)}
+     */
+    public CompletableFuture<Boolean> linkQuestionToQuiz(int quizId, int questionId, int order) {
+        return async.supply(() -> dao.linkQuestionToQuiz(quizId, questionId, order));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#unlinkQuestionFromQuiz(int, int)}
+     */
+    public CompletableFuture<Boolean> unlinkQuestionFromQuiz(int quizId, int questionId) {
+        return async.supply(() -> dao.unlinkQuestionFromQuiz(quizId, questionId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#removeQuestionsFromQuiz(int)}
+     */
+    public CompletableFuture<Boolean> removeQuestionsFromQuiz(int quizId) {
+        return async.supply(() -> dao.removeQuestionsFromQuiz(quizId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#removeQuestionFromAllQuizzes(int)}
+     */
+    public CompletableFuture<Boolean> removeQuestionFromAllQuizzes(int questionId) {
+        return async.supply(() -> dao.removeQuestionFromAllQuizzes(questionId));
+    }
+    
+    /**
+     * Асинхронен вариант на {@link QuizDAO#deleteAnswersForQuestion(int)}
+     */
+    public CompletableFuture<Boolean> deleteAnswersForQuestion(int questionId) {
+        return async.supply(() -> dao.deleteAnswersForQuestion(questionId));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.knowledgeheroes.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Неизменим индекс в паметта на всички карти с уменията им.
+ * 
+ * Каталогът се зарежда наведнъж и се подменя изцяло при промяна на картите.
+ * Картите са индексирани по ID, категория и рядкост; всички методи връщат
+ * копия, така че промените по тях не засягат споделения каталог.
+ */
+public final class CardCatalog {
+    private final long version;
+    private final Map<Integer, Card> cardsById;
+    private final Map<Integer, List<Card>> cardsByCategory;
+    private final Map<String, List<Card>> cardsByRarity;
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param cards всички карти с уменията им
+     * @param version версия на каталога
+     */
+    public CardCatalog(List<Card> cards, long version) {
+        this.version = version;
+        
+        Map<Integer, Card> byId = new LinkedHashMap<>();
+        Map<Integer, List<Card>> byCategory = new HashMap<>();
+        Map<String, List<Card>> byRarity = new HashMap<>();
+        
+        for (Card source : cards) {
+            Card card = copy(source);
+            byId.put(card.getCardId(), card);
+            
+            // Карти без категория или рядкост не попадат в съответния индекс
+            if (card.getCategoryId() != 0) {
+                byCategory.computeIfAbsent(card.getCategoryId(), key -> new ArrayList<>()).add(card);
+            }
+            if (card.getRarity() != null) {
+                byRarity.computeIfAbsent(rarityKey(card.getRarity()), key -> new ArrayList<>()).add(card);
+            }
+        }
+        
+        this.cardsById = Collections.unmodifiableMap(byId);
+        this.cardsByCategory = Collections.unmodifiableMap(byCategory);
+        this.cardsByRarity = Collections.unmodifiableMap(byRarity);
+    }
+    
+    /**
+     * Взима карта по ID
+     * 
+     * @param cardId ID на картата
+     * @return копие на картата или null ако не е намерена
+     */
+    public Card getCard(int cardId) {
+        Card card = cardsById.get(cardId);
+        return card != null ? copy(card) : null;
+    }
+    
+    /**
+     * Взима всички карти
+     * 
+     * @return списък с копия на картите
+     */
+    public List<Card> getAllCards() {
+        return copyAll(cardsById.values());
+    }
+    
+    /**
+     * Взима картите от категория
+     * 
+     * @param categoryId ID на категорията
+     * @return списък с копия на картите
+     */
+    public List<Card> getCardsByCategory(int categoryId) {
+        return copyAll(cardsByCategory.getOrDefault(categoryId, Collections.emptyList()));
+    }
+    
+    /**
+     * Взима картите с дадена рядкост (без значение от малки и главни букви)
+     * 
+     * @param rarity рядкост на картите
+     * @return списък с копия на картите
+     */
+    public List<Card> getCardsByRarity(String rarity) {
+        return copyAll(cardsByRarity.getOrDefault(rarityKey(rarity), Collections.emptyList()));
+    }
+    
+    /**
+     * Взима уменията на карта
+     * 
+     * @param cardId ID на картата
+     * @return списък с копия на уменията или празен списък ако картата не е намерена
+     */
+    public List<Ability> getAbilities(int cardId) {
+        Card card = cardsById.get(cardId);
+        return card != null ? copyAbilities(card.getAbilities()) : new ArrayList<>();
+    }
+    
+    /**
+     * Проверява дали картата е в каталога
+     * 
+     * @param cardId ID на картата
+     * @return true ако картата е в каталога
+     */
+    public boolean containsCard(int cardId) {
+        return cardsById.containsKey(cardId);
+    }
+    
+    /**
+     * Връща версията на каталога. Всяка промяна на картите води до нова версия.
+     * 
+     * @return версия на каталога
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Връща броя карти в каталога
+     * 
+     * @return брой карти
+     */
+    public int size() {
+        return cardsById.size();
+    }
+    
+    private static String rarityKey(String rarity) {
+        return rarity != null ? rarity.toLowerCase(Locale.ROOT) : "";
+    }
+    
+    private static List<Card> copyAll(Iterable<Card> cards) {
+        List<Card> result = new ArrayList<>();
+        for (Card card : cards) {
+            result.add(copy(card));
+        }
+        return result;
+    }
+    
+    private static Card copy(Card card) {
+        Card result = new Card(card.getCardId(), card.getName(), card.getDescription(), card.getCategoryId(),
+                               card.getRarity(), card.getImagePath());
+        result.setAbilities(copyAbilities(card.getAbilities()));
+        return result;
+    }
+    
+    private static List<Ability> copyAbilities(List<Ability> abilities) {
+        List<Ability> result = new ArrayList<>();
+        if (abilities != null) {
+            for (Ability ability : abilities) {
+                result.add(new Ability(ability.getAbilityId(), ability.getCardId(), ability.getName(),
+                                       ability.getDescription(), ability.getEffectType(), ability.getEffectValue()));
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public String toString() {
+        return "CardCatalog{" +
+               "version=" + version +
+               ", cards=" + cardsById.size() +
+               '}';
+    }
+}
\ No newline at end of file
@@ -1,26 +1,32 @@
 package com.knowledgeheroes.dao;
 
-import com.knowledgeheroes.config.DatabaseConfig;
+import com.knowledgeheroes.config.ConnectionPool;
+import com.knowledgeheroes.config.UnitOfWork;
 import com.knowledgeheroes.model.Card;
+import com.knowledgeheroes.model.CardCatalog;
 import com.knowledgeheroes.model.Ability;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Data Access Object за работа с карти в базата данни
+ * 
+ * player_cards пази по един запис на карта в колекцията на играч, с уникален ключ
+ * (player_id, card_id), който се въвежда в съществуваща база данни с
+ * migrations/player_cards_unique.sql.
  */
 public class CardDAO {
-    private Connection connection;
-    
-    /**
-     * Конструктор, който инициализира връзката с базата данни
-     */
-    public CardDAO() {
-        this.connection = DatabaseConfig.getConnection();
-    }
+    // Каталог на картите, общ за всички инстанции на DAO-то; зарежда се при първо използване
+    private static final AtomicLong catalogVersion = new AtomicLong();
+    private static final Object catalogLock = new Object();
+    private static volatile CardCatalog catalog;
     
     /**
      * Създава нова карта в базата данни
@@ -31,7 +37,8 @@ public class CardDAO {
     public boolean createCard(Card card) {
         String query = "INSERT INTO cards (name, description, category_id, rarity, image_path) VALUES (?, ?, ?, ?, ?)";
         
-        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             statement.setString(1, card.getName());
             statement.setString(2, card.getDescription());
             
@@ -60,6 +67,7 @@ public class CardDAO {
                             }
                         }
                         
+                        invalidateCatalog();
                         return true;
                     }
                 }
@@ -78,26 +86,8 @@ public class CardDAO {
      * @return Card обект или null ако не е намерен
      */
     public Card getCardById(int cardId) {
-        String query = "SELECT * FROM cards WHERE card_id = ?";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, cardId);
-            
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    Card card = mapResultSetToCard(resultSet);
-                    
-                    // Зареждане на уменията на картата
-                    card.setAbilities(getAbilitiesForCard(cardId));
-                    
-                    return card;
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Грешка при търсене на карта по ID: " + e.getMessage());
-        }
-        
-        return null;
+        CardCatalog current = getCatalog();
+        return current != null ? current.getCard(cardId) : null;
     }
     
     /**
@@ -106,25 +96,8 @@ public class CardDAO {
      * @return списък с Card обекти
      */
     public List<Card> getAllCards() {
-        List<Card> cards = new ArrayList<>();
-        String query = "SELECT * FROM cards";
-        
-        try (Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(query)) {
-            
-            while (resultSet.next()) {
-                Card card = mapResultSetToCard(resultSet);
-                
-                // Зареждане на уменията на картата
-                card.setAbilities(getAbilitiesForCard(card.getCardId()));
-                
-                cards.add(card);
-            }
-        } catch (SQLException e) {
-            System.err.println("Грешка при извличане на всички карти: " + e.getMessage());
-        }
-        
-        return cards;
+        CardCatalog current = getCatalog();
+        return current != null ? current.getAllCards() : new ArrayList<>();
     }
     
     /**
@@ -134,27 +107,8 @@ public class CardDAO {
      * @return списък с Card обекти
      */
     public List<Card> getCardsByCategory(int categoryId) {
-        List<Card> cards = new ArrayList<>();
-        String query = "SELECT * FROM cards WHERE category_id = ?";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, categoryId);
-            
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    Card card = mapResultSetToCard(resultSet);
-                    
-                    // Зареждане на уменията на картата
-                    card.setAbilities(getAbilitiesForCard(card.getCardId()));
-                    
-                    cards.add(card);
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Грешка при извличане на карти по категория: " + e.getMessage());
-        }
-        
-        return cards;
+        CardCatalog current = getCatalog();
+        return current != null ? current.getCardsByCategory(categoryId) : new ArrayList<>();
     }
     
     /**
@@ -164,27 +118,46 @@ public class CardDAO {
      * @return списък с Card обекти
      */
     public List<Card> getCardsByRarity(String rarity) {
-        List<Card> cards = new ArrayList<>();
-        String query = "SELECT * FROM cards WHERE rarity = ?";
+        CardCatalog current = getCatalog();
+        return current != null ? current.getCardsByRarity(rarity) : new ArrayList<>();
+    }
+    
+    /**
+     * Връща каталога с всички карти и уменията им. Каталогът се зарежда от базата
+     * данни с две заявки при първо използване и след всяка промяна на картите.
+     * 
+     * @return каталог на картите или null при грешка
+     */
+    public CardCatalog getCatalog() {
+        CardCatalog current = catalog;
+        if (current != null && current.getVersion() == catalogVersion.get()) {
+            return current;
+        }
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setString(1, rarity);
+        synchronized (catalogLock) {
+            current = catalog;
+            long version = catalogVersion.get();
+            if (current != null && current.getVersion() == version) {
+                return current;
+            }
             
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    Card card = mapResultSetToCard(resultSet);
-                    
-                    // Зареждане на уменията на картата
-                    card.setAbilities(getAbilitiesForCard(card.getCardId()));
-                    
-                    cards.add(card);
-                }
+            CardCatalog loaded = loadCatalog(version);
+            // Каталог, зареден по време на промяна, се използва само за текущата заявка
+            if (loaded != null && catalogVersion.get() == version) {
+                catalog = loaded;
             }
-        } catch (SQLException e) {
-            System.err.println("Грешка при извличане на карти по рядкост: " + e.getMessage());
+            return loaded;
         }
-        
-        return cards;
+    }
+    
+    /**
+     * Маркира каталога като остарял. Следващото четене зарежда нов каталог.
+     */
+    public static void invalidateCatalog() {
+        catalogVersion.incrementAndGet();
+        catalog = null;
+        // Каталог, зареден преди потвърждаването на транзакцията, също е остарял
+        UnitOfWork.afterCompletion(CardDAO::invalidateCatalog);
     }
     
     /**
@@ -196,7 +169,8 @@ public class CardDAO {
     public boolean updateCard(Card card) {
         String query = "UPDATE cards SET name = ?, description = ?, category_id = ?, rarity = ?, image_path = ? WHERE card_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, card.getName());
             statement.setString(2, card.getDescription());
             
@@ -225,6 +199,7 @@ public class CardDAO {
                     }
                 }
                 
+                invalidateCatalog();
                 return true;
             }
             
@@ -242,84 +217,146 @@ public class CardDAO {
      * @return true при успех, false при грешка
      */
     public boolean deleteCard(int cardId) {
-        // Изтриване на уменията на картата
-        deleteAbilitiesForCard(cardId);
-        
-        // Изтриване на картата
-        String query = "DELETE FROM cards WHERE card_id = ?";
+        // Уменията и картата се изтриват в една транзакция
+        return UnitOfWork.execute(() -> {
+            // Изтриване на уменията на картата
+            deleteAbilitiesForCard(cardId);
+            
+            // Изтриване на картата
+            String query = "DELETE FROM cards WHERE card_id = ?";
+            
+            try (Connection connection = ConnectionPool.getInstance().getConnection();
+                 PreparedStatement statement = connection.prepareStatement(query)) {
+                statement.setInt(1, cardId);
+                
+                int affectedRows = statement.executeUpdate();
+                invalidateCatalog();
+                return affectedRows > 0;
+            } catch (SQLException e) {
+                System.err.println("Грешка при изтриване на карта: " + e.getMessage());
+                return false;
+            }
+        });
+    }
+    
+    /**
+     * Добавя карта към колекцията на играч. Операцията е една заявка и е безопасна
+     * при паралелни извиквания. Изисква уникалния ключ (player_id, card_id) в player_cards -
+     * виж migrations/player_cards_unique.sql.
+     * 
+     * @param playerId ID на играча
+     * @param cardId ID на картата
+     * @return true при успех, false при грешка
+     */
+    public boolean addCardToPlayerCollection(int playerId, int cardId) {
+        // Нов запис с количество 1 или увеличаване на количеството на съществуващия
+        String query = "INSERT INTO player_cards (player_id, card_id, quantity, acquisition_date) VALUES (?, ?, 1, ?) " +
+                      "ON DUPLICATE KEY UPDATE quantity = quantity + 1";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, cardId);
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, playerId);
+            statement.setInt(2, cardId);
+            statement.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
             
             int affectedRows = statement.executeUpdate();
             return affectedRows > 0;
         } catch (SQLException e) {
-            System.err.println("Грешка при изтриване на карта: " + e.getMessage());
+            System.err.println("Грешка при добавяне на карта към колекцията на играч: " + e.getMessage());
             return false;
         }
     }
     
     /**
-     * Добавя карта към колекцията на играч
+     * Добавя няколко карти към колекцията на играч (например при отваряне на пакет).
+     * Повтарящите се карти се обединяват, а всички промени се изпращат с една
+     * многоредова заявка - едно обръщение към базата данни, атомарно и без транзакция.
+     * Изисква уникалния ключ (player_id, card_id) - виж migrations/player_cards_unique.sql.
      * 
      * @param playerId ID на играча
-     * @param cardId ID на картата
-     * @return true при успех, false при грешка
+     * @param cardIds ID на картите; една карта може да се среща повече от веднъж
+     * @return true при успех, false при грешка (тогава не се добавя нито една карта)
      */
-    public boolean addCardToPlayerCollection(int playerId, int cardId) {
-        // Проверка дали картата вече съществува в колекцията на играча
-        if (playerHasCard(playerId, cardId)) {
-            // Увеличаване на количеството
-            return incrementCardQuantity(playerId, cardId);
-        } else {
-            // Добавяне на нова карта в колекцията
-            String query = "INSERT INTO player_cards (player_id, card_id, quantity, acquisition_date) VALUES (?, ?, 1, ?)";
-            
-            try (PreparedStatement statement = connection.prepareStatement(query)) {
-                statement.setInt(1, playerId);
-                statement.setInt(2, cardId);
-                statement.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
-                
-                int affectedRows = statement.executeUpdate();
-                return affectedRows > 0;
-            } catch (SQLException e) {
-                System.err.println("Грешка при добавяне на карта към колекцията на играч: " + e.getMessage());
-                return false;
+    public boolean grantCards(int playerId, int... cardIds) {
+        if (cardIds == null || cardIds.length == 0) {
+            return true;
+        }
+        
+        // Обединяване на повтарящите се карти
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (int cardId : cardIds) {
+            quantities.merge(cardId, 1, Integer::sum);
+        }
+        
+        // Добавяното количество на всяка карта се подава като параметър на UPDATE частта
+        // (CASE по card_id) вместо VALUES(quantity), която е остаряла от MySQL 8.0.20
+        StringBuilder rows = new StringBuilder();
+        StringBuilder increments = new StringBuilder();
+        for (int i = 0; i < quantities.size(); i++) {
+            rows.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+            increments.append(" WHEN ? THEN ?");
+        }
+        String query = "INSERT INTO player_cards (player_id, card_id, quantity, acquisition_date) VALUES " + rows +
+                      " ON DUPLICATE KEY UPDATE quantity = quantity + CASE card_id" + increments + " ELSE 0 END";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            int index = 1;
+            for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                statement.setInt(index++, playerId);
+                statement.setInt(index++, entry.getKey());
+                statement.setInt(index++, entry.getValue());
+                statement.setTimestamp(index++, now);
             }
+            for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                statement.setInt(index++, entry.getKey());
+                statement.setInt(index++, entry.getValue());
+            }
+            
+            statement.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Грешка при добавяне на карти към колекцията на играч: " + e.getMessage());
+            return false;
         }
     }
     
     /**
-     * Премахва карта от колекцията на играч
+     * Премахва карта от колекцията на играч. Количеството се намалява, а записът се
+     * изтрива, когато количеството стане 0 - двете заявки са в една транзакция на една
+     * връзка, така че паралелно добавяне на картата не може да попадне между тях.
      * 
      * @param playerId ID на играча
      * @param cardId ID на картата
-     * @return true при успех, false при грешка
+     * @return true при успех, false ако играчът няма картата или при грешка
      */
     public boolean removeCardFromPlayerCollection(int playerId, int cardId) {
-        // Проверка на текущото количество
-        int quantity = getCardQuantity(playerId, cardId);
+        String decrementQuery = "UPDATE player_cards SET quantity = quantity - 1 WHERE player_id = ? AND card_id = ? AND quantity > 0";
+        // Изтрива само изчерпан запис; ако междувременно картата е добавена отново, записът остава
+        String cleanupQuery = "DELETE FROM player_cards WHERE player_id = ? AND card_id = ? AND quantity <= 0";
         
-        if (quantity > 1) {
-            // Намаляване на количеството
-            return decrementCardQuantity(playerId, cardId);
-        } else if (quantity == 1) {
-            // Изтриване на записа
-            String query = "DELETE FROM player_cards WHERE player_id = ? AND card_id = ?";
-            
-            try (PreparedStatement statement = connection.prepareStatement(query)) {
-                statement.setInt(1, playerId);
-                statement.setInt(2, cardId);
+        // Намаленото количество заключва реда до края на транзакцията
+        return UnitOfWork.execute(() -> {
+            try (Connection connection = ConnectionPool.getInstance().getConnection();
+                 PreparedStatement decrementStatement = connection.prepareStatement(decrementQuery);
+                 PreparedStatement cleanupStatement = connection.prepareStatement(cleanupQuery)) {
+                decrementStatement.setInt(1, playerId);
+                decrementStatement.setInt(2, cardId);
                 
-                int affectedRows = statement.executeUpdate();
-                return affectedRows > 0;
+                if (decrementStatement.executeUpdate() == 0) {
+                    return false;
+                }
+                
+                cleanupStatement.setInt(1, playerId);
+                cleanupStatement.setInt(2, cardId);
+                cleanupStatement.executeUpdate();
+                return true;
             } catch (SQLException e) {
                 System.err.println("Грешка при премахване на карта от колекцията на играч: " + e.getMessage());
                 return false;
             }
-        }
-        
-        return false;
+        });
     }
     
     /**
@@ -334,7 +371,10 @@ public class CardDAO {
                       "JOIN player_cards pc ON c.card_id = pc.card_id " +
                       "WHERE pc.player_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            // Каталогът се зарежда през същата връзка, ако още не е в паметта
+            CardCatalog current = getCatalog();
             statement.setInt(1, playerId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -349,8 +389,10 @@ public class CardDAO {
                         card.setAcquisitionDate(acquisitionTimestamp.toLocalDateTime());
                     }
                     
-                    // Зареждане на уменията на картата
-                    card.setAbilities(getAbilitiesForCard(card.getCardId()));
+                    // Уменията се взимат от каталога
+                    if (current != null) {
+                        card.setAbilities(current.getAbilities(card.getCardId()));
+                    }
                     
                     playerCards.add(card);
                 }
@@ -372,7 +414,8 @@ public class CardDAO {
     public boolean playerHasCard(int playerId, int cardId) {
         String query = "SELECT COUNT(*) FROM player_cards WHERE player_id = ? AND card_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, playerId);
             statement.setInt(2, cardId);
             
@@ -398,7 +441,8 @@ public class CardDAO {
     public int getCardQuantity(int playerId, int cardId) {
         String query = "SELECT quantity FROM player_cards WHERE player_id = ? AND card_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, playerId);
             statement.setInt(2, cardId);
             
@@ -414,50 +458,6 @@ public class CardDAO {
         return 0;
     }
     
-    /**
-     * Увеличава количеството на карта в колекцията на играч
-     * 
-     * @param playerId ID на играча
-     * @param cardId ID на картата
-     * @return true при успех, false при грешка
-     */
-    private boolean incrementCardQuantity(int playerId, int cardId) {
-        String query = "UPDATE player_cards SET quantity = quantity + 1 WHERE player_id = ? AND card_id = ?";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, playerId);
-            statement.setInt(2, cardId);
-            
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            System.err.println("Грешка при увеличаване на количество на карта: " + e.getMessage());
-            return false;
-        }
-    }
-    
-    /**
-     * Намалява количеството на карта в колекцията на играч
-     * 
-     * @param playerId ID на играча
-     * @param cardId ID на картата
-     * @return true при успех, false при грешка
-     */
-    private boolean decrementCardQuantity(int playerId, int cardId) {
-        String query = "UPDATE player_cards SET quantity = quantity - 1 WHERE player_id = ? AND card_id = ? AND quantity > 0";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, playerId);
-            statement.setInt(2, cardId);
-            
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            System.err.println("Грешка при намаляване на количество на карта: " + e.getMessage());
-            return false;
-        }
-    }
-    
     /**
      * Съхранява умение за карта
      * 
@@ -467,7 +467,8 @@ public class CardDAO {
     private boolean saveAbility(Ability ability) {
         String query = "INSERT INTO abilities (card_id, name, description, effect_type, effect_value) VALUES (?, ?, ?, ?, ?)";
         
-        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             statement.setInt(1, ability.getCardId());
             statement.setString(2, ability.getName());
             statement.setString(3, ability.getDescription());
@@ -492,36 +493,40 @@ public class CardDAO {
     }
     
     /**
-     * Взима списък с умения за конкретна карта
+     * Зарежда всички карти и всички умения от базата данни
      * 
-     * @param cardId ID на картата
-     * @return списък с Ability обекти
+     * @param version версия на каталога
+     * @return каталог на картите или null при грешка
      */
-    private List<Ability> getAbilitiesForCard(int cardId) {
-        List<Ability> abilities = new ArrayList<>();
-        String query = "SELECT * FROM abilities WHERE card_id = ?";
+    private CardCatalog loadCatalog(long version) {
+        Map<Integer, Card> cards = new HashMap<>();
+        List<Card> orderedCards = new ArrayList<>();
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, cardId);
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM cards ORDER BY card_id")) {
+                while (resultSet.next()) {
+                    Card card = mapResultSetToCard(resultSet);
+                    cards.put(card.getCardId(), card);
+                    orderedCards.add(card);
+                }
+            }
             
-            try (ResultSet resultSet = statement.executeQuery()) {
+            // Всички умения се зареждат с една заявка и се разпределят по card_id
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM abilities ORDER BY card_id, ability_id")) {
                 while (resultSet.next()) {
-                    Ability ability = new Ability();
-                    ability.setAbilityId(resultSet.getInt("ability_id"));
-                    ability.setCardId(resultSet.getInt("card_id"));
-                    ability.setName(resultSet.getString("name"));
-                    ability.setDescription(resultSet.getString("description"));
-                    ability.setEffectType(resultSet.getString("effect_type"));
-                    ability.setEffectValue(resultSet.getInt("effect_value"));
-                    
-                    abilities.add(ability);
+                    Card card = cards.get(resultSet.getInt("card_id"));
+                    if (card != null) {
+                        card.getAbilities().add(mapResultSetToAbility(resultSet));
+                    }
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Грешка при извличане на умения за карта: " + e.getMessage());
+            System.err.println("Грешка при зареждане на каталога с карти: " + e.getMessage());
+            return null;
         }
         
-        return abilities;
+        return new CardCatalog(orderedCards, version);
     }
     
     /**
@@ -533,7 +538,8 @@ public class CardDAO {
     private boolean deleteAbilitiesForCard(int cardId) {
         String query = "DELETE FROM abilities WHERE card_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, cardId);
             
             statement.executeUpdate();
@@ -561,4 +567,22 @@ public class CardDAO {
         
         return card;
     }
+    
+    /**
+     * Създава Ability обект от ResultSet
+     * 
+     * @param resultSet резултат от заявка
+     * @return Ability обект
+     */
+    private Ability mapResultSetToAbility(ResultSet resultSet) throws SQLException {
+        Ability ability = new Ability();
+        ability.setAbilityId(resultSet.getInt("ability_id"));
+        ability.setCardId(resultSet.getInt("card_id"));
+        ability.setName(resultSet.getString("name"));
+        ability.setDescription(resultSet.getString("description"));
+        ability.setEffectType(resultSet.getString("effect_type"));
+        ability.setEffectValue(resultSet.getInt("effect_value"));
+        
+        return ability;
+    }
 }
\ No newline at end of file
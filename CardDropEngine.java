@@ -0,0 +1,266 @@
+package com.knowledgeheroes.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Генератор на случайни карти, претеглени по рядкост.
+ * 
+ * Всяка рядкост (Card.getRarityValue) има тегло, което се разпределя поравно
+ * между картите от тази рядкост в пула. За всеки пул (целия каталог или една
+ * категория) се изгражда alias таблица на Walker, така че всяко теглене е O(1).
+ * Таблиците се изграждат веднъж и се преизграждат само при нова версия на каталога.
+ */
+public class CardDropEngine {
+    /**
+     * Пул с всички карти от каталога
+     */
+    public static final int ALL_CARDS = 0;
+    
+    // Тегла по рядкост: индекс 1 = common ... 5 = legendary; непозната рядкост (0) не пада
+    private static final double[] DEFAULT_RARITY_WEIGHTS = {0, 60, 25, 10, 4, 1};
+    
+    private final double[] rarityWeights;
+    private final Random random;
+    private volatile PoolTables tables = new PoolTables(-1);
+    
+    /**
+     * Конструктор по подразбиране с тегла по подразбиране
+     */
+    public CardDropEngine() {
+        this(DEFAULT_RARITY_WEIGHTS, new Random());
+    }
+    
+    /**
+     * Конструктор с начална стойност за възпроизводими резултати
+     * 
+     * @param seed начална стойност на генератора на случайни числа
+     */
+    public CardDropEngine(long seed) {
+        this(DEFAULT_RARITY_WEIGHTS, new Random(seed));
+    }
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param rarityWeights тегла по стойност на рядкостта (индекс 1 = common ... 5 = legendary)
+     * @param random генератор на случайни числа
+     */
+    public CardDropEngine(double[] rarityWeights, Random random) {
+        this.rarityWeights = rarityWeights.clone();
+        this.random = random;
+    }
+    
+    /**
+     * Изтегля една карта от пул
+     * 
+     * @param catalog каталог на картите
+     * @param categoryId ID на категорията или ALL_CARDS за целия каталог
+     * @return изтеглена карта или null ако в пула няма карти с положително тегло
+     */
+    public Card drawCard(CardCatalog catalog, int categoryId) {
+        return drawCard(catalog, categoryId, random);
+    }
+    
+    /**
+     * Изтегля една карта от пул със зададен генератор на случайни числа
+     * 
+     * @param catalog каталог на картите
+     * @param categoryId ID на категорията или ALL_CARDS за целия каталог
+     * @param random генератор на случайни числа
+     * @return изтеглена карта или null ако в пула няма карти с положително тегло
+     */
+    public Card drawCard(CardCatalog catalog, int categoryId, Random random) {
+        AliasTable table = getTable(catalog, categoryId);
+        if (table == null) {
+            return null;
+        }
+        
+        return catalog.getCard(table.sample(random));
+    }
+    
+    /**
+     * Изтегля няколко карти от пул (картите може да се повтарят)
+     * 
+     * @param catalog каталог на картите
+     * @param categoryId ID на категорията или ALL_CARDS за целия каталог
+     * @param count брой карти
+     * @return списък с изтеглени карти или празен списък ако пулът е празен
+     */
+    public List<Card> drawCards(CardCatalog catalog, int categoryId, int count) {
+        return drawCards(catalog, categoryId, count, random);
+    }
+    
+    /**
+     * Изтегля няколко карти от пул със зададен генератор на случайни числа
+     * 
+     * @param catalog каталог на картите
+     * @param categoryId ID на категорията или ALL_CARDS за целия каталог
+     * @param count брой карти
+     * @param random генератор на случайни числа
+     * @return списък с изтеглени карти или празен списък ако пулът е празен
+     */
+    public List<Card> drawCards(CardCatalog catalog, int categoryId, int count, Random random) {
+        List<Card> cards = new ArrayList<>();
+        AliasTable table = getTable(catalog, categoryId);
+        if (table == null) {
+            return cards;
+        }
+        
+        for (int i = 0; i < count; i++) {
+            cards.add(catalog.getCard(table.sample(random)));
+        }
+        return cards;
+    }
+    
+    /**
+     * Връща вероятността дадена карта да бъде изтеглена от пул
+     * 
+     * @param catalog каталог на картите
+     * @param categoryId ID на категорията или ALL_CARDS за целия каталог
+     * @param cardId ID на картата
+     * @return вероятност между 0 и 1
+     */
+    public double getDropChance(CardCatalog catalog, int categoryId, int cardId) {
+        AliasTable table = getTable(catalog, categoryId);
+        return table != null ? table.probabilityOf(cardId) : 0;
+    }
+    
+    /**
+     * Взима alias таблицата на пул, като я изгражда при нужда
+     */
+    private AliasTable getTable(CardCatalog catalog, int categoryId) {
+        PoolTables current = tables;
+        if (current.catalogVersion != catalog.getVersion()) {
+            // Нова версия на каталога: всички таблици се изграждат наново при нужда
+            current = new PoolTables(catalog.getVersion());
+            tables = current;
+        }
+        
+        AliasTable table = current.byPool.computeIfAbsent(categoryId, key -> buildTable(catalog, key));
+        return table.isEmpty() ? null : table;
+    }
+    
+    private AliasTable buildTable(CardCatalog catalog, int categoryId) {
+        List<Card> pool = categoryId == ALL_CARDS ? catalog.getAllCards() : catalog.getCardsByCategory(categoryId);
+        
+        // Брой карти от всяка рядкост, за да се раздели теглото на рядкостта между тях
+        Map<Integer, Integer> countByRarity = new HashMap<>();
+        for (Card card : pool) {
+            countByRarity.merge(rarityValue(card), 1, Integer::sum);
+        }
+        
+        List<Integer> cardIds = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (Card card : pool) {
+            int rarity = rarityValue(card);
+            double weight = rarity < rarityWeights.length ? rarityWeights[rarity] : 0;
+            if (weight > 0) {
+                cardIds.add(card.getCardId());
+                weights.add(weight / countByRarity.get(rarity));
+            }
+        }
+        
+        return new AliasTable(cardIds, weights);
+    }
+    
+    private static int rarityValue(Card card) {
+        return card.getRarity() != null ? card.getRarityValue() : 0;
+    }
+    
+    /**
+     * Alias таблиците за една версия на каталога
+     */
+    private static final class PoolTables {
+        private final long catalogVersion;
+        private final Map<Integer, AliasTable> byPool = new ConcurrentHashMap<>();
+        
+        private PoolTables(long catalogVersion) {
+            this.catalogVersion = catalogVersion;
+        }
+    }
+    
+    /**
+     * Alias таблица (метод на Walker/Vose) за теглене с тегла за O(1)
+     */
+    private static final class AliasTable {
+        private final int[] cardIds;
+        private final double[] probability;
+        private final int[] alias;
+        private final double[] chance;
+        
+        private AliasTable(List<Integer> ids, List<Double> weights) {
+            int n = ids.size();
+            cardIds = new int[n];
+            probability = new double[n];
+            alias = new int[n];
+            chance = new double[n];
+            
+            double total = 0;
+            for (double weight : weights) {
+                total += weight;
+            }
+            
+            double[] scaled = new double[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallCount = 0;
+            int largeCount = 0;
+            
+            for (int i = 0; i < n; i++) {
+                cardIds[i] = ids.get(i);
+                chance[i] = weights.get(i) / total;
+                scaled[i] = chance[i] * n;
+                if (scaled[i] < 1.0) {
+                    small[smallCount++] = i;
+                } else {
+                    large[largeCount++] = i;
+                }
+            }
+            
+            // Всяка клетка се допълва до 1 с излишъка на клетка с голямо тегло
+            while (smallCount > 0 && largeCount > 0) {
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+                if (scaled[more] < 1.0) {
+                    small[smallCount++] = more;
+                } else {
+                    large[largeCount++] = more;
+                }
+            }
+            
+            // Останалите клетки са пълни (разликите идват от закръгляне)
+            while (largeCount > 0) {
+                probability[large[--largeCount]] = 1.0;
+            }
+            while (smallCount > 0) {
+                probability[small[--smallCount]] = 1.0;
+            }
+        }
+        
+        private boolean isEmpty() {
+            return cardIds.length == 0;
+        }
+        
+        private int sample(Random random) {
+            int column = random.nextInt(cardIds.length);
+            return random.nextDouble() < probability[column] ? cardIds[column] : cardIds[alias[column]];
+        }
+        
+        private double probabilityOf(int cardId) {
+            for (int i = 0; i < cardIds.length; i++) {
+                if (cardIds[i] == cardId) {
+                    return chance[i];
+                }
+            }
+            return 0;
+        }
+    }
+}
\ No newline at end of file
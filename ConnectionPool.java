@@ -0,0 +1,715 @@
+package com.knowledgeheroes.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.SQLTransientConnectionException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничен, нишково-безопасен пул от връзки към базата данни.
+ * 
+ * DAO класовете взимат връзка за всяка операция чрез {@link #getConnection()}
+ * и я връщат в пула с close(). Вложени извиквания в една и съща нишка получават
+ * същата физическа връзка, така че една DAO операция никога не държи повече от
+ * една връзка от пула.
+ */
+public class ConnectionPool {
+    private static volatile ConnectionPool instance;
+    
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final long leakDetectionThresholdMillis;
+    
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> inUse = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Binding> bound = ThreadLocal.withInitial(Binding::new);
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+    
+    // Метрики на пула
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong validationFailureCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    
+    /**
+     * Източник на нови физически връзки към базата данни
+     */
+    public interface ConnectionFactory {
+        /**
+         * Създава нова физическа връзка
+         * 
+         * @return нова връзка към базата данни
+         * @throws SQLException при грешка при свързване
+         */
+        Connection create() throws SQLException;
+    }
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param factory източник на нови физически връзки
+     * @param maxSize максимален брой едновременно отворени връзки
+     * @param acquireTimeoutMillis максимално време за изчакване на свободна връзка
+     * @param validationIntervalMillis след колко време бездействие връзката се проверява преди употреба
+     * @param leakDetectionThresholdMillis след колко време задържане връзката се счита за изтекла (0 за изключено)
+     */
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long acquireTimeoutMillis,
+                          long validationIntervalMillis, long leakDetectionThresholdMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Размерът на пула трябва да бъде поне 1");
+        }
+        
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+        
+        if (leakDetectionThresholdMillis > 0) {
+            this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1000, leakDetectionThresholdMillis / 2);
+            this.housekeeper.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.housekeeper = null;
+        }
+    }
+    
+    /**
+     * Връща общия пул, като го създава при първо извикване.
+     * Настройките се четат от системните свойства knowledgeheroes.db.pool.*
+     * Откриването на изтичане на връзки е изключено по подразбиране, защото
+     * запазва стека на всяко взимане на връзка.
+     * 
+     * @return пул от връзки
+     */
+    public static ConnectionPool getInstance() {
+        ConnectionPool pool = instance;
+        if (pool == null) {
+            synchronized (ConnectionPool.class) {
+                pool = instance;
+                if (pool == null) {
+                    pool = new ConnectionPool(
+                            DatabaseConfig::getConnection,
+                            Integer.getInteger("knowledgeheroes.db.pool.maxSize",
+                                    Runtime.getRuntime().availableProcessors() * 2),
+                            Long.getLong("knowledgeheroes.db.pool.acquireTimeoutMillis", 5000),
+                            Long.getLong("knowledgeheroes.db.pool.validationIntervalMillis", 30000),
+                            Long.getLong("knowledgeheroes.db.pool.leakDetectionThresholdMillis", 0));
+                    instance = pool;
+                }
+            }
+        }
+        return pool;
+    }
+    
+    /**
+     * Заменя общия пул (например за тестова или вградена база данни).
+     * Предишният пул се затваря.
+     * 
+     * @param pool новият пул
+     */
+    public static void setInstance(ConnectionPool pool) {
+        ConnectionPool previous;
+        synchronized (ConnectionPool.class) {
+            previous = instance;
+            instance = pool;
+        }
+        if (previous != null && previous != pool) {
+            previous.close();
+        }
+    }
+    
+    /**
+     * Взима връзка от пула. Връзката трябва да бъде затворена след употреба,
+     * за да се върне в пула. Ако текущата нишка вече държи връзка, се връща
+     * същата физическа връзка.
+     * 
+     * @return връзка към базата данни
+     * @throws SQLException ако пулът е затворен, няма свободна връзка в рамките на времето
+     *                      за изчакване или не може да бъде създадена нова връзка
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Пулът от връзки е затворен");
+        }
+        
+        Binding binding = bound.get();
+        PooledConnection current = binding.connection;
+        if (current != null) {
+            current.holdCount.incrementAndGet();
+            return current.newHandle();
+        }
+        
+        // Изчакването на връзка е част от времето на извикването
+        DaoMetrics.Call call = DaoMetrics.getInstance().begin();
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                endFailed(call);
+                throw new SQLTransientConnectionException(
+                        "Няма свободна връзка в пула след " + acquireTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            endFailed(call);
+            throw new SQLTransientConnectionException("Прекъснато изчакване на връзка от пула", e);
+        }
+        
+        PooledConnection pooled;
+        try {
+            pooled = takeIdleOrCreate();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            endFailed(call);
+            throw e;
+        }
+        
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        acquiredCount.incrementAndGet();
+        
+        pooled.holdCount.set(1);
+        pooled.borrowedAtMillis = System.currentTimeMillis();
+        pooled.borrowTrace = leakDetectionThresholdMillis > 0 ? new Exception("Връзката е взета тук") : null;
+        pooled.leakReported = false;
+        pooled.owner = Thread.currentThread();
+        pooled.binding = binding;
+        pooled.call = call;
+        pooled.errorRecorded = false;
+        binding.connection = pooled;
+        inUse.add(pooled);
+        
+        return pooled.newHandle();
+    }
+    
+    /**
+     * Отчита неуспешно извикване, при което не е взета връзка
+     */
+    private static void endFailed(DaoMetrics.Call call) {
+        if (call != null) {
+            call.onError();
+            call.end();
+        } else {
+            DaoMetrics.getInstance().recordError();
+        }
+    }
+    
+    /**
+     * Взима свободна валидна връзка или създава нова
+     */
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            validationFailureCount.incrementAndGet();
+            destroy(pooled);
+        }
+        
+        Connection physical = factory.create();
+        if (physical == null) {
+            throw new SQLException("Неуспешно създаване на връзка към базата данни");
+        }
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+    
+    /**
+     * Проверява дали свободна връзка може да бъде използвана отново
+     */
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedMillis < validationIntervalMillis) {
+            return true;
+        }
+        
+        try {
+            return pooled.physical.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Освобождава една от връзките, взети от нишката-собственик. Връзката може
+     * да бъде затворена и от друга нишка, затова се освобождава връзването на
+     * собственика, а не на текущата нишка.
+     */
+    private void release(PooledConnection pooled) {
+        if (pooled.holdCount.decrementAndGet() > 0) {
+            return;
+        }
+        
+        DaoMetrics.Call call = pooled.call;
+        pooled.call = null;
+        Binding binding = pooled.binding;
+        pooled.binding = null;
+        if (binding != null && binding.connection == pooled) {
+            binding.connection = null;
+        }
+        inUse.remove(pooled);
+        pooled.owner = null;
+        pooled.borrowTrace = null;
+        pooled.lastUsedMillis = System.currentTimeMillis();
+        
+        try {
+            if (!pooled.broken && !pooled.physical.getAutoCommit()) {
+                // Незавършена транзакция не трябва да остава за следващия потребител
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            pooled.broken = true;
+        }
+        
+        if (pooled.broken || closed) {
+            destroy(pooled);
+        } else {
+            idle.offerFirst(pooled);
+        }
+        permits.release();
+        
+        if (call != null) {
+            call.end();
+        }
+    }
+    
+    /**
+     * Затваря физическата връзка
+     */
+    private void destroy(PooledConnection pooled) {
+        destroyedCount.incrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Грешка при затваряне на връзка: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Докладва връзки, задържани по-дълго от прага за изтичане
+     */
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : inUse) {
+            Exception trace = pooled.borrowTrace;
+            if (!pooled.leakReported && trace != null && now - pooled.borrowedAtMillis > leakDetectionThresholdMillis) {
+                pooled.leakReported = true;
+                leakCount.incrementAndGet();
+                Thread owner = pooled.owner;
+                System.err.println("Възможно изтичане на връзка: задържана " + (now - pooled.borrowedAtMillis)
+                        + " ms от нишка " + (owner != null ? owner.getName() : "?"));
+                trace.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Затваря пула и всички свободни връзки. Заетите връзки се затварят при връщането им.
+     */
+    public void close() {
+        closed = true;
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+        }
+        
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+    
+    /**
+     * Връща максималния размер на пула
+     * 
+     * @return максимален брой връзки
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Връща моментна снимка на метриките на пула
+     * 
+     * @return метрики на пула
+     */
+    public PoolMetrics getMetrics() {
+        return new PoolMetrics(maxSize, inUse.size(), idle.size(), permits.getQueueLength(),
+                acquiredCount.get(), createdCount.get(), destroyedCount.get(), timeoutCount.get(),
+                validationFailureCount.get(), leakCount.get(),
+                TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get()),
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()));
+    }
+    
+    /**
+     * Физическа връзка, управлявана от пула
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        // Връзката може да бъде затворена от друга нишка, затова броячът е атомарен
+        private final AtomicInteger holdCount = new AtomicInteger();
+        private volatile long borrowedAtMillis;
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+        private volatile Exception borrowTrace;
+        private volatile Thread owner;
+        private volatile Binding binding;
+        private volatile boolean leakReported;
+        private volatile boolean broken;
+        private volatile DaoMetrics.Call call;
+        // Грешката на извикване извън извадката се отчита само веднъж
+        private volatile boolean errorRecorded;
+        
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+        
+        /**
+         * Създава нов обект-обвивка, чието close() връща връзката в пула
+         */
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] {Connection.class},
+                    new HandleInvocationHandler(this));
+        }
+    }
+    
+    /**
+     * Връзката, която една нишка държи в момента
+     */
+    private static final class Binding {
+        private volatile PooledConnection connection;
+    }
+    
+    /**
+     * Пренасочва извикванията към физическата връзка, с изключение на close()
+     */
+    private final class HandleInvocationHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean handleClosed;
+        
+        private HandleInvocationHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return handleClosed || pooled.physical.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+            
+            if (handleClosed) {
+                throw new SQLException("Връзката вече е върната в пула");
+            }
+            
+            Object result = invokePhysical(pooled, pooled.physical, method, args);
+            
+            // Заявките се обвиват, за да се отчитат обръщенията и прочетените редове
+            // и да се записват бавните изпълнения
+            DaoMetrics.Call call = pooled.call;
+            if (result instanceof Statement) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                SlowQueryLog.Trace trace = SlowQueryLog.getInstance().trace(sql);
+                if (call != null || trace != null) {
+                    Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                            : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                    return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] {type},
+                            new StatementInvocationHandler(pooled, (Statement) result, call, trace));
+                }
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Извиква метод на физическата връзка или на неин обект и отбелязва грешките
+     */
+    private static Object invokePhysical(PooledConnection pooled, Object target, Method method, Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                DaoMetrics.Call call = pooled.call;
+                if (call != null) {
+                    call.onError();
+                } else if (!pooled.errorRecorded) {
+                    pooled.errorRecorded = true;
+                    DaoMetrics.getInstance().recordError();
+                }
+                // Грешка в единица работа я отменя, дори DAO методът да я е прихванал
+                UnitOfWork.onError();
+                
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && sqlState.startsWith("08")) {
+                    // Грешка във връзката - физическата връзка не се връща в пула
+                    pooled.broken = true;
+                }
+            }
+            throw cause;
+        }
+    }
+    
+    /**
+     * Отчита изпълнените заявки на Statement, взет през пула, и проследява
+     * продължителността им за лога на бавните заявки
+     */
+    private static final class StatementInvocationHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final Statement statement;
+        private final DaoMetrics.Call call;
+        private final SlowQueryLog.Trace trace;
+        
+        private StatementInvocationHandler(PooledConnection pooled, Statement statement, DaoMetrics.Call call,
+                                           SlowQueryLog.Trace trace) {
+            this.pooled = pooled;
+            this.statement = statement;
+            this.call = call;
+            this.trace = trace;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            boolean execute = name.startsWith("execute");
+            if (execute) {
+                if (call != null) {
+                    call.onExecute();
+                }
+                if (trace != null) {
+                    trace.finish(call);
+                    trace.start(args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null);
+                }
+            } else if (trace != null) {
+                traceParameters(name, args);
+            }
+            
+            Object result = invokePhysical(pooled, statement, method, args);
+            
+            if (trace != null && execute) {
+                if (result instanceof Integer || result instanceof Long) {
+                    trace.onUpdateCount(((Number) result).longValue());
+                } else if (result instanceof int[]) {
+                    for (int count : (int[]) result) {
+                        trace.onUpdateCount(count);
+                    }
+                } else if (result instanceof long[]) {
+                    for (long count : (long[]) result) {
+                        trace.onUpdateCount(count);
+                    }
+                }
+            }
+            if (result instanceof ResultSet && (name.equals("executeQuery") || name.equals("getResultSet"))) {
+                return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                        new ResultSetInvocationHandler(pooled, (ResultSet) result, call, trace));
+            }
+            return result;
+        }
+        
+        private void traceParameters(String name, Object[] args) {
+            if (name.equals("close")) {
+                trace.finish(call);
+            } else if (name.equals("clearParameters")) {
+                trace.clearParameters();
+            } else if (name.equals("addBatch")) {
+                trace.addBatch();
+            } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                // setInt(1, x), setString(2, s), setNull(3, Types.INTEGER), ...
+                trace.setParameter((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            }
+        }
+    }
+    
+    /**
+     * Отчита прочетените редове на ResultSet, взет през пула
+     */
+    private static final class ResultSetInvocationHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final ResultSet resultSet;
+        private final DaoMetrics.Call call;
+        private final SlowQueryLog.Trace trace;
+        
+        private ResultSetInvocationHandler(PooledConnection pooled, ResultSet resultSet, DaoMetrics.Call call,
+                                           SlowQueryLog.Trace trace) {
+            this.pooled = pooled;
+            this.resultSet = resultSet;
+            this.call = call;
+            this.trace = trace;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = invokePhysical(pooled, resultSet, method, args);
+            String name = method.getName();
+            if (Boolean.TRUE.equals(result) && name.equals("next")) {
+                if (call != null) {
+                    call.onRow();
+                }
+                if (trace != null) {
+                    trace.onRow();
+                }
+            } else if (trace != null && name.equals("close")) {
+                // Времето на заявката включва прочитането на редовете
+                trace.finish(call);
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Моментна снимка на метриките на пула
+     */
+    public static class PoolMetrics {
+        private final int maxSize;
+        private final int activeConnections;
+        private final int idleConnections;
+        private final int waitingThreads;
+        private final long acquiredCount;
+        private final long createdCount;
+        private final long destroyedCount;
+        private final long timeoutCount;
+        private final long validationFailureCount;
+        private final long leakCount;
+        private final long totalWaitMicros;
+        private final long maxWaitMicros;
+        
+        public PoolMetrics(int maxSize, int activeConnections, int idleConnections, int waitingThreads,
+                           long acquiredCount, long createdCount, long destroyedCount, long timeoutCount,
+                           long validationFailureCount, long leakCount, long totalWaitMicros, long maxWaitMicros) {
+            this.maxSize = maxSize;
+            this.activeConnections = activeConnections;
+            this.idleConnections = idleConnections;
+            this.waitingThreads = waitingThreads;
+            this.acquiredCount = acquiredCount;
+            this.createdCount = createdCount;
+            this.destroyedCount = destroyedCount;
+            this.timeoutCount = timeoutCount;
+            this.validationFailureCount = validationFailureCount;
+            this.leakCount = leakCount;
+            this.totalWaitMicros = totalWaitMicros;
+            this.maxWaitMicros = maxWaitMicros;
+        }
+        
+        public int getMaxSize() {
+            return maxSize;
+        }
+        
+        public int getActiveConnections() {
+            return activeConnections;
+        }
+        
+        public int getIdleConnections() {
+            return idleConnections;
+        }
+        
+        public int getWaitingThreads() {
+            return waitingThreads;
+        }
+        
+        public long getAcquiredCount() {
+            return acquiredCount;
+        }
+        
+        public long getCreatedCount() {
+            return createdCount;
+        }
+        
+        public long getDestroyedCount() {
+            return destroyedCount;
+        }
+        
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+        
+        public long getValidationFailureCount() {
+            return validationFailureCount;
+        }
+        
+        public long getLeakCount() {
+            return leakCount;
+        }
+        
+        public long getTotalWaitMicros() {
+            return totalWaitMicros;
+        }
+        
+        public long getMaxWaitMicros() {
+            return maxWaitMicros;
+        }
+        
+        /**
+         * Връща средното време за изчакване на връзка
+         * 
+         * @return средно време в микросекунди
+         */
+        public long getAverageWaitMicros() {
+            return acquiredCount > 0 ? totalWaitMicros / acquiredCount : 0;
+        }
+        
+        @Override
+        public String toString() {
+            return "PoolMetrics{" +
+                   "active=" + activeConnections +
+                   ", idle=" + idleConnections +
+                   ", max=" + maxSize +
+                   ", waiting=" + waitingThreads +
+                   ", acquired=" + acquiredCount +
+                   ", timeouts=" + timeoutCount +
+                   ", leaks=" + leakCount +
+                   '}';
+        }
+    }
+}
\ No newline at end of file
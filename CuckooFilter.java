@@ -0,0 +1,201 @@
+package com.knowledgeheroes.model;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cuckoo филтър за низове: вероятностно множество с поддръжка на изтриване.
+ * 
+ * contains() никога не връща false за добавен низ, но може рядко да върне true
+ * за недобавен (при 16-битови отпечатъци и кофи по 4 - около 0,01%). Изтриване
+ * е позволено само за низове, които са били добавени. Когато таблицата се
+ * напълни, последният изместен отпечатък се пази отделно, за да не се загуби,
+ * и филтърът отказва нови добавяния (isFull()).
+ */
+public class CuckooFilter {
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double LOAD_FACTOR = 0.95;
+    
+    private final short[] table;
+    private final int bucketMask;
+    private int count;
+    
+    // Отпечатък, който не е намерил място при последното добавяне
+    private boolean hasVictim;
+    private int victimIndex;
+    private short victimFingerprint;
+    
+    /**
+     * Създава празен филтър
+     * 
+     * @param capacity очакван максимален брой елементи
+     */
+    public CuckooFilter(int capacity) {
+        int buckets = (int) Math.ceil(Math.max(1, capacity) / (BUCKET_SIZE * LOAD_FACTOR));
+        int bucketCount = Integer.highestOneBit(Math.max(2, buckets - 1)) << 1;
+        this.table = new short[bucketCount * BUCKET_SIZE];
+        this.bucketMask = bucketCount - 1;
+    }
+    
+    /**
+     * Добавя низ
+     * 
+     * @param value низ
+     * @return true при успех, false ако филтърът е пълен
+     */
+    public synchronized boolean add(String value) {
+        if (hasVictim) {
+            return false;
+        }
+        
+        long hash = hash(value);
+        short fingerprint = fingerprint(hash);
+        int index = (int) hash & bucketMask;
+        int alternate = alternateIndex(index, fingerprint);
+        if (insertIntoBucket(index, fingerprint) || insertIntoBucket(alternate, fingerprint)) {
+            count++;
+            return true;
+        }
+        
+        // Изместване на случаен отпечатък към другата му кофа
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int current = random.nextBoolean() ? index : alternate;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int slot = current * BUCKET_SIZE + random.nextInt(BUCKET_SIZE);
+            short evicted = table[slot];
+            table[slot] = fingerprint;
+            fingerprint = evicted;
+            current = alternateIndex(current, fingerprint);
+            if (insertIntoBucket(current, fingerprint)) {
+                count++;
+                return true;
+            }
+        }
+        
+        // Таблицата е пълна - изместеният отпечатък се пази, за да няма грешни отговори
+        hasVictim = true;
+        victimIndex = current;
+        victimFingerprint = fingerprint;
+        count++;
+        return true;
+    }
+    
+    /**
+     * Проверява дали низ може да е добавен
+     * 
+     * @param value низ
+     * @return false ако низът със сигурност не е добавен
+     */
+    public synchronized boolean contains(String value) {
+        long hash = hash(value);
+        short fingerprint = fingerprint(hash);
+        int index = (int) hash & bucketMask;
+        int alternate = alternateIndex(index, fingerprint);
+        if (hasVictim && victimFingerprint == fingerprint && (victimIndex == index || victimIndex == alternate)) {
+            return true;
+        }
+        return bucketContains(index, fingerprint) || bucketContains(alternate, fingerprint);
+    }
+    
+    /**
+     * Изтрива добавен низ
+     * 
+     * @param value низ, който е бил добавен
+     * @return true ако е намерен и изтрит
+     */
+    public synchronized boolean remove(String value) {
+        long hash = hash(value);
+        short fingerprint = fingerprint(hash);
+        int index = (int) hash & bucketMask;
+        int alternate = alternateIndex(index, fingerprint);
+        if (hasVictim && victimFingerprint == fingerprint && (victimIndex == index || victimIndex == alternate)) {
+            hasVictim = false;
+            count--;
+            return true;
+        }
+        if (removeFromBucket(index, fingerprint) || removeFromBucket(alternate, fingerprint)) {
+            count--;
+            // Освободеното място позволява на изместения отпечатък да се върне в таблицата
+            if (hasVictim && insertIntoBucket(victimIndex, victimFingerprint)) {
+                hasVictim = false;
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Проверява дали филтърът е пълен и не приема нови низове
+     * 
+     * @return true ако е пълен
+     */
+    public synchronized boolean isFull() {
+        return hasVictim;
+    }
+    
+    public synchronized int size() {
+        return count;
+    }
+    
+    private boolean insertIntoBucket(int bucket, short fingerprint) {
+        int start = bucket * BUCKET_SIZE;
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (table[i] == 0) {
+                table[i] = fingerprint;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean bucketContains(int bucket, short fingerprint) {
+        int start = bucket * BUCKET_SIZE;
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (table[i] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean removeFromBucket(int bucket, short fingerprint) {
+        int start = bucket * BUCKET_SIZE;
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (table[i] == fingerprint) {
+                table[i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Другата възможна кофа; функцията е обратима: alternateIndex(alternateIndex(i, f), f) == i
+     */
+    private int alternateIndex(int index, short fingerprint) {
+        return (index ^ (fingerprint * 0x5BD1E995)) & bucketMask;
+    }
+    
+    /**
+     * 16-битов отпечатък, различен от 0 (0 означава празно място)
+     */
+    private static short fingerprint(long hash) {
+        int fingerprint = (int) (hash >>> 48);
+        return (short) (fingerprint == 0 ? 1 : fingerprint);
+    }
+    
+    /**
+     * 64-битов FNV-1a хеш с допълнително разбъркване на битовете
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
\ No newline at end of file
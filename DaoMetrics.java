@@ -0,0 +1,396 @@
+package com.knowledgeheroes.config;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Timespan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики на DAO методите: време за изпълнение, обръщения към базата данни,
+ * прочетени редове и грешки за всеки метод.
+ * 
+ * Метриките се събират от пула от връзки, без промени в DAO класовете. Едно
+ * извикване обхваща времето от взимането на връзката до връщането й в пула
+ * (вложените взимания в същата нишка са част от него) и се приписва на
+ * най-външния DAO метод в стека. Снимки на метриките са достъпни чрез
+ * {@link #getSnapshot()} и като JFR събития (DaoCall за всяко измерено извикване
+ * и периодично DaoMethodStatistics за всеки метод).
+ * 
+ * Обхождането на стека и отчитането на заявките и редовете струват повече от
+ * самото взимане на връзка, затова се измерва само извадка от извикванията -
+ * средно едно на knowledgeheroes.db.metrics.sampleInterval (по подразбиране 32;
+ * 1 измерва всяко извикване). Броят извиквания, обръщения и редове в снимките е
+ * оценка (всяко измерено извикване се брои за sampleInterval), а средните
+ * стойности и персентилите се изчисляват от извадката. Грешките са редки и се
+ * отчитат точно: всяко неуспешно извикване се брои веднъж, а извън извадката
+ * стекът се обхожда само при грешка.
+ * 
+ * Събирането се изключва със системното свойство knowledgeheroes.db.metrics=false.
+ */
+public class DaoMetrics {
+    private static final String DAO_PACKAGE = "com.knowledgeheroes.dao.";
+    private static final String UNKNOWN_METHOD = "unknown";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    private static final DaoMetrics INSTANCE = new DaoMetrics();
+    
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty("knowledgeheroes.db.metrics"));
+    private volatile int sampleInterval = Math.max(1, Integer.getInteger("knowledgeheroes.db.metrics.sampleInterval", 32));
+    
+    static {
+        FlightRecorder.addPeriodicEvent(StatisticsEvent.class, INSTANCE::emitStatistics);
+    }
+    
+    /**
+     * Връща общите метрики
+     * 
+     * @return метрики на DAO методите
+     */
+    public static DaoMetrics getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Включва или изключва събирането на метрики
+     * 
+     * @param enabled true за включване
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Задава колко често се измерва извикване
+     * 
+     * @param sampleInterval средно едно измерено извикване на толкова (1 измерва всяко)
+     */
+    public void setSampleInterval(int sampleInterval) {
+        this.sampleInterval = Math.max(1, sampleInterval);
+    }
+    
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+    
+    /**
+     * Започва ново извикване, приписано на най-външния DAO метод в стека на текущата нишка
+     * 
+     * @return извикване или null ако метриките са изключени или извикването не попада в извадката
+     */
+    Call begin() {
+        if (!enabled) {
+            return null;
+        }
+        int interval = sampleInterval;
+        if (interval > 1 && ThreadLocalRandom.current().nextInt(interval) != 0) {
+            return null;
+        }
+        return new Call(callerMethod(), interval);
+    }
+    
+    /**
+     * Отчита неуспешно извикване, което не попада в извадката
+     */
+    void recordError() {
+        if (!enabled) {
+            return;
+        }
+        methods.computeIfAbsent(callerMethod(), key -> new MethodMetrics()).errors.increment();
+    }
+    
+    /**
+     * Връща най-външния DAO метод в стека на текущата нишка
+     * 
+     * @return име във формат "КласDAO.метод" или "unknown"
+     */
+    static String callerMethod() {
+        Optional<StackWalker.StackFrame> frame = STACK_WALKER.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(DAO_PACKAGE) && !f.getMethodName().startsWith("lambda$"))
+                .reduce((inner, outer) -> outer));
+        return frame.map(f -> f.getClassName().substring(DAO_PACKAGE.length()) + "." + f.getMethodName())
+                    .orElse(UNKNOWN_METHOD);
+    }
+    
+    /**
+     * Връща моментна снимка на метриките на всички методи, подредени по име
+     * 
+     * @return списък със снимки
+     */
+    public List<MethodSnapshot> getSnapshot() {
+        List<MethodSnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, MethodMetrics> entry : new TreeMap<>(methods).entrySet()) {
+            snapshots.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        return snapshots;
+    }
+    
+    /**
+     * Връща моментна снимка на метриките на един метод
+     * 
+     * @param method име на метода във формат "КласDAO.метод"
+     * @return снимка или null ако методът не е извикван
+     */
+    public MethodSnapshot getSnapshot(String method) {
+        MethodMetrics metrics = methods.get(method);
+        return metrics != null ? metrics.snapshot(method) : null;
+    }
+    
+    /**
+     * Изчиства всички метрики
+     */
+    public void reset() {
+        methods.clear();
+    }
+    
+    private void record(Call call, long nanos) {
+        MethodMetrics metrics = methods.computeIfAbsent(call.method, key -> new MethodMetrics());
+        // Измереното извикване представя weight извиквания
+        long weight = call.weight;
+        metrics.calls.add(weight);
+        metrics.roundTrips.add(call.roundTrips * weight);
+        metrics.rowsRead.add(call.rowsRead * weight);
+        // Грешките не се оценяват - всяко неуспешно извикване се брои веднъж
+        if (call.failed) {
+            metrics.errors.increment();
+        }
+        metrics.latency.record(nanos);
+    }
+    
+    private void emitStatistics() {
+        for (MethodSnapshot snapshot : getSnapshot()) {
+            StatisticsEvent event = new StatisticsEvent();
+            event.method = snapshot.getMethod();
+            event.calls = snapshot.getCalls();
+            event.errors = snapshot.getErrors();
+            event.roundTrips = snapshot.getRoundTrips();
+            event.rowsRead = snapshot.getRowsRead();
+            event.p50 = snapshot.getP50Micros();
+            event.p99 = snapshot.getP99Micros();
+            event.max = snapshot.getMaxMicros();
+            event.commit();
+        }
+    }
+    
+    /**
+     * Едно логическо извикване на DAO метод. Използва се само от нишката, която го е започнала.
+     */
+    static final class Call {
+        private final String method;
+        private final int weight;
+        private final long startNanos = System.nanoTime();
+        private final CallEvent event = new CallEvent();
+        private int roundTrips;
+        private long rowsRead;
+        private boolean failed;
+        
+        private Call(String method, int weight) {
+            this.method = method;
+            this.weight = weight;
+            event.begin();
+        }
+        
+        String getMethod() {
+            return method;
+        }
+        
+        void onExecute() {
+            roundTrips++;
+        }
+        
+        void onRow() {
+            rowsRead++;
+        }
+        
+        void onError() {
+            failed = true;
+        }
+        
+        void end() {
+            INSTANCE.record(this, System.nanoTime() - startNanos);
+            
+            if (event.shouldCommit()) {
+                event.method = method;
+                event.roundTrips = roundTrips;
+                event.rowsRead = rowsRead;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+    
+    private static final class MethodMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder roundTrips = new LongAdder();
+        private final LongAdder rowsRead = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        
+        private MethodSnapshot snapshot(String method) {
+            return new MethodSnapshot(method, calls.sum(), errors.sum(), roundTrips.sum(), rowsRead.sum(),
+                                      latency.snapshot());
+        }
+    }
+    
+    /**
+     * Моментна снимка на метриките на един DAO метод
+     */
+    public static class MethodSnapshot {
+        private final String method;
+        private final long calls;
+        private final long errors;
+        private final long roundTrips;
+        private final long rowsRead;
+        private final LatencyHistogram.Snapshot latency;
+        
+        public MethodSnapshot(String method, long calls, long errors, long roundTrips, long rowsRead,
+                              LatencyHistogram.Snapshot latency) {
+            this.method = method;
+            this.calls = calls;
+            this.errors = errors;
+            this.roundTrips = roundTrips;
+            this.rowsRead = rowsRead;
+            this.latency = latency;
+        }
+        
+        public String getMethod() {
+            return method;
+        }
+        
+        public long getCalls() {
+            return calls;
+        }
+        
+        public long getErrors() {
+            return errors;
+        }
+        
+        public long getRoundTrips() {
+            return roundTrips;
+        }
+        
+        public long getRowsRead() {
+            return rowsRead;
+        }
+        
+        /**
+         * Връща средния брой обръщения към базата данни за едно извикване
+         * 
+         * @return среден брой обръщения
+         */
+        public double getAverageRoundTrips() {
+            return calls > 0 ? (double) roundTrips / calls : 0;
+        }
+        
+        /**
+         * Връща времето за изпълнение при даден персентил
+         * 
+         * @param percentile персентил между 0 и 100
+         * @return време в микросекунди
+         */
+        public long getLatencyMicros(double percentile) {
+            return TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(percentile));
+        }
+        
+        public long getP50Micros() {
+            return getLatencyMicros(50);
+        }
+        
+        public long getP90Micros() {
+            return getLatencyMicros(90);
+        }
+        
+        public long getP99Micros() {
+            return getLatencyMicros(99);
+        }
+        
+        public long getP999Micros() {
+            return getLatencyMicros(99.9);
+        }
+        
+        public long getMaxMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(latency.getMax());
+        }
+        
+        public double getMeanMicros() {
+            return latency.getMean() / 1000.0;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s{calls=%d, errors=%d, roundTrips/call=%.2f, rows=%d, "
+                                 + "p50=%dus, p99=%dus, p99.9=%dus, max=%dus}",
+                                 method, calls, errors, getAverageRoundTrips(), rowsRead,
+                                 getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros());
+        }
+    }
+    
+    @Name("com.knowledgeheroes.DaoCall")
+    @Label("DAO Call")
+    @Category({"Knowledge Heroes", "Database"})
+    @Description("Едно извикване на DAO метод")
+    static class CallEvent extends Event {
+        @Label("Method")
+        String method;
+        
+        @Label("Round Trips")
+        int roundTrips;
+        
+        @Label("Rows Read")
+        long rowsRead;
+        
+        @Label("Failed")
+        boolean failed;
+    }
+    
+    @Name("com.knowledgeheroes.DaoMethodStatistics")
+    @Label("DAO Method Statistics")
+    @Category({"Knowledge Heroes", "Database"})
+    @Description("Натрупани метрики на DAO метод")
+    @Period("60 s")
+    static class StatisticsEvent extends Event {
+        @Label("Method")
+        String method;
+        
+        @Label("Calls")
+        long calls;
+        
+        @Label("Errors")
+        long errors;
+        
+        @Label("Round Trips")
+        long roundTrips;
+        
+        @Label("Rows Read")
+        long rowsRead;
+        
+        @Label("p50")
+        @Timespan(Timespan.MICROSECONDS)
+        long p50;
+        
+        @Label("p99")
+        @Timespan(Timespan.MICROSECONDS)
+        long p99;
+        
+        @Label("Max")
+        @Timespan(Timespan.MICROSECONDS)
+        long max;
+    }
+}
\ No newline at end of file
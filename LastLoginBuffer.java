@@ -0,0 +1,162 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.config.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Буфер за отложен запис на датите на последно влизане.
+ * 
+ * Влизанията само записват датата в паметта (повторните влизания на един играч
+ * се сливат), а фонова нишка ги записва в базата данни с една пакетна заявка
+ * на всеки knowledgeheroes.db.lastLogin.flushIntervalMillis милисекунди (по
+ * подразбиране 5000) или веднага щом чакащите играчи станат
+ * knowledgeheroes.db.lastLogin.maxPending (по подразбиране 500). Чакащите
+ * записи се записват и при спиране на приложението.
+ * 
+ * Буферът пази най-много knowledgeheroes.db.lastLogin.capacity играча (по
+ * подразбиране 10000); докато базата данни не е достъпна, влизанията на нови
+ * играчи над това количество се отказват.
+ */
+class LastLoginBuffer {
+    private static final String UPDATE_QUERY = "UPDATE players SET last_login = ? WHERE player_id = ?";
+    
+    private final Map<Integer, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final Object schedulerLock = new Object();
+    private final long flushIntervalMillis;
+    private final int maxPending;
+    private final int capacity;
+    
+    private final AtomicLong rejectedCount = new AtomicLong();
+    
+    private volatile ScheduledExecutorService scheduler;
+    
+    LastLoginBuffer(long flushIntervalMillis, int maxPending, int capacity) {
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxPending = maxPending;
+        this.capacity = Math.max(maxPending, capacity);
+    }
+    
+    /**
+     * Отбелязва влизане на играч
+     * 
+     * @param playerId ID на играча
+     * @param time дата на влизане
+     * @return true ако влизането е прието за запис, false ако буферът е пълен
+     */
+    boolean record(int playerId, LocalDateTime time) {
+        ScheduledExecutorService executor = ensureScheduler();
+        
+        // Границата е приблизителна - няколко нишки могат да я минат едновременно
+        boolean full = pending.size() >= capacity && !pending.containsKey(playerId);
+        if (!full) {
+            pending.merge(playerId, time, (previous, current) -> current.isAfter(previous) ? current : previous);
+        }
+        
+        if (pending.size() >= maxPending && flushQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+        
+        if (full) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Връща още незаписаната дата на последно влизане на играч
+     * 
+     * @param playerId ID на играча
+     * @return дата или null ако няма чакащ запис
+     */
+    LocalDateTime getPending(int playerId) {
+        return pending.get(playerId);
+    }
+    
+    /**
+     * Премахва чакащия запис на играч (например при изтриване на играча)
+     * 
+     * @param playerId ID на играча
+     */
+    void discard(int playerId) {
+        pending.remove(playerId);
+    }
+    
+    /**
+     * Връща броя влизания, отказани заради пълен буфер
+     * 
+     * @return брой отказани влизания
+     */
+    long getRejectedCount() {
+        return rejectedCount.get();
+    }
+    
+    /**
+     * Записва всички чакащи дати с една пакетна заявка
+     * 
+     * @return true при успех, false при грешка (записите остават за следващия опит)
+     */
+    synchronized boolean flush() {
+        if (pending.isEmpty()) {
+            return true;
+        }
+        
+        Map<Integer, LocalDateTime> batch = new HashMap<>(pending);
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(UPDATE_QUERY)) {
+            for (Map.Entry<Integer, LocalDateTime> entry : batch.entrySet()) {
+                statement.setTimestamp(1, Timestamp.valueOf(entry.getValue()));
+                statement.setInt(2, entry.getKey());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException e) {
+            System.err.println("Грешка при запис на последните влизания: " + e.getMessage());
+            return false;
+        }
+        
+        // По-новите влизания, отбелязани по време на записа, остават за следващия път
+        for (Map.Entry<Integer, LocalDateTime> entry : batch.entrySet()) {
+            pending.remove(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+    
+    private ScheduledExecutorService ensureScheduler() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor == null) {
+            synchronized (schedulerLock) {
+                executor = scheduler;
+                if (executor == null) {
+                    ScheduledThreadPoolExecutor created = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        Thread thread = new Thread(runnable, "last-login-writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    created.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                                                   TimeUnit.MILLISECONDS);
+                    Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "last-login-shutdown"));
+                    scheduler = executor = created;
+                }
+            }
+        }
+        return executor;
+    }
+}
\ No newline at end of file
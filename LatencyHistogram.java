@@ -0,0 +1,151 @@
+package com.knowledgeheroes.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нишково-безопасна хистограма на времена с логаритмично-линейни кофи (в стила на HdrHistogram).
+ * 
+ * Всяка степен на двойката е разделена на 64 равни кофи, така че относителната
+ * грешка на всеки персентил е под 1,6%, а паметта е фиксирана. Записът е
+ * O(1) без заключване; стойностите са в наносекунди.
+ */
+public class LatencyHistogram {
+    // Под 128 всяка стойност има своя кофа; над това - по 64 кофи на степен на двойката
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    // Стойности над 2^40 ns (около 18 минути) се записват в последната кофа
+    private static final int MAX_MAGNITUDE = 40;
+    private static final long MAX_TRACKABLE = (1L << MAX_MAGNITUDE) - 1;
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKET_HALF;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final AtomicLong maxValue = new AtomicLong();
+    
+    /**
+     * Записва стойност
+     * 
+     * @param nanos време в наносекунди
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(Math.min(value, MAX_TRACKABLE)));
+        totalCount.increment();
+        totalValue.add(value);
+        maxValue.accumulateAndGet(value, Math::max);
+    }
+    
+    /**
+     * Връща моментна снимка на хистограмата
+     * 
+     * @return снимка, по която могат да се изчисляват персентили
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalValue.sum(), maxValue.get());
+    }
+    
+    /**
+     * Изчиства всички записи
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalValue.reset();
+        maxValue.set(0);
+    }
+    
+    /**
+     * Връща броя записани стойности
+     * 
+     * @return брой стойности
+     */
+    public long getCount() {
+        return totalCount.sum();
+    }
+    
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        
+        // value >> shift попада в [64, 128): горните 7 бита на стойността
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF + (int) (value >> shift);
+    }
+    
+    /**
+     * Най-голямата стойност, която попада в дадена кофа
+     */
+    private static long highestValueIn(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long lowest = (long) (index - shift * SUB_BUCKET_HALF) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+    
+    /**
+     * Неизменима снимка на хистограма
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+        
+        private Snapshot(long[] counts, long count, long total, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+        
+        /**
+         * Връща стойността, под която попадат дадения процент от записите
+         * 
+         * @param percentile персентил между 0 и 100
+         * @return стойност в наносекунди
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), max);
+                }
+            }
+            return max;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public long getMax() {
+            return max;
+        }
+        
+        public double getMean() {
+            return count > 0 ? (double) total / count : 0;
+        }
+    }
+}
\ No newline at end of file
@@ -15,6 +15,9 @@ public class Leaderboard {
     // Записи в класацията
     private List<LeaderboardEntry> entries;
     
+    // Индекс за търсене на позиция в O(log n); изгражда се отново след промяна на записите
+    private LeaderboardRanking ranking;
+    
     /**
      * Конструктор по подразбиране
      */
@@ -138,6 +141,7 @@ public class Leaderboard {
      */
     public void setEntries(List<LeaderboardEntry> entries) {
         this.entries = entries;
+        this.ranking = null;
     }
     
     /**
@@ -153,8 +157,12 @@ public class Leaderboard {
         entry.setLeaderboardId(this.leaderboardId);
         this.entries.add(entry);
         
-        // Сортиране на записите по резултат (в низходящ ред)
+        // Сортиране на записите в реда на класацията
         sortEntries();
+        
+        if (this.ranking != null) {
+            this.ranking.submit(entry);
+        }
     }
     
     /**
@@ -168,18 +176,21 @@ public class Leaderboard {
             return false;
         }
         
+        this.ranking = null;
         return this.entries.removeIf(entry -> entry.getEntryId() == entryId);
     }
     
     /**
-     * Сортира записите по резултат (в низходящ ред)
+     * Сортира записите в реда на класацията: по резултат (в низходящ ред), после
+     * по дата и по ID на играча - същия ред като в LeaderboardRanking, така че
+     * getTopEntries и позициите на играчите съвпадат при равни резултати
      */
     public void sortEntries() {
         if (this.entries == null || this.entries.size() < 2) {
             return;
         }
         
-        this.entries.sort((e1, e2) -> Integer.compare(e2.getScore(), e1.getScore()));
+        this.entries.sort(LeaderboardRanking::compareEntries);
     }
     
     /**
@@ -225,13 +236,7 @@ public class Leaderboard {
             return -1;
         }
         
-        for (int i = 0; i < entries.size(); i++) {
-            if (entries.get(i).getPlayerId() == playerId) {
-                return i + 1; // Позициите са 1-базирани
-            }
-        }
-        
-        return -1;
+        return getRanking().getPosition(playerId);
     }
     
     /**
@@ -245,13 +250,7 @@ public class Leaderboard {
             return -1;
         }
         
-        for (LeaderboardEntry entry : entries) {
-            if (entry.getPlayerId() == playerId) {
-                return entry.getScore();
-            }
-        }
-        
-        return -1;
+        return getRanking().getScore(playerId);
     }
     
     /**
@@ -269,6 +268,34 @@ public class Leaderboard {
         return entries.subList(0, count);
     }
     
+    /**
+     * Връща записите около играч: до k записа преди него, неговия запис и до k записа след него
+     * 
+     * @param playerId ID на играча
+     * @param k брой съседи от всяка страна
+     * @return списък със записи или празен списък ако играчът не е в класацията
+     */
+    public List<LeaderboardEntry> getEntriesAroundPlayer(int playerId, int k) {
+        if (entries == null || entries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        return getRanking().getEntriesAround(playerId, k);
+    }
+    
+    /**
+     * Връща индекса на класацията, като го изгражда от записите при нужда
+     * 
+     * @return индекс на класацията
+     */
+    private LeaderboardRanking getRanking() {
+        if (ranking == null) {
+            ranking = new LeaderboardRanking(entries);
+        }
+        
+        return ranking;
+    }
+    
     /**
      * Връща описание на категорията на класацията
      * 
@@ -1,29 +1,73 @@
 package com.knowledgeheroes.dao;
 
-import com.knowledgeheroes.config.DatabaseConfig;
+import com.knowledgeheroes.config.ConnectionPool;
+import com.knowledgeheroes.config.UnitOfWork;
 import com.knowledgeheroes.model.Leaderboard;
 import com.knowledgeheroes.model.LeaderboardEntry;
+import com.knowledgeheroes.model.LeaderboardRanking;
+import com.knowledgeheroes.model.LeaderboardWindow;
 import com.knowledgeheroes.model.Player;
+import com.knowledgeheroes.model.ShardedLeaderboardRanking;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Data Access Object за работа с класации в базата данни
+ * 
+ * Резултатите по времеви прозорци (дневни, седмични, сезонни) се пазят отделно
+ * от leaderboard_entries, по един ред на играч за всеки период, в таблицата
+ * leaderboard_period_entries - виж migrations/leaderboard_period_entries.sql.
+ * Новият период започва просто с нов period_start, без изтриване на стари редове.
+ * 
+ * leaderboard_entries пази по един запис на играч в класация, с уникален ключ
+ * (leaderboard_id, player_id), който се въвежда в съществуваща база данни с
+ * migrations/leaderboard_unique_entries.sql.
  */
 public class LeaderboardDAO {
-    private Connection connection;
-    private PlayerDAO playerDAO;
+    // Запазва по-добрия резултат и датата му. Новите резултат, дата и резултат се подават
+    // като параметри вместо VALUES(...), която е остаряла от MySQL 8.0.20; date се
+    // сравнява със стария резултат, затова се присвоява преди score
+    static final String BEST_SCORE_UPDATE = "date = CASE WHEN ? > score THEN ? ELSE date END, " +
+                                            "score = GREATEST(score, ?)";
     
-    /**
-     * Конструктор, който инициализира връзката с базата данни
-     */
-    public LeaderboardDAO() {
-        this.connection = DatabaseConfig.getConnection();
-        this.playerDAO = new PlayerDAO();
-    }
+    // Добавя запис или подобрява съществуващия (виж bindEntryUpsert);
+    // LAST_INSERT_ID(entry_id) връща ID на съществуващия запис като генериран ключ
+    static final String ENTRY_UPSERT_QUERY = "INSERT INTO leaderboard_entries (leaderboard_id, player_id, score, date) " +
+                                             "VALUES (?, ?, ?, ?) " +
+                                             "ON DUPLICATE KEY UPDATE entry_id = LAST_INSERT_ID(entry_id), " +
+                                             BEST_SCORE_UPDATE;
+    
+    // Брой редове, изтривани наведнъж при изтичане на стари периоди
+    private static final int EXPIRE_BATCH_SIZE = 1000;
+    
+    // Класации в паметта по ID на класацията, общи за всички инстанции на DAO-то
+    private static final ConcurrentHashMap<Integer, RankingHolder> rankings = new ConcurrentHashMap<>();
+    
+    // Класации по периоди в паметта - по класация, прозорец и начало на периода
+    private static final ConcurrentHashMap<PeriodKey, RankingHolder> periodRankings = new ConcurrentHashMap<>();
+    
+    // Силно натоварени класации с отложен запис чрез submitScore
+    // (knowledgeheroes.db.leaderboards.sharded - ID на класации, разделени със запетая)
+    private static final Set<Integer> shardedLeaderboards =
+            parseLeaderboardIds(System.getProperty("knowledgeheroes.db.leaderboards.sharded", ""));
+    private static final int SHARD_COUNT = Integer.getInteger("knowledgeheroes.db.leaderboards.shards",
+            Runtime.getRuntime().availableProcessors());
+    private static final int TOP_SIZE = Integer.getInteger("knowledgeheroes.db.leaderboards.topSize", 100);
+    private static final LeaderboardScoreShards scoreShards = new LeaderboardScoreShards(SHARD_COUNT,
+            Long.getLong("knowledgeheroes.db.leaderboards.flushIntervalMillis", 1000),
+            Integer.getInteger("knowledgeheroes.db.leaderboards.maxPending", 1000),
+            Integer.getInteger("knowledgeheroes.db.leaderboards.capacity", 10_000));
+    private static final ConcurrentHashMap<Integer, ShardedHolder> shardedRankings = new ConcurrentHashMap<>();
     
     /**
      * Създава нова класация в базата данни
@@ -34,7 +78,8 @@ public class LeaderboardDAO {
     public boolean createLeaderboard(Leaderboard leaderboard) {
         String query = "INSERT INTO leaderboards (level_id, category, name) VALUES (?, ?, ?)";
         
-        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             if (leaderboard.getLevelId() != 0) {
                 statement.setInt(1, leaderboard.getLevelId());
             } else {
@@ -68,18 +113,36 @@ public class LeaderboardDAO {
      * @return Leaderboard обект или null ако не е намерен
      */
     public Leaderboard getLeaderboardById(int leaderboardId) {
-        String query = "SELECT * FROM leaderboards WHERE leaderboard_id = ?";
+        // Класацията, записите и имената на играчите се зареждат с една заявка
+        String query = "SELECT l.leaderboard_id, l.level_id, l.category, l.name, " +
+                      "le.entry_id, le.player_id, le.score, le.date, p.username " +
+                      "FROM leaderboards l " +
+                      "LEFT JOIN leaderboard_entries le ON le.leaderboard_id = l.leaderboard_id " +
+                      "LEFT JOIN players p ON p.player_id = le.player_id " +
+                      "WHERE l.leaderboard_id = ? ORDER BY le.score DESC, le.date IS NULL, le.date ASC, le.player_id ASC";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, leaderboardId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    Leaderboard leaderboard = mapResultSetToLeaderboard(resultSet);
-                    
-                    // Зареждане на записите в класацията
-                    leaderboard.setEntries(getLeaderboardEntries(leaderboardId));
+                Leaderboard leaderboard = null;
+                List<LeaderboardEntry> entries = new ArrayList<>();
+                
+                while (resultSet.next()) {
+                    if (leaderboard == null) {
+                        leaderboard = mapResultSetToLeaderboard(resultSet);
+                    }
                     
+                    // Класация без записи връща един ред с NULL стойности за записа
+                    resultSet.getInt("entry_id");
+                    if (!resultSet.wasNull()) {
+                        entries.add(mapResultSetToLeaderboardEntry(resultSet));
+                    }
+                }
+                
+                if (leaderboard != null) {
+                    leaderboard.setEntries(entries);
                     return leaderboard;
                 }
             }
@@ -99,7 +162,8 @@ public class LeaderboardDAO {
         List<Leaderboard> leaderboards = new ArrayList<>();
         String query = "SELECT * FROM leaderboards";
         
-        try (Statement statement = connection.createStatement();
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
             
             while (resultSet.next()) {
@@ -122,7 +186,8 @@ public class LeaderboardDAO {
         List<Leaderboard> leaderboards = new ArrayList<>();
         String query = "SELECT * FROM leaderboards WHERE level_id IS NULL";
         
-        try (Statement statement = connection.createStatement();
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
             
             while (resultSet.next()) {
@@ -146,7 +211,8 @@ public class LeaderboardDAO {
         List<Leaderboard> leaderboards = new ArrayList<>();
         String query = "SELECT * FROM leaderboards WHERE level_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, levelId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -171,20 +237,21 @@ public class LeaderboardDAO {
      */
     public Leaderboard getLeaderboardByCategory(String category, int levelId) {
         String query;
-        PreparedStatement statement = null;
         
-        try {
+        if (levelId != 0) {
+            // Класация за конкретно ниво
+            query = "SELECT * FROM leaderboards WHERE category = ? AND level_id = ?";
+        } else {
+            // Глобална класация
+            query = "SELECT * FROM leaderboards WHERE category = ? AND level_id IS NULL";
+        }
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, category);
+            
             if (levelId != 0) {
-                // Класация за конкретно ниво
-                query = "SELECT * FROM leaderboards WHERE category = ? AND level_id = ?";
-                statement = connection.prepareStatement(query);
-                statement.setString(1, category);
                 statement.setInt(2, levelId);
-            } else {
-                // Глобална класация
-                query = "SELECT * FROM leaderboards WHERE category = ? AND level_id IS NULL";
-                statement = connection.prepareStatement(query);
-                statement.setString(1, category);
             }
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -199,14 +266,6 @@ public class LeaderboardDAO {
             }
         } catch (SQLException e) {
             System.err.println("Грешка при търсене на класация по категория: " + e.getMessage());
-        } finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException e) {
-                    System.err.println("Грешка при затваряне на statement: " + e.getMessage());
-                }
-            }
         }
         
         return null;
@@ -221,7 +280,8 @@ public class LeaderboardDAO {
     public boolean updateLeaderboard(Leaderboard leaderboard) {
         String query = "UPDATE leaderboards SET level_id = ?, category = ?, name = ? WHERE leaderboard_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             if (leaderboard.getLevelId() != 0) {
                 statement.setInt(1, leaderboard.getLevelId());
             } else {
@@ -247,25 +307,34 @@ public class LeaderboardDAO {
      * @return true при успех, false при грешка
      */
     public boolean deleteLeaderboard(int leaderboardId) {
-        // Изтриване на записите в класацията
-        deleteLeaderboardEntries(leaderboardId);
-        
-        // Изтриване на класацията
-        String query = "DELETE FROM leaderboards WHERE leaderboard_id = ?";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, leaderboardId);
+        // Записите и класацията се изтриват в една транзакция
+        return UnitOfWork.execute(() -> {
+            // Изтриване на записите в класацията
+            deleteLeaderboardEntries(leaderboardId);
+            deletePeriodEntries(leaderboardId);
             
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            System.err.println("Грешка при изтриване на класация: " + e.getMessage());
-            return false;
-        }
+            // Изтриване на класацията
+            String query = "DELETE FROM leaderboards WHERE leaderboard_id = ?";
+            
+            try (Connection connection = ConnectionPool.getInstance().getConnection();
+                 PreparedStatement statement = connection.prepareStatement(query)) {
+                statement.setInt(1, leaderboardId);
+                
+                int affectedRows = statement.executeUpdate();
+                return affectedRows > 0;
+            } catch (SQLException e) {
+                System.err.println("Грешка при изтриване на класация: " + e.getMessage());
+                return false;
+            }
+        });
     }
     
     /**
-     * Добавя запис в класация
+     * Добавя запис в класация или подобрява съществуващия. Играчът има най-много
+     * един запис в класация: ако вече има запис, не се добавя нов ред, а се запазва
+     * по-добрият от двата резултата (и датата му). Резултат, който не подобрява
+     * текущия, не променя нищо, но също връща true. Изисква уникалния ключ
+     * (leaderboard_id, player_id) - виж migrations/leaderboard_unique_entries.sql.
      * 
      * @param leaderboardId ID на класацията
      * @param playerId ID на играча
@@ -273,24 +342,24 @@ public class LeaderboardDAO {
      * @return true при успех, false при грешка
      */
     public boolean addLeaderboardEntry(int leaderboardId, int playerId, int score) {
-        String query = "INSERT INTO leaderboard_entries (leaderboard_id, player_id, score, date) VALUES (?, ?, ?, ?)";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setInt(1, leaderboardId);
-            statement.setInt(2, playerId);
-            statement.setInt(3, score);
-            statement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(ENTRY_UPSERT_QUERY, Statement.RETURN_GENERATED_KEYS)) {
+            LocalDateTime date = LocalDateTime.now();
+            bindEntryUpsert(statement, leaderboardId, playerId, score, Timestamp.valueOf(date));
             
+            // 0 засегнати реда означава, че съществуващият резултат е по-добър
             int affectedRows = statement.executeUpdate();
             
+            int entryId = 0;
             if (affectedRows > 0) {
                 try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
-                        return true;
+                        entryId = generatedKeys.getInt(1);
                     }
                 }
             }
-            return false;
+            submitToRanking(leaderboardId, entryId, playerId, score, date);
+            return true;
         } catch (SQLException e) {
             System.err.println("Грешка при добавяне на запис в класация: " + e.getMessage());
             return false;
@@ -307,12 +376,23 @@ public class LeaderboardDAO {
     public boolean updateLeaderboardEntry(int entryId, int score) {
         String query = "UPDATE leaderboard_entries SET score = ?, date = ? WHERE entry_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            int leaderboardId = getEntryLeaderboardId(connection, entryId);
+            if (leaderboardId < 0) {
+                return false;
+            }
+            
             statement.setInt(1, score);
             statement.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             statement.setInt(3, entryId);
             
             int affectedRows = statement.executeUpdate();
+            
+            // Резултатът може да намалее - класацията на записа се зарежда отново
+            removeRanking(leaderboardId);
+            UnitOfWork.afterCompletion(() -> removeRanking(leaderboardId));
+            
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Грешка при актуализиране на запис в класация: " + e.getMessage());
@@ -329,10 +409,20 @@ public class LeaderboardDAO {
     public boolean deleteLeaderboardEntry(int entryId) {
         String query = "DELETE FROM leaderboard_entries WHERE entry_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            int leaderboardId = getEntryLeaderboardId(connection, entryId);
+            if (leaderboardId < 0) {
+                return false;
+            }
+            
             statement.setInt(1, entryId);
             
             int affectedRows = statement.executeUpdate();
+            
+            removeRanking(leaderboardId);
+            UnitOfWork.afterCompletion(() -> removeRanking(leaderboardId));
+            
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Грешка при изтриване на запис от класация: " + e.getMessage());
@@ -349,10 +439,16 @@ public class LeaderboardDAO {
     public boolean deleteLeaderboardEntries(int leaderboardId) {
         String query = "DELETE FROM leaderboard_entries WHERE leaderboard_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        // Чакащите резултати се премахват преди изтриването, за да не бъдат записани след него
+        scoreShards.discard(leaderboardId);
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, leaderboardId);
             
             statement.executeUpdate();
+            removeRanking(leaderboardId);
+            UnitOfWork.afterCompletion(() -> removeRanking(leaderboardId));
             return true;
         } catch (SQLException e) {
             System.err.println("Грешка при изтриване на записи от класация: " + e.getMessage());
@@ -368,10 +464,23 @@ public class LeaderboardDAO {
      * @return списък с LeaderboardEntry обекти
      */
     public List<LeaderboardEntry> getTopEntries(int leaderboardId, int limit) {
+        ShardedLeaderboardRanking sharded = getShardedRanking(leaderboardId);
+        if (sharded != null) {
+            return withPlayerNames(sharded, sharded.getTopEntries(limit));
+        }
+        
+        LeaderboardRanking ranking = getRanking(leaderboardId);
+        if (ranking != null) {
+            return ranking.getTopEntries(limit);
+        }
+        
         List<LeaderboardEntry> entries = new ArrayList<>();
-        String query = "SELECT * FROM leaderboard_entries WHERE leaderboard_id = ? ORDER BY score DESC LIMIT ?";
+        String query = "SELECT le.*, p.username FROM leaderboard_entries le " +
+                      "LEFT JOIN players p ON p.player_id = le.player_id " +
+                      "WHERE le.leaderboard_id = ? ORDER BY le.score DESC, le.date IS NULL, le.date ASC, le.player_id ASC LIMIT ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, leaderboardId);
             statement.setInt(2, limit);
             
@@ -396,9 +505,12 @@ public class LeaderboardDAO {
      */
     public List<LeaderboardEntry> getLeaderboardEntries(int leaderboardId) {
         List<LeaderboardEntry> entries = new ArrayList<>();
-        String query = "SELECT * FROM leaderboard_entries WHERE leaderboard_id = ? ORDER BY score DESC";
+        String query = "SELECT le.*, p.username FROM leaderboard_entries le " +
+                      "LEFT JOIN players p ON p.player_id = le.player_id " +
+                      "WHERE le.leaderboard_id = ? ORDER BY le.score DESC, le.date IS NULL, le.date ASC, le.player_id ASC";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, leaderboardId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -422,18 +534,30 @@ public class LeaderboardDAO {
      * @return позиция (1-базирана) или -1 ако играчът не е в класацията
      */
     public int getPlayerRank(int leaderboardId, int playerId) {
-        String query = "SELECT COUNT(*) + 1 AS rank FROM leaderboard_entries " +
-                      "WHERE leaderboard_id = ? AND score > (SELECT score FROM leaderboard_entries " +
-                      "WHERE leaderboard_id = ? AND player_id = ? ORDER BY score DESC LIMIT 1)";
+        ShardedLeaderboardRanking sharded = getShardedRanking(leaderboardId);
+        if (sharded != null) {
+            return sharded.getRank(playerId);
+        }
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        LeaderboardRanking ranking = getRanking(leaderboardId);
+        if (ranking != null) {
+            return ranking.getRank(playerId);
+        }
+        
+        // Рангът се изчислява от реда на играча - без такъв ред няма резултат и методът връща -1
+        String query = "SELECT (SELECT COUNT(*) FROM leaderboard_entries o " +
+                      "WHERE o.leaderboard_id = le.leaderboard_id AND o.score > le.score) + 1 AS player_rank " +
+                      "FROM leaderboard_entries le " +
+                      "WHERE le.leaderboard_id = ? AND le.player_id = ? ORDER BY le.score DESC LIMIT 1";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, leaderboardId);
-            statement.setInt(2, leaderboardId);
-            statement.setInt(3, playerId);
+            statement.setInt(2, playerId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    return resultSet.getInt("rank");
+                    return resultSet.getInt("player_rank");
                 }
             }
         } catch (SQLException e) {
@@ -443,6 +567,31 @@ public class LeaderboardDAO {
         return -1;
     }
     
+    /**
+     * Взима записите около играч в класация: до k записа преди него, неговия
+     * запис и до k записа след него
+     * 
+     * @param leaderboardId ID на класацията
+     * @param playerId ID на играча
+     * @param k брой съседи от всяка страна
+     * @return списък със записи, подредени по резултат, или празен списък ако играчът не е в класацията
+     */
+    public List<LeaderboardEntry> getEntriesAroundPlayer(int leaderboardId, int playerId, int k) {
+        ShardedLeaderboardRanking sharded = getShardedRanking(leaderboardId);
+        if (sharded != null) {
+            return withPlayerNames(sharded, sharded.getEntriesAround(playerId, k));
+        }
+        
+        LeaderboardRanking ranking = getRanking(leaderboardId);
+        if (ranking != null) {
+            return ranking.getEntriesAround(playerId, k);
+        }
+        
+        String select = "SELECT e.*, p.username FROM leaderboard_entries e " +
+                       "LEFT JOIN players p ON p.player_id = e.player_id";
+        return queryEntriesAround(select, "e.leaderboard_id = ?", new Object[] {leaderboardId}, playerId, k);
+    }
+    
     /**
      * Взима резултат на играч в класация
      * 
@@ -451,11 +600,22 @@ public class LeaderboardDAO {
      * @return най-добрият резултат или -1 ако играчът не е в класацията
      */
     public int getPlayerScore(int leaderboardId, int playerId) {
+        ShardedLeaderboardRanking sharded = getShardedRanking(leaderboardId);
+        if (sharded != null) {
+            return sharded.getScore(playerId);
+        }
+        
+        LeaderboardRanking ranking = getRanking(leaderboardId);
+        if (ranking != null) {
+            return ranking.getScore(playerId);
+        }
+        
         String query = "SELECT score FROM leaderboard_entries " +
                       "WHERE leaderboard_id = ? AND player_id = ? " +
                       "ORDER BY score DESC LIMIT 1";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, leaderboardId);
             statement.setInt(2, playerId);
             
@@ -479,9 +639,20 @@ public class LeaderboardDAO {
      * @return true ако има запис, false ако няма
      */
     public boolean playerHasEntry(int leaderboardId, int playerId) {
+        ShardedLeaderboardRanking sharded = getShardedRanking(leaderboardId);
+        if (sharded != null) {
+            return sharded.contains(playerId);
+        }
+        
+        LeaderboardRanking ranking = getRanking(leaderboardId);
+        if (ranking != null) {
+            return ranking.contains(playerId);
+        }
+        
         String query = "SELECT COUNT(*) FROM leaderboard_entries WHERE leaderboard_id = ? AND player_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, leaderboardId);
             statement.setInt(2, playerId);
             
@@ -499,6 +670,8 @@ public class LeaderboardDAO {
     
     /**
      * Добавя или актуализира запис в класация (запазва само най-добрия резултат)
+     * с една заявка - същата като addLeaderboardEntry. Записът винаги е синхронен,
+     * включително за разделените класации (отложен запис е само submitScore).
      * 
      * @param leaderboardId ID на класацията
      * @param playerId ID на играча
@@ -506,83 +679,985 @@ public class LeaderboardDAO {
      * @return true при успех, false при грешка
      */
     public boolean updateOrAddLeaderboardEntry(int leaderboardId, int playerId, int score) {
-        // Проверка дали играчът вече има запис
-        if (playerHasEntry(leaderboardId, playerId)) {
-            int currentScore = getPlayerScore(leaderboardId, playerId);
-            
-            if (score > currentScore) {
-                // Актуализиране на най-добрия резултат
-                String query = "UPDATE leaderboard_entries SET score = ?, date = ? " +
-                              "WHERE leaderboard_id = ? AND player_id = ? AND score = ?";
-                
-                try (PreparedStatement statement = connection.prepareStatement(query)) {
-                    statement.setInt(1, score);
-                    statement.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
-                    statement.setInt(3, leaderboardId);
-                    statement.setInt(4, playerId);
-                    statement.setInt(5, currentScore);
-                    
-                    int affectedRows = statement.executeUpdate();
-                    return affectedRows > 0;
-                } catch (SQLException e) {
-                    System.err.println("Грешка при актуализиране на запис в класация: " + e.getMessage());
-                    return false;
+        return addLeaderboardEntry(leaderboardId, playerId, score);
+    }
+    
+    /**
+     * Записва резултат в силно натоварена класация (запазва само най-добрия резултат).
+     * 
+     * Отложен запис се използва само за класациите, изброени в системното свойство
+     * knowledgeheroes.db.leaderboards.sharded (ID, разделени със запетая); за всички
+     * останали методът е същият като updateOrAddLeaderboardEntry. Списъкът се чете
+     * при стартиране и трябва да е еднакъв във всички инстанции на приложението.
+     * 
+     * За разделена класация резултатът не се чете от базата данни: отразява се в
+     * класация в паметта, разделена по хеш на ID на играча, и се записва пакетно
+     * от съответната част (виж LeaderboardScoreShards - изисква уникален ключ в
+     * leaderboard_entries). Резултат, който не подобрява текущия, не се записва
+     * изобщо. Записът не участва в UnitOfWork. Незаписаните резултати се записват
+     * веднага с flushScores().
+     * 
+     * Най-добрите записи, позициите и резултатите на разделена класация се четат
+     * от паметта на текущия процес, така че резултатите, подадени в друга
+     * инстанция, се виждат едва след презареждане на класацията.
+     * 
+     * Върнатото true за разделена класация означава само, че резултатът е приет -
+     * записът в базата данни става по-късно. Името на нов играч се взима от кеша
+     * на играчите или се зарежда при първото четене на записа му, без заявка при записа.
+     * 
+     * @param leaderboardId ID на класацията
+     * @param playerId ID на играча
+     * @param score резултат
+     * @return true ако резултатът е приет за запис (или не подобрява текущия),
+     *         false ако буферът е пълен, защото базата данни не приема записи,
+     *         или при грешка в синхронния запис на неразделена класация
+     */
+    public boolean submitScore(int leaderboardId, int playerId, int score) {
+        if (!shardedLeaderboards.contains(leaderboardId)) {
+            return addLeaderboardEntry(leaderboardId, playerId, score);
+        }
+        
+        ShardedLeaderboardRanking ranking = getShardedRanking(leaderboardId);
+        ShardedHolder holder = shardedRankings.get(leaderboardId);
+        if (ranking == null && holder != null) {
+            // Класацията се зарежда - резултатът се прилага директно върху нея
+            ranking = holder.ranking;
+        }
+        
+        if (ranking != null && ranking.getScore(playerId) >= score) {
+            return true;
+        }
+        
+        // Моментът на подаване е датата и в паметта, и в базата данни
+        LocalDateTime now = LocalDateTime.now();
+        if (!scoreShards.record(leaderboardId, playerId, score, now)) {
+            return false;
+        }
+        if (ranking != null) {
+            ranking.submit(newShardedEntry(ranking, leaderboardId, playerId, score, now));
+        }
+        return true;
+    }
+    
+    /**
+     * Записва веднага в базата данни всички чакащи резултати от submitScore
+     * 
+     * @return true при успех, false при грешка (резултатите остават за следващия опит)
+     */
+    public static boolean flushScores() {
+        return scoreShards.flush();
+    }
+    
+    /**
+     * Връща броя резултати от submitScore, които още не са записани
+     * 
+     * @return брой чакащи резултати
+     */
+    public static int getPendingScoreCount() {
+        return scoreShards.getPendingCount();
+    }
+    
+    /**
+     * Връща броя резултати от submitScore, отказани заради пълен буфер
+     * 
+     * @return брой отказани резултати
+     */
+    public static long getRejectedScoreCount() {
+        return scoreShards.getRejectedCount();
+    }
+    
+    /**
+     * Връща броя резултати от submitScore, пропуснати, защото базата данни не ги приема
+     * 
+     * @return брой пропуснати резултати
+     */
+    public static long getDroppedScoreCount() {
+        return scoreShards.getDroppedCount();
+    }
+    
+    /**
+     * Записва резултат в текущия период на времеви прозорец на класация
+     * (запазва само най-добрия резултат на играча за периода)
+     * 
+     * @param leaderboardId ID на класацията
+     * @param window времеви прозорец
+     * @param playerId ID на играча
+     * @param score резултат
+     * @return true при успех, false при грешка
+     */
+    public boolean submitWindowScore(int leaderboardId, LeaderboardWindow window, int playerId, int score) {
+        PeriodKey key = new PeriodKey(leaderboardId, window, window.currentPeriodStart());
+        String query = "INSERT INTO leaderboard_period_entries " +
+                      "(leaderboard_id, window_type, period_start, player_id, score, date) " +
+                      "VALUES (?, ?, ?, ?, ?, ?) " +
+                      "ON DUPLICATE KEY UPDATE " + BEST_SCORE_UPDATE;
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            LocalDateTime date = LocalDateTime.now();
+            Timestamp now = Timestamp.valueOf(date);
+            setPeriodKey(statement, key);
+            statement.setInt(4, playerId);
+            statement.setInt(5, score);
+            statement.setTimestamp(6, now);
+            statement.setInt(7, score);
+            statement.setTimestamp(8, now);
+            statement.setInt(9, score);
+            
+            statement.executeUpdate();
+            submitToPeriodRanking(key, playerId, score, date);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Грешка при записване на резултат за период на класация: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Взима най-добрите записи в текущия период на времеви прозорец
+     * 
+     * @param leaderboardId ID на класацията
+     * @param window времеви прозорец
+     * @param limit брой записи
+     * @return списък с LeaderboardEntry обекти (без ID на запис)
+     */
+    public List<LeaderboardEntry> getWindowTopEntries(int leaderboardId, LeaderboardWindow window, int limit) {
+        return getPeriodTopEntries(leaderboardId, window, window.currentPeriodStart(), limit);
+    }
+    
+    /**
+     * Взима най-добрите записи в даден период, например за награждаване след края му
+     * 
+     * @param leaderboardId ID на класацията
+     * @param window времеви прозорец
+     * @param periodStart начало на периода (от LeaderboardWindow.periodStart)
+     * @param limit брой записи
+     * @return списък с LeaderboardEntry обекти (без ID на запис)
+     */
+    public List<LeaderboardEntry> getPeriodTopEntries(int leaderboardId, LeaderboardWindow window,
+                                                      LocalDate periodStart, int limit) {
+        PeriodKey key = new PeriodKey(leaderboardId, window, window.periodStart(periodStart));
+        LeaderboardRanking ranking = getPeriodRanking(key);
+        if (ranking != null) {
+            return ranking.getTopEntries(limit);
+        }
+        
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        String query = "SELECT pe.leaderboard_id, pe.player_id, pe.score, pe.date, 0 AS entry_id, p.username " +
+                      "FROM leaderboard_period_entries pe " +
+                      "LEFT JOIN players p ON p.player_id = pe.player_id " +
+                      "WHERE pe.leaderboard_id = ? AND pe.window_type = ? AND pe.period_start = ? " +
+                      "ORDER BY pe.score DESC, pe.date ASC, pe.player_id ASC LIMIT ?";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            setPeriodKey(statement, key);
+            statement.setInt(4, limit);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    entries.add(mapResultSetToLeaderboardEntry(resultSet));
                 }
-            } else {
-                // Резултатът не е по-добър от текущия
-                return true;
             }
-        } else {
-            // Добавяне на нов запис
-            return addLeaderboardEntry(leaderboardId, playerId, score);
+        } catch (SQLException e) {
+            System.err.println("Грешка при извличане на най-добрите записи за период на класация: " + e.getMessage());
         }
+        
+        return entries;
     }
     
     /**
-     * Създава Leaderboard обект от ResultSet
+     * Взима позицията на играч в текущия период на времеви прозорец
      * 
-     * @param resultSet резултат от заявка
-     * @return Leaderboard обект
+     * @param leaderboardId ID на класацията
+     * @param window времеви прозорец
+     * @param playerId ID на играча
+     * @return позиция (1-базирана) или -1 ако играчът няма резултат в периода
      */
-    private Leaderboard mapResultSetToLeaderboard(ResultSet resultSet) throws SQLException {
-        Leaderboard leaderboard = new Leaderboard();
-        leaderboard.setLeaderboardId(resultSet.getInt("leaderboard_id"));
+    public int getWindowPlayerRank(int leaderboardId, LeaderboardWindow window, int playerId) {
+        PeriodKey key = new PeriodKey(leaderboardId, window, window.currentPeriodStart());
+        LeaderboardRanking ranking = getPeriodRanking(key);
+        if (ranking != null) {
+            return ranking.getRank(playerId);
+        }
         
-        int levelId = resultSet.getInt("level_id");
-        if (!resultSet.wasNull()) {
-            leaderboard.setLevelId(levelId);
+        String query = "SELECT (SELECT COUNT(*) FROM leaderboard_period_entries o " +
+                      "WHERE o.leaderboard_id = pe.leaderboard_id AND o.window_type = pe.window_type " +
+                      "AND o.period_start = pe.period_start AND o.score > pe.score) + 1 AS player_rank " +
+                      "FROM leaderboard_period_entries pe " +
+                      "WHERE pe.leaderboard_id = ? AND pe.window_type = ? AND pe.period_start = ? AND pe.player_id = ?";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            setPeriodKey(statement, key);
+            statement.setInt(4, playerId);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return resultSet.getInt("player_rank");
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при извличане на позиция на играч за период на класация: " + e.getMessage());
         }
         
-        leaderboard.setCategory(resultSet.getString("category"));
-        leaderboard.setName(resultSet.getString("name"));
+        return -1;
+    }
+    
+    /**
+     * Взима записите около играч в текущия период на времеви прозорец
+     * 
+     * @param leaderboardId ID на класацията
+     * @param window времеви прозорец
+     * @param playerId ID на играча
+     * @param k брой съседи от всяка страна
+     * @return списък със записи, подредени по резултат, или празен списък ако играчът няма резултат в периода
+     */
+    public List<LeaderboardEntry> getWindowEntriesAroundPlayer(int leaderboardId, LeaderboardWindow window,
+                                                               int playerId, int k) {
+        PeriodKey key = new PeriodKey(leaderboardId, window, window.currentPeriodStart());
+        LeaderboardRanking ranking = getPeriodRanking(key);
+        if (ranking != null) {
+            return ranking.getEntriesAround(playerId, k);
+        }
         
-        return leaderboard;
+        String select = "SELECT e.leaderboard_id, e.player_id, e.score, e.date, 0 AS entry_id, p.username " +
+                       "FROM leaderboard_period_entries e " +
+                       "LEFT JOIN players p ON p.player_id = e.player_id";
+        String scope = "e.leaderboard_id = ? AND e.window_type = ? AND e.period_start = ?";
+        Object[] scopeParameters = {leaderboardId, window.name(), Date.valueOf(key.periodStart)};
+        return queryEntriesAround(select, scope, scopeParameters, playerId, k);
     }
     
     /**
-     * Създава LeaderboardEntry обект от ResultSet
+     * Взима резултата на играч в текущия период на времеви прозорец
      * 
-     * @param resultSet резултат от заявка
-     * @return LeaderboardEntry обект
+     * @param leaderboardId ID на класацията
+     * @param window времеви прозорец
+     * @param playerId ID на играча
+     * @return най-добрият резултат в периода или -1 ако играчът няма резултат
      */
-    private LeaderboardEntry mapResultSetToLeaderboardEntry(ResultSet resultSet) throws SQLException {
-        LeaderboardEntry entry = new LeaderboardEntry();
-        entry.setEntryId(resultSet.getInt("entry_id"));
-        entry.setLeaderboardId(resultSet.getInt("leaderboard_id"));
-        entry.setPlayerId(resultSet.getInt("player_id"));
-        entry.setScore(resultSet.getInt("score"));
+    public int getWindowPlayerScore(int leaderboardId, LeaderboardWindow window, int playerId) {
+        PeriodKey key = new PeriodKey(leaderboardId, window, window.currentPeriodStart());
+        LeaderboardRanking ranking = getPeriodRanking(key);
+        if (ranking != null) {
+            return ranking.getScore(playerId);
+        }
         
-        Timestamp dateTimestamp = resultSet.getTimestamp("date");
-        if (dateTimestamp != null) {
-            entry.setDate(dateTimestamp.toLocalDateTime());
+        String query = "SELECT score FROM leaderboard_period_entries " +
+                      "WHERE leaderboard_id = ? AND window_type = ? AND period_start = ? AND player_id = ?";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            setPeriodKey(statement, key);
+            statement.setInt(4, playerId);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return resultSet.getInt("score");
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при извличане на резултат на играч за период на класация: " + e.getMessage());
         }
         
-        // Зареждане на информация за играча
-        Player player = playerDAO.getPlayerById(entry.getPlayerId());
-        if (player != null) {
-            entry.setPlayerName(player.getUsername());
+        return -1;
+    }
+    
+    /**
+     * Изтрива резултатите от стари периоди на времеви прозорец във всички класации.
+     * Редовете се изтриват на части, така че всяка заявка държи заключванията
+     * кратко, а записите в текущия период не чакат.
+     * 
+     * @param window времеви прозорец
+     * @param keepPeriods брой запазени периоди, включително текущия (поне 1)
+     * @return брой изтрити редове или -1 при грешка
+     */
+    public int expireWindowPeriods(LeaderboardWindow window, int keepPeriods) {
+        LocalDate cutoff = window.minusPeriods(window.currentPeriodStart(), Math.max(1, keepPeriods) - 1);
+        String query = "DELETE FROM leaderboard_period_entries WHERE window_type = ? AND period_start < ? LIMIT ?";
+        
+        periodRankings.keySet().removeIf(key -> key.window == window && key.periodStart.isBefore(cutoff));
+        
+        int deleted = 0;
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, window.name());
+            statement.setDate(2, Date.valueOf(cutoff));
+            statement.setInt(3, EXPIRE_BATCH_SIZE);
+            
+            int batch;
+            do {
+                batch = statement.executeUpdate();
+                deleted += batch;
+            } while (batch == EXPIRE_BATCH_SIZE);
+            return deleted;
+        } catch (SQLException e) {
+            System.err.println("Грешка при изтриване на стари периоди на класации: " + e.getMessage());
+            return -1;
         }
+    }
+    
+    /**
+     * Зарежда класациите в паметта с една заявка към leaderboard_entries.
+     * Извиква се при стартиране на сървъра; класации, които не са заредени,
+     * се зареждат при първото им използване. Разделените класации не се зареждат тук.
+     * 
+     * @return true при успех, false при грешка
+     */
+    public boolean loadRankings() {
+        String leaderboardsQuery = "SELECT leaderboard_id FROM leaderboards";
+        String entriesQuery = "SELECT le.*, p.username FROM leaderboard_entries le " +
+                             "LEFT JOIN players p ON p.player_id = le.player_id";
+        Map<Integer, RankingHolder> loaded = new HashMap<>();
         
-        return entry;
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement statement = connection.createStatement()) {
+            
+            // Класациите се регистрират преди заявката за записите (както в getRanking),
+            // за да не се изгубят резултати, добавени по време на зареждането
+            try (ResultSet resultSet = statement.executeQuery(leaderboardsQuery)) {
+                while (resultSet.next()) {
+                    int leaderboardId = resultSet.getInt("leaderboard_id");
+                    if (shardedLeaderboards.contains(leaderboardId)) {
+                        continue;
+                    }
+                    RankingHolder holder = new RankingHolder();
+                    if (rankings.putIfAbsent(leaderboardId, holder) == null) {
+                        loaded.put(leaderboardId, holder);
+                    }
+                }
+            }
+            
+            try (ResultSet resultSet = statement.executeQuery(entriesQuery)) {
+                while (resultSet.next()) {
+                    LeaderboardEntry entry = mapResultSetToLeaderboardEntry(resultSet);
+                    RankingHolder holder = loaded.get(entry.getLeaderboardId());
+                    if (holder != null) {
+                        holder.ranking.submit(entry);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при зареждане на класациите в паметта: " + e.getMessage());
+            for (Map.Entry<Integer, RankingHolder> entry : loaded.entrySet()) {
+                rankings.remove(entry.getKey(), entry.getValue());
+            }
+            return false;
+        }
+        
+        // Класация, премахната по време на зареждането, се зарежда отново при следващо използване
+        for (Map.Entry<Integer, RankingHolder> entry : loaded.entrySet()) {
+            if (rankings.get(entry.getKey()) == entry.getValue()) {
+                entry.getValue().ready = true;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Връща класацията в паметта, като я зарежда при първо използване
+     * 
+     * @param leaderboardId ID на класацията
+     * @return класация в паметта или null ако не може да бъде заредена в момента
+     */
+    private LeaderboardRanking getRanking(int leaderboardId) {
+        if (shardedLeaderboards.contains(leaderboardId)) {
+            // Резултатите на класацията отиват в разделената класация
+            return null;
+        }
+        
+        RankingHolder holder = rankings.get(leaderboardId);
+        if (holder != null) {
+            return holder.ready ? holder.ranking : null;
+        }
+        
+        holder = new RankingHolder();
+        if (rankings.putIfAbsent(leaderboardId, holder) != null) {
+            // Класацията се зарежда от друга нишка
+            return null;
+        }
+        
+        // Записите, добавени по време на зареждането, се прилагат директно върху новата класация,
+        // а понеже се пази само най-добрият резултат, редът на прилагане не е от значение
+        String query = "SELECT le.*, p.username FROM leaderboard_entries le " +
+                      "LEFT JOIN players p ON p.player_id = le.player_id " +
+                      "WHERE le.leaderboard_id = ?";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, leaderboardId);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    holder.ranking.submit(mapResultSetToLeaderboardEntry(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при зареждане на класация в паметта: " + e.getMessage());
+            rankings.remove(leaderboardId, holder);
+            return null;
+        }
+        
+        holder.ready = true;
+        return holder.ranking;
+    }
+    
+    /**
+     * Връща разделената класация в паметта, като я зарежда при първо използване
+     * 
+     * @param leaderboardId ID на класацията
+     * @return класация в паметта или null ако класацията не е разделена
+     *         или не може да бъде заредена в момента
+     */
+    private ShardedLeaderboardRanking getShardedRanking(int leaderboardId) {
+        if (!shardedLeaderboards.contains(leaderboardId)) {
+            return null;
+        }
+        
+        ShardedHolder holder = shardedRankings.get(leaderboardId);
+        if (holder != null) {
+            return holder.ready ? holder.ranking : null;
+        }
+        
+        holder = new ShardedHolder();
+        if (shardedRankings.putIfAbsent(leaderboardId, holder) != null) {
+            // Класацията се зарежда от друга нишка
+            return null;
+        }
+        
+        // Чакащите резултати се взимат преди заявката: резултат, записан в базата
+        // данни между двете, е в поне едното, а по-новите се прилагат от submitScore
+        Map<Integer, LeaderboardScoreShards.PendingScore> pendingScores = scoreShards.getPending(leaderboardId);
+        
+        String query = "SELECT le.*, p.username FROM leaderboard_entries le " +
+                      "LEFT JOIN players p ON p.player_id = le.player_id " +
+                      "WHERE le.leaderboard_id = ?";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, leaderboardId);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    holder.ranking.submit(mapResultSetToLeaderboardEntry(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при зареждане на разделена класация в паметта: " + e.getMessage());
+            shardedRankings.remove(leaderboardId, holder);
+            return null;
+        }
+        
+        // Резултати, приети преди зареждането, които още не бяха в базата данни
+        for (Map.Entry<Integer, LeaderboardScoreShards.PendingScore> pending : pendingScores.entrySet()) {
+            int playerId = pending.getKey();
+            LeaderboardScoreShards.PendingScore pendingScore = pending.getValue();
+            holder.ranking.submit(newShardedEntry(holder.ranking, leaderboardId, playerId, pendingScore.score,
+                                                  pendingScore.date));
+        }
+        
+        holder.ready = true;
+        return holder.ranking;
+    }
+    
+    /**
+     * Връща класацията на период в паметта, като я зарежда при първо използване
+     * 
+     * @param key класация, прозорец и начало на периода
+     * @return класация в паметта или null ако не може да бъде заредена в момента
+     */
+    private LeaderboardRanking getPeriodRanking(PeriodKey key) {
+        RankingHolder holder = periodRankings.get(key);
+        if (holder != null) {
+            return holder.ready ? holder.ranking : null;
+        }
+        
+        holder = new RankingHolder();
+        if (periodRankings.putIfAbsent(key, holder) != null) {
+            // Класацията се зарежда от друга нишка
+            return null;
+        }
+        
+        String query = "SELECT pe.leaderboard_id, pe.player_id, pe.score, pe.date, 0 AS entry_id, p.username " +
+                      "FROM leaderboard_period_entries pe " +
+                      "LEFT JOIN players p ON p.player_id = pe.player_id " +
+                      "WHERE pe.leaderboard_id = ? AND pe.window_type = ? AND pe.period_start = ?";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            setPeriodKey(statement, key);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    holder.ranking.submit(mapResultSetToLeaderboardEntry(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при зареждане на класация за период в паметта: " + e.getMessage());
+            periodRankings.remove(key, holder);
+            return null;
+        }
+        
+        holder.ready = true;
+        return holder.ranking;
+    }
+    
+    /**
+     * Изтрива резултатите по периоди на класация
+     * 
+     * @param leaderboardId ID на класацията
+     * @return true при успех, false при грешка
+     */
+    private boolean deletePeriodEntries(int leaderboardId) {
+        String query = "DELETE FROM leaderboard_period_entries WHERE leaderboard_id = ?";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, leaderboardId);
+            
+            statement.executeUpdate();
+            periodRankings.keySet().removeIf(key -> key.leaderboardId == leaderboardId);
+            UnitOfWork.afterCompletion(() -> periodRankings.keySet().removeIf(key -> key.leaderboardId == leaderboardId));
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Грешка при изтриване на резултати по периоди на класация: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Взима записите около играч с три заявки по индекса на резултата: най-добрия
+     * запис на играча, k записа точно преди него и k записа точно след него.
+     * Подредбата е същата като в LeaderboardRanking: резултат, дата, ID на играча,
+     * като записите без дата са след тези с дата при равен резултат.
+     * 
+     * @param select SELECT ... FROM ... с псевдоним e за таблицата със записи
+     * @param scope условие, което избира класацията
+     * @param scopeParameters параметрите на условието
+     * @param playerId ID на играча
+     * @param k брой съседи от всяка страна
+     * @return списък със записи, подредени по резултат
+     */
+    private List<LeaderboardEntry> queryEntriesAround(String select, String scope, Object[] scopeParameters,
+                                                      int playerId, int k) {
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        String playerQuery = select + " WHERE " + scope + " AND e.player_id = ? " +
+                            "ORDER BY e.score DESC, e.date IS NULL, e.date ASC LIMIT 1";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection()) {
+            LeaderboardEntry player = null;
+            try (PreparedStatement statement = connection.prepareStatement(playerQuery)) {
+                int index = setParameters(statement, scopeParameters);
+                statement.setInt(index, playerId);
+                
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        player = mapResultSetToLeaderboardEntry(resultSet);
+                    }
+                }
+            }
+            
+            if (player == null) {
+                return entries;
+            }
+            
+            // При равен резултат NULL дата е след всяка дата, затова условието за
+            // равните записи зависи от това дали играчът има дата
+            String aboveTie = player.getDate() != null
+                    ? "e.date < ? OR (e.date = ? AND e.player_id < ?)"
+                    : "e.date IS NOT NULL OR (e.date IS NULL AND e.player_id < ?)";
+            String belowTie = player.getDate() != null
+                    ? "e.date > ? OR e.date IS NULL OR (e.date = ? AND e.player_id > ?)"
+                    : "e.date IS NULL AND e.player_id > ?";
+            String aboveQuery = select + " WHERE " + scope + " AND e.player_id <> ? " +
+                               "AND (e.score > ? OR (e.score = ? AND (" + aboveTie + "))) " +
+                               "ORDER BY e.score ASC, e.date IS NULL DESC, e.date DESC, e.player_id DESC LIMIT ?";
+            String belowQuery = select + " WHERE " + scope + " AND e.player_id <> ? " +
+                               "AND (e.score < ? OR (e.score = ? AND (" + belowTie + "))) " +
+                               "ORDER BY e.score DESC, e.date IS NULL, e.date ASC, e.player_id ASC LIMIT ?";
+            
+            // Съседите преди играча се четат в обратен ред, от най-близкия
+            List<LeaderboardEntry> above = queryNeighbours(connection, aboveQuery, scopeParameters, player, k);
+            for (int i = above.size() - 1; i >= 0; i--) {
+                entries.add(above.get(i));
+            }
+            entries.add(player);
+            entries.addAll(queryNeighbours(connection, belowQuery, scopeParameters, player, k));
+        } catch (SQLException e) {
+            System.err.println("Грешка при извличане на записи около играч в класация: " + e.getMessage());
+            return new ArrayList<>();
+        }
+        
+        return entries;
+    }
+    
+    /**
+     * Изпълнява заявка за съседите на запис от queryEntriesAround
+     */
+    private List<LeaderboardEntry> queryNeighbours(Connection connection, String query, Object[] scopeParameters,
+                                                   LeaderboardEntry player, int k) throws SQLException {
+        List<LeaderboardEntry> neighbours = new ArrayList<>();
+        if (k <= 0) {
+            return neighbours;
+        }
+        
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            int index = setParameters(statement, scopeParameters);
+            statement.setInt(index++, player.getPlayerId());
+            statement.setInt(index++, player.getScore());
+            statement.setInt(index++, player.getScore());
+            // Условието за играч без дата не сравнява дати
+            if (player.getDate() != null) {
+                Timestamp date = Timestamp.valueOf(player.getDate());
+                statement.setTimestamp(index++, date);
+                statement.setTimestamp(index++, date);
+            }
+            statement.setInt(index++, player.getPlayerId());
+            statement.setInt(index, k);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    neighbours.add(mapResultSetToLeaderboardEntry(resultSet));
+                }
+            }
+        }
+        return neighbours;
+    }
+    
+    /**
+     * Задава параметри на заявка от началото
+     * 
+     * @return индексът на следващия параметър
+     */
+    private static int setParameters(PreparedStatement statement, Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+        return parameters.length + 1;
+    }
+    
+    /**
+     * Отразява нов резултат в класацията в паметта, ако тя е заредена
+     * 
+     * @param leaderboardId ID на класацията
+     * @param entryId ID на записа (0 ако не е известно)
+     * @param playerId ID на играча
+     * @param score резултат
+     * @param date момент на подаване на резултата (същият се записва в базата данни)
+     */
+    private void submitToRanking(int leaderboardId, int entryId, int playerId, int score, LocalDateTime date) {
+        // В транзакция резултатът може да бъде отменен - класацията се презарежда след края й
+        if (UnitOfWork.afterCompletion(() -> removeRanking(leaderboardId))) {
+            return;
+        }
+        
+        submitToHolder(rankings.get(leaderboardId), entryId, leaderboardId, playerId, score, date);
+        ShardedHolder sharded = shardedRankings.get(leaderboardId);
+        if (sharded != null) {
+            sharded.ranking.submit(newEntry(sharded.ranking.contains(playerId), entryId, leaderboardId, playerId, score, date));
+        }
+    }
+    
+    /**
+     * Отразява нов резултат в класацията на период в паметта, ако тя е заредена
+     * 
+     * @param key класация, прозорец и начало на периода
+     * @param playerId ID на играча
+     * @param score резултат
+     * @param date момент на подаване на резултата (същият се записва в базата данни)
+     */
+    private void submitToPeriodRanking(PeriodKey key, int playerId, int score, LocalDateTime date) {
+        if (UnitOfWork.afterCompletion(() -> periodRankings.remove(key))) {
+            return;
+        }
+        
+        submitToHolder(periodRankings.get(key), 0, key.leaderboardId, playerId, score, date);
+    }
+    
+    /**
+     * Отразява резултат в класация в паметта, ако тя е заредена
+     */
+    private void submitToHolder(RankingHolder holder, int entryId, int leaderboardId, int playerId, int score,
+                                LocalDateTime date) {
+        if (holder == null) {
+            return;
+        }
+        
+        holder.ranking.submit(newEntry(holder.ranking.contains(playerId), entryId, leaderboardId, playerId, score, date));
+    }
+    
+    /**
+     * Създава запис за класация в паметта
+     * 
+     * @param known дали играчът вече е в класацията (тогава името му е известно и не се чете)
+     * @param date момент на подаване на резултата (същият се записва в базата данни)
+     */
+    private LeaderboardEntry newEntry(boolean known, int entryId, int leaderboardId, int playerId, int score,
+                                      LocalDateTime date) {
+        LeaderboardEntry entry = new LeaderboardEntry(entryId, leaderboardId, playerId, null, score, date);
+        if (!known) {
+            entry.setPlayerName(getPlayerName(playerId));
+        }
+        return entry;
+    }
+    
+    /**
+     * Създава запис за разделена класация без заявка към базата данни: името на
+     * нов играч се взима от кеша на играчите, а ако го няма там - при четене
+     * 
+     * @param ranking разделената класация
+     * @param date момент на подаване на резултата (същият се записва в базата данни)
+     */
+    private static LeaderboardEntry newShardedEntry(ShardedLeaderboardRanking ranking, int leaderboardId,
+                                                    int playerId, int score, LocalDateTime date) {
+        LeaderboardEntry entry = new LeaderboardEntry(0, leaderboardId, playerId, null, score, date);
+        if (!ranking.contains(playerId)) {
+            Player player = PlayerDAO.getCache().getById(playerId);
+            if (player != null) {
+                entry.setPlayerName(player.getUsername());
+            }
+        }
+        return entry;
+    }
+    
+    /**
+     * Допълва с една заявка имената на играчите, които разделената класация още
+     * не знае, и ги запазва в нея
+     * 
+     * @param ranking разделената класация
+     * @param entries записи, прочетени от нея
+     * @return същите записи
+     */
+    private List<LeaderboardEntry> withPlayerNames(ShardedLeaderboardRanking ranking, List<LeaderboardEntry> entries) {
+        Map<Integer, List<LeaderboardEntry>> unnamed = new HashMap<>();
+        for (LeaderboardEntry entry : entries) {
+            if (entry.getPlayerName() == null) {
+                unnamed.computeIfAbsent(entry.getPlayerId(), id -> new ArrayList<>()).add(entry);
+            }
+        }
+        if (unnamed.isEmpty()) {
+            return entries;
+        }
+        
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < unnamed.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        String query = "SELECT player_id, username FROM players WHERE player_id IN (" + placeholders + ")";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            int index = 1;
+            for (int playerId : unnamed.keySet()) {
+                statement.setInt(index++, playerId);
+            }
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int playerId = resultSet.getInt("player_id");
+                    String username = resultSet.getString("username");
+                    ranking.setPlayerName(playerId, username);
+                    for (LeaderboardEntry entry : unnamed.get(playerId)) {
+                        entry.setPlayerName(username);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при извличане на имена на играчи: " + e.getMessage());
+        }
+        
+        return entries;
+    }
+    
+    /**
+     * Взима потребителското име на играч
+     * 
+     * @param playerId ID на играча
+     * @return потребителско име или null ако играчът не е намерен
+     */
+    private String getPlayerName(int playerId) {
+        String query = "SELECT username FROM players WHERE player_id = ?";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, playerId);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return resultSet.getString("username");
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при извличане на име на играч: " + e.getMessage());
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Създава Leaderboard обект от ResultSet
+     * 
+     * @param resultSet резултат от заявка
+     * @return Leaderboard обект
+     */
+    private Leaderboard mapResultSetToLeaderboard(ResultSet resultSet) throws SQLException {
+        Leaderboard leaderboard = new Leaderboard();
+        leaderboard.setLeaderboardId(resultSet.getInt("leaderboard_id"));
+        
+        int levelId = resultSet.getInt("level_id");
+        if (!resultSet.wasNull()) {
+            leaderboard.setLevelId(levelId);
+        }
+        
+        leaderboard.setCategory(resultSet.getString("category"));
+        leaderboard.setName(resultSet.getString("name"));
+        
+        return leaderboard;
+    }
+    
+    /**
+     * Създава LeaderboardEntry обект от ResultSet.
+     * Името на играча се чете от колоната username, присъединена от таблицата players.
+     * 
+     * @param resultSet резултат от заявка
+     * @return LeaderboardEntry обект
+     */
+    private LeaderboardEntry mapResultSetToLeaderboardEntry(ResultSet resultSet) throws SQLException {
+        LeaderboardEntry entry = new LeaderboardEntry();
+        entry.setEntryId(resultSet.getInt("entry_id"));
+        entry.setLeaderboardId(resultSet.getInt("leaderboard_id"));
+        entry.setPlayerId(resultSet.getInt("player_id"));
+        entry.setScore(resultSet.getInt("score"));
+        
+        Timestamp dateTimestamp = resultSet.getTimestamp("date");
+        if (dateTimestamp != null) {
+            entry.setDate(dateTimestamp.toLocalDateTime());
+        }
+        
+        entry.setPlayerName(resultSet.getString("username"));
+        
+        return entry;
+    }
+    
+    /**
+     * Разчита списък с ID на класации, разделени със запетая
+     * 
+     * @param value стойност на системното свойство
+     * @return неизменимо множество от ID (празно, ако списъкът е празен)
+     */
+    private static Set<Integer> parseLeaderboardIds(String value) {
+        Set<Integer> ids = new HashSet<>();
+        for (String part : value.split(",")) {
+            String id = part.trim();
+            if (id.isEmpty()) {
+                continue;
+            }
+            try {
+                ids.add(Integer.parseInt(id));
+            } catch (NumberFormatException e) {
+                System.err.println("Невалиден ID на разделена класация: " + id);
+            }
+        }
+        return Set.copyOf(ids);
+    }
+    
+    /**
+     * Задава параметрите на ENTRY_UPSERT_QUERY
+     */
+    static void bindEntryUpsert(PreparedStatement statement, int leaderboardId, int playerId, int score,
+                                Timestamp date) throws SQLException {
+        statement.setInt(1, leaderboardId);
+        statement.setInt(2, playerId);
+        statement.setInt(3, score);
+        statement.setTimestamp(4, date);
+        statement.setInt(5, score);
+        statement.setTimestamp(6, date);
+        statement.setInt(7, score);
+    }
+    
+    /**
+     * Задава класацията, прозореца и началото на периода като първите три параметъра на заявка
+     */
+    private static void setPeriodKey(PreparedStatement statement, PeriodKey key) throws SQLException {
+        statement.setInt(1, key.leaderboardId);
+        statement.setString(2, key.window.name());
+        statement.setDate(3, Date.valueOf(key.periodStart));
+    }
+    
+    /**
+     * Връща класацията, към която принадлежи запис
+     * 
+     * @param connection връзка, на която ще се промени записът
+     * @param entryId ID на записа
+     * @return ID на класацията или -1 ако записът не съществува
+     */
+    private static int getEntryLeaderboardId(Connection connection, int entryId) throws SQLException {
+        String query = "SELECT leaderboard_id FROM leaderboard_entries WHERE entry_id = ?";
+        
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, entryId);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt("leaderboard_id") : -1;
+            }
+        }
+    }
+    
+    /**
+     * Премахва класация от паметта; зарежда се отново при следващо използване
+     */
+    private static void removeRanking(int leaderboardId) {
+        rankings.remove(leaderboardId);
+        shardedRankings.remove(leaderboardId);
+    }
+    
+    /**
+     * Класация в паметта и флаг дали е напълно заредена
+     */
+    private static class RankingHolder {
+        private final LeaderboardRanking ranking = new LeaderboardRanking();
+        private volatile boolean ready;
+    }
+    
+    /**
+     * Разделена класация в паметта и флаг дали е напълно заредена
+     */
+    private static class ShardedHolder {
+        private final ShardedLeaderboardRanking ranking = new ShardedLeaderboardRanking(SHARD_COUNT, TOP_SIZE);
+        private volatile boolean ready;
+    }
+    
+    /**
+     * Ключ на класация за период: класация, времеви прозорец и начало на периода
+     */
+    private static final class PeriodKey {
+        private final int leaderboardId;
+        private final LeaderboardWindow window;
+        private final LocalDate periodStart;
+        
+        private PeriodKey(int leaderboardId, LeaderboardWindow window, LocalDate periodStart) {
+            this.leaderboardId = leaderboardId;
+            this.window = window;
+            this.periodStart = periodStart;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PeriodKey)) {
+                return false;
+            }
+            PeriodKey other = (PeriodKey) o;
+            return leaderboardId == other.leaderboardId && window == other.window
+                    && periodStart.equals(other.periodStart);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(leaderboardId, window, periodStart);
+        }
     }
 }
\ No newline at end of file
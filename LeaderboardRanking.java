@@ -0,0 +1,522 @@
+package com.knowledgeheroes.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Подредена в паметта класация с по един (най-добър) резултат на играч.
+ * 
+ * Реализирана е като индексиран skip list: всяка връзка пази колко записа
+ * прескача, така че позиция, ранг и извличане по позиция струват O(log n),
+ * а обхождане на k съседни записа - O(log n + k). Записите са подредени по
+ * резултат (низходящо), после по дата (по-ранният е напред) и по ID на играча.
+ */
+public class LeaderboardRanking {
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_PROBABILITY = 0.25;
+    
+    private final Node header = new Node(null, MAX_LEVEL);
+    private final Map<Integer, Node> nodesByPlayer = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int level = 1;
+    private int size;
+    
+    /**
+     * Конструктор по подразбиране
+     */
+    public LeaderboardRanking() {
+    }
+    
+    /**
+     * Конструктор, който зарежда начални записи
+     * 
+     * @param entries записи за зареждане (за всеки играч се пази най-добрият резултат)
+     */
+    public LeaderboardRanking(List<LeaderboardEntry> entries) {
+        for (LeaderboardEntry entry : entries) {
+            submit(entry);
+        }
+    }
+    
+    /**
+     * Добавя резултат, като запазва само най-добрия резултат на играча.
+     * Ако записът няма ID или име на играча, се запазват тези от предишния запис.
+     * 
+     * @param entry запис с резултат
+     * @return true ако класацията е променена, false ако играчът вече има по-добър или равен резултат
+     */
+    public boolean submit(LeaderboardEntry entry) {
+        lock.writeLock().lock();
+        try {
+            Node existing = nodesByPlayer.get(entry.getPlayerId());
+            if (existing != null && existing.data.getScore() >= entry.getScore()) {
+                return false;
+            }
+            
+            LeaderboardEntry data = copy(entry);
+            if (existing != null) {
+                // Запазване на известните данни, ако новият запис не ги съдържа
+                if (data.getEntryId() == 0) {
+                    data.setEntryId(existing.data.getEntryId());
+                }
+                if (data.getPlayerName() == null) {
+                    data.setPlayerName(existing.data.getPlayerName());
+                }
+                delete(existing);
+            }
+            insert(data);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Задава резултата на играч, дори ако е по-нисък от текущия
+     * 
+     * @param entry запис с резултат
+     */
+    public void put(LeaderboardEntry entry) {
+        lock.writeLock().lock();
+        try {
+            Node existing = nodesByPlayer.get(entry.getPlayerId());
+            if (existing != null) {
+                delete(existing);
+            }
+            insert(copy(entry));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Задава името на играч, ако записът му още няма име
+     * 
+     * @param playerId ID на играча
+     * @param playerName потребителско име
+     */
+    public void setPlayerName(int playerId, String playerName) {
+        lock.writeLock().lock();
+        try {
+            Node node = nodesByPlayer.get(playerId);
+            if (node != null && node.data.getPlayerName() == null) {
+                node.data.setPlayerName(playerName);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Премахва играч от класацията
+     * 
+     * @param playerId ID на играча
+     * @return true ако играчът е премахнат, false ако не е бил в класацията
+     */
+    public boolean remove(int playerId) {
+        lock.writeLock().lock();
+        try {
+            Node existing = nodesByPlayer.get(playerId);
+            if (existing == null) {
+                return false;
+            }
+            
+            delete(existing);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Връща ранга на играч: броя играчи със строго по-висок резултат плюс едно.
+     * Играчи с равен резултат делят един и същ ранг.
+     * 
+     * @param playerId ID на играча
+     * @return ранг (1-базиран) или -1 ако играчът не е в класацията
+     */
+    public int getRank(int playerId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodesByPlayer.get(playerId);
+            if (node == null) {
+                return -1;
+            }
+            
+            return countHigherScores(node.data.getScore()) + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Връща позицията на играч в подредбата (играчи с равен резултат имат различни позиции)
+     * 
+     * @param playerId ID на играча
+     * @return позиция (1-базирана) или -1 ако играчът не е в класацията
+     */
+    public int getPosition(int playerId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodesByPlayer.get(playerId);
+            return node != null ? positionOf(node) : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Връща най-добрия резултат на играч
+     * 
+     * @param playerId ID на играча
+     * @return най-добър резултат или -1 ако играчът не е в класацията
+     */
+    public int getScore(int playerId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodesByPlayer.get(playerId);
+            return node != null ? node.data.getScore() : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Връща най-добрите N записи
+     * 
+     * @param limit максимален брой записи
+     * @return списък със записи, подредени по резултат
+     */
+    public List<LeaderboardEntry> getTopEntries(int limit) {
+        return getRange(1, limit);
+    }
+    
+    /**
+     * Връща записите около играч: до k записа преди него, неговия запис и до k записа след него
+     * 
+     * @param playerId ID на играча
+     * @param k брой съседи от всяка страна
+     * @return списък със записи или празен списък ако играчът не е в класацията
+     */
+    public List<LeaderboardEntry> getEntriesAround(int playerId, int k) {
+        lock.readLock().lock();
+        try {
+            Node node = nodesByPlayer.get(playerId);
+            if (node == null) {
+                return new ArrayList<>();
+            }
+            
+            int position = positionOf(node);
+            int from = Math.max(1, position - k);
+            return collect(from, position + k - from + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Връща записите около произволен запис: до k записа непосредствено преди
+     * него и около k записа след него, без записите на самия играч. Записът не е
+     * нужно да е в тази класация - използва се за сливане на няколко класации.
+     * 
+     * @param probe запис, около който се търси
+     * @param k брой съседи от всяка страна
+     * @return списък със записи, подредени по резултат
+     */
+    public List<LeaderboardEntry> getEntriesAround(LeaderboardEntry probe, int k) {
+        lock.readLock().lock();
+        try {
+            int before = countBefore(probe);
+            int from = Math.max(1, before - k + 1);
+            // Един запис повече, ако записът на играча е в тази класация
+            List<LeaderboardEntry> result = collect(from, before - from + 1 + k + 1);
+            result.removeIf(entry -> entry.getPlayerId() == probe.getPlayerId());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Връща записа на играч
+     * 
+     * @param playerId ID на играча
+     * @return копие на записа или null ако играчът не е в класацията
+     */
+    public LeaderboardEntry getEntry(int playerId) {
+        lock.readLock().lock();
+        try {
+            Node node = nodesByPlayer.get(playerId);
+            return node != null ? copy(node.data) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Брои записите със строго по-висок резултат от даден
+     * 
+     * @param score резултат
+     * @return брой записи
+     */
+    public int countAbove(int score) {
+        lock.readLock().lock();
+        try {
+            return countHigherScores(score);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Връща записите от дадена позиция нататък
+     * 
+     * @param fromPosition начална позиция (1-базирана)
+     * @param count максимален брой записи
+     * @return списък със записи, подредени по резултат
+     */
+    public List<LeaderboardEntry> getRange(int fromPosition, int count) {
+        lock.readLock().lock();
+        try {
+            return collect(Math.max(1, fromPosition), count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Проверява дали играч е в класацията
+     * 
+     * @param playerId ID на играча
+     * @return true ако играчът е в класацията
+     */
+    public boolean contains(int playerId) {
+        lock.readLock().lock();
+        try {
+            return nodesByPlayer.containsKey(playerId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Връща броя играчи в класацията
+     * 
+     * @return брой играчи
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Брои записите със строго по-висок резултат
+     */
+    private int countHigherScores(int score) {
+        int count = 0;
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i].data.getScore() > score) {
+                count += x.span[i];
+                x = x.next[i];
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Брои записите, подредени преди даден запис
+     */
+    private int countBefore(LeaderboardEntry probe) {
+        int count = 0;
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compareEntries(x.next[i].data, probe) < 0) {
+                count += x.span[i];
+                x = x.next[i];
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Намира позицията на възел в подредбата
+     */
+    private int positionOf(Node node) {
+        int position = 0;
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i], node) <= 0) {
+                position += x.span[i];
+                x = x.next[i];
+            }
+            if (x == node) {
+                return position;
+            }
+        }
+        return position;
+    }
+    
+    /**
+     * Събира count записа, започвайки от дадена позиция
+     */
+    private List<LeaderboardEntry> collect(int fromPosition, int count) {
+        List<LeaderboardEntry> result = new ArrayList<>();
+        if (count <= 0 || fromPosition > size) {
+            return result;
+        }
+        
+        // Спускане до позицията, после обхождане по най-ниското ниво
+        int traversed = 0;
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= fromPosition) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+        }
+        
+        while (x != null && result.size() < count) {
+            result.add(copy(x.data));
+            x = x.next[0];
+        }
+        return result;
+    }
+    
+    private void insert(LeaderboardEntry data) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node node = new Node(data, randomLevel());
+        
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && compare(x.next[i], node) < 0) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        
+        int nodeLevel = node.next.length;
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = header;
+                update[i].span[i] = size;
+            }
+            level = nodeLevel;
+        }
+        
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        
+        nodesByPlayer.put(data.getPlayerId(), node);
+        size++;
+    }
+    
+    private void delete(Node node) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = header;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && compare(x.next[i], node) < 0) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == node) {
+                update[i].span[i] += node.span[i] - 1;
+                update[i].next[i] = node.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        
+        while (level > 1 && header.next[level - 1] == null) {
+            level--;
+        }
+        
+        nodesByPlayer.remove(node.data.getPlayerId());
+        size--;
+    }
+    
+    private static int randomLevel() {
+        int nodeLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+    
+    private static int compare(Node a, Node b) {
+        return compareEntries(a.data, b.data);
+    }
+    
+    /**
+     * Сравнява два записа по реда в класацията: по-висок резултат, по-ранна дата,
+     * по-малко ID на играча
+     * 
+     * @param a първи запис
+     * @param b втори запис
+     * @return отрицателно число ако a е преди b, 0 ако са на едно място, положително иначе
+     */
+    public static int compareEntries(LeaderboardEntry a, LeaderboardEntry b) {
+        int result = Integer.compare(b.getScore(), a.getScore());
+        if (result != 0) {
+            return result;
+        }
+        
+        LocalDateTime dateA = a.getDate();
+        LocalDateTime dateB = b.getDate();
+        if (dateA != null && dateB != null) {
+            result = dateA.compareTo(dateB);
+        } else if (dateA != null || dateB != null) {
+            result = dateA != null ? -1 : 1;
+        }
+        if (result != 0) {
+            return result;
+        }
+        
+        return Integer.compare(a.getPlayerId(), b.getPlayerId());
+    }
+    
+    private static LeaderboardEntry copy(LeaderboardEntry entry) {
+        return new LeaderboardEntry(entry.getEntryId(), entry.getLeaderboardId(), entry.getPlayerId(),
+                                    entry.getPlayerName(), entry.getScore(), entry.getDate());
+    }
+    
+    /**
+     * Възел в skip list-а
+     */
+    private static final class Node {
+        private final LeaderboardEntry data;
+        private final Node[] next;
+        private final int[] span;
+        
+        private Node(LeaderboardEntry data, int level) {
+            this.data = data;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+}
\ No newline at end of file
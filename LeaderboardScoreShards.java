@@ -0,0 +1,342 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.config.ConnectionPool;
+import com.knowledgeheroes.model.ShardedLeaderboardRanking;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Буфер за отложен запис на резултати в класации, разделен на части по хеш на
+ * ID на играча (същото разделяне като в ShardedLeaderboardRanking).
+ * 
+ * Резултатите само се записват в паметта на частта на играча (по-слабите
+ * резултати на един играч се сливат с най-добрия), а всяка част се записва в
+ * базата данни отделно, с една пакетна заявка на всеки
+ * knowledgeheroes.db.leaderboards.flushIntervalMillis милисекунди (по
+ * подразбиране 1000) или веднага щом чакащите й резултати станат
+ * knowledgeheroes.db.leaderboards.maxPending (по подразбиране 1000). Чакащите
+ * резултати се записват и при спиране на приложението. Датата на записа е
+ * моментът на подаване на резултата, както в класацията в паметта, така че
+ * равните резултати се подреждат еднакво и след презареждане.
+ * 
+ * Всяка част пази най-много knowledgeheroes.db.leaderboards.capacity играча
+ * (по подразбиране 10000); докато базата данни не е достъпна, резултатите на
+ * нови играчи над това количество се отказват. Ако пакетът бъде отхвърлен,
+ * редовете се записват поотделно, а редовете, които нарушават ограничение на
+ * базата данни (SQLState клас 23, например изтрит играч), се пропускат и се
+ * отчитат, за да не спират записа на останалите. При други грешки (например
+ * липсваща таблица) резултатите остават за следващия опит.
+ * 
+ * Записът е същият като в LeaderboardDAO.addLeaderboardEntry (ENTRY_UPSERT_QUERY),
+ * пази по-добрия резултат с GREATEST и изисква уникалния ключ
+ * (leaderboard_id, player_id) - виж migrations/leaderboard_unique_entries.sql.
+ */
+class LeaderboardScoreShards {
+    private final Shard[] shards;
+    private final Object schedulerLock = new Object();
+    private final long flushIntervalMillis;
+    private final int maxPending;
+    private final int capacity;
+    
+    // Брояч на изтриванията на всяка класация; запис, започнал преди изтриване, не връща редовете й
+    private final Map<Integer, Integer> discardGenerations = new ConcurrentHashMap<>();
+    
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    
+    private volatile ScheduledExecutorService scheduler;
+    
+    LeaderboardScoreShards(int shardCount, long flushIntervalMillis, int maxPending, int capacity) {
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxPending = maxPending;
+        this.capacity = Math.max(maxPending, capacity);
+    }
+    
+    /**
+     * Отбелязва резултат на играч
+     * 
+     * @param leaderboardId ID на класацията
+     * @param playerId ID на играча
+     * @param score резултат
+     * @param date момент на подаване на резултата
+     * @return true ако резултатът е приет за запис, false ако частта е пълна
+     */
+    boolean record(int leaderboardId, int playerId, int score, LocalDateTime date) {
+        Shard shard = shards[ShardedLeaderboardRanking.shardOf(playerId, shards.length)];
+        long key = key(leaderboardId, playerId);
+        ScheduledExecutorService executor = ensureScheduler();
+        
+        // Границата е приблизителна - няколко нишки могат да я минат едновременно
+        boolean full = shard.pending.size() >= capacity && !shard.pending.containsKey(key);
+        if (!full) {
+            // При равен резултат остава по-ранният, както в класацията в паметта
+            shard.pending.merge(key, new PendingScore(score, date),
+                                (previous, current) -> current.score > previous.score ? current : previous);
+        }
+        
+        if (shard.pending.size() >= maxPending && shard.flushQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                shard.flushQueued.set(false);
+                shard.flush();
+            });
+        }
+        
+        if (full) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Връща още незаписаните резултати в класация
+     * 
+     * @param leaderboardId ID на класацията
+     * @return карта ID на играч -&gt; най-добър чакащ резултат и моментът на подаването му
+     */
+    Map<Integer, PendingScore> getPending(int leaderboardId) {
+        Map<Integer, PendingScore> scores = new HashMap<>();
+        for (Shard shard : shards) {
+            for (Map.Entry<Long, PendingScore> entry : shard.pending.entrySet()) {
+                if (leaderboardIdOf(entry.getKey()) == leaderboardId) {
+                    scores.put(playerIdOf(entry.getKey()), entry.getValue());
+                }
+            }
+        }
+        return scores;
+    }
+    
+    /**
+     * Премахва чакащите резултати в класация (например преди изтриване на записите й).
+     * Изчаква записите на частите, които вече са започнали, така че след връщане
+     * никой запис не може да добави отново редове от премахнатите резултати.
+     * 
+     * @param leaderboardId ID на класацията
+     */
+    void discard(int leaderboardId) {
+        discardGenerations.merge(leaderboardId, 1, Integer::sum);
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.pending.keySet().removeIf(key -> leaderboardIdOf(key) == leaderboardId);
+            }
+        }
+    }
+    
+    /**
+     * Записва чакащите резултати на всички части
+     * 
+     * @return true при успех, false ако някоя част не е записана (резултатите й остават за следващия опит)
+     */
+    boolean flush() {
+        boolean flushed = true;
+        for (Shard shard : shards) {
+            flushed &= shard.flush();
+        }
+        return flushed;
+    }
+    
+    /**
+     * Връща броя чакащи резултати във всички части
+     * 
+     * @return брой чакащи резултати
+     */
+    int getPendingCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.pending.size();
+        }
+        return count;
+    }
+    
+    /**
+     * Връща броя резултати, отказани заради пълна част
+     * 
+     * @return брой отказани резултати
+     */
+    long getRejectedCount() {
+        return rejectedCount.get();
+    }
+    
+    /**
+     * Връща броя резултати, пропуснати, защото базата данни не ги приема
+     * 
+     * @return брой пропуснати резултати
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+    
+    private static long key(int leaderboardId, int playerId) {
+        return ((long) leaderboardId << 32) | (playerId & 0xFFFFFFFFL);
+    }
+    
+    private static int leaderboardIdOf(long key) {
+        return (int) (key >>> 32);
+    }
+    
+    private static int playerIdOf(long key) {
+        return (int) key;
+    }
+    
+    /**
+     * Проверява дали грешката е нарушение на ограничение от конкретен ред
+     * (SQLState клас 23), а не временна грешка или грешка в схемата
+     */
+    private static boolean isIntegrityViolation(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return false;
+            }
+            if (cause instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (state != null && state.startsWith("23")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private ScheduledExecutorService ensureScheduler() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor == null) {
+            synchronized (schedulerLock) {
+                executor = scheduler;
+                if (executor == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    ScheduledThreadPoolExecutor created = new ScheduledThreadPoolExecutor(Math.min(shards.length, 4), runnable -> {
+                        Thread thread = new Thread(runnable, "leaderboard-writer-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    // Частите се записват независимо една от друга, на отделни връзки
+                    for (Shard shard : shards) {
+                        created.scheduleWithFixedDelay(shard::flush, flushIntervalMillis, flushIntervalMillis,
+                                                       TimeUnit.MILLISECONDS);
+                    }
+                    Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "leaderboard-writer-shutdown"));
+                    scheduler = executor = created;
+                }
+            }
+        }
+        return executor;
+    }
+    
+    /**
+     * Най-добър чакащ резултат на играч и моментът на подаването му
+     */
+    static final class PendingScore {
+        final int score;
+        final LocalDateTime date;
+        
+        private PendingScore(int score, LocalDateTime date) {
+            this.score = score;
+            this.date = date;
+        }
+    }
+    
+    /**
+     * Чакащи резултати на една част
+     */
+    private final class Shard {
+        private final Map<Long, PendingScore> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean flushQueued = new AtomicBoolean();
+        
+        synchronized boolean flush() {
+            if (pending.isEmpty()) {
+                return true;
+            }
+            
+            // Броячите се четат преди резултатите, за да се види всяко изтриване след тях
+            Map<Integer, Integer> generations = new HashMap<>(discardGenerations);
+            Map<Long, PendingScore> batch = new HashMap<>(pending);
+            
+            List<Map.Entry<Long, PendingScore>> rows = new ArrayList<>();
+            for (Map.Entry<Long, PendingScore> entry : batch.entrySet()) {
+                int leaderboardId = leaderboardIdOf(entry.getKey());
+                if (generations.getOrDefault(leaderboardId, 0).equals(discardGenerations.getOrDefault(leaderboardId, 0))) {
+                    rows.add(entry);
+                }
+            }
+            
+            try (Connection connection = ConnectionPool.getInstance().getConnection();
+                 PreparedStatement statement = connection.prepareStatement(LeaderboardDAO.ENTRY_UPSERT_QUERY)) {
+                try {
+                    for (Map.Entry<Long, PendingScore> row : rows) {
+                        bind(statement, row);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                } catch (SQLException e) {
+                    if (!isIntegrityViolation(e)) {
+                        throw e;
+                    }
+                    
+                    // Пакетът е отхвърлен заради някой ред - всеки ред се записва отделно
+                    // (повторният запис на вече приет ред не променя нищо заради GREATEST)
+                    statement.clearBatch();
+                    Map<Map.Entry<Long, PendingScore>, SQLException> rejected = new HashMap<>();
+                    for (Map.Entry<Long, PendingScore> row : rows) {
+                        try {
+                            bind(statement, row);
+                            statement.executeUpdate();
+                        } catch (SQLException rowError) {
+                            if (!isIntegrityViolation(rowError)) {
+                                throw rowError;
+                            }
+                            rejected.put(row, rowError);
+                        }
+                    }
+                    
+                    for (Map.Entry<Map.Entry<Long, PendingScore>, SQLException> failure : rejected.entrySet()) {
+                        long key = failure.getKey().getKey();
+                        droppedCount.incrementAndGet();
+                        System.err.println("Пропуснат резултат в класация " + leaderboardIdOf(key)
+                                + " за играч " + playerIdOf(key) + ": " + failure.getValue().getMessage());
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Грешка при запис на резултати в класации: " + e.getMessage());
+                return false;
+            }
+            
+            // По-добрите резултати, отбелязани по време на записа, остават за следващия път;
+            // пропуснатите заради изтриване се премахват от discard
+            for (Map.Entry<Long, PendingScore> entry : rows) {
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+            return true;
+        }
+        
+        private void bind(PreparedStatement statement, Map.Entry<Long, PendingScore> row) throws SQLException {
+            PendingScore pendingScore = row.getValue();
+            LeaderboardDAO.bindEntryUpsert(statement, leaderboardIdOf(row.getKey()), playerIdOf(row.getKey()),
+                                           pendingScore.score, Timestamp.valueOf(pendingScore.date));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.knowledgeheroes.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Времеви прозорец на класация.
+ * 
+ * Всеки прозорец разделя времето на периоди; резултатите от различни периоди
+ * не се сравняват помежду си, а нов период започва с празна класация.
+ * Периодът се идентифицира с датата на първия си ден.
+ */
+public enum LeaderboardWindow {
+    /** Календарен ден */
+    DAILY,
+    /** Седмица от понеделник до неделя */
+    WEEKLY,
+    /** Сезон - календарно тримесечие */
+    SEASONAL;
+    
+    /**
+     * Връща началото на периода, в който попада дата
+     * 
+     * @param date дата
+     * @return първият ден на периода
+     */
+    public LocalDate periodStart(LocalDate date) {
+        switch (this) {
+            case DAILY:
+                return date;
+            case WEEKLY:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            default:
+                int firstMonthOfQuarter = (date.getMonthValue() - 1) / 3 * 3 + 1;
+                return LocalDate.of(date.getYear(), firstMonthOfQuarter, 1);
+        }
+    }
+    
+    /**
+     * Връща началото на текущия период
+     * 
+     * @return първият ден на текущия период
+     */
+    public LocalDate currentPeriodStart() {
+        return periodStart(LocalDate.now());
+    }
+    
+    /**
+     * Връща началото на период, отместен с даден брой периоди назад
+     * 
+     * @param periodStart начало на период
+     * @param periods брой периоди назад
+     * @return първият ден на по-ранния период
+     */
+    public LocalDate minusPeriods(LocalDate periodStart, int periods) {
+        switch (this) {
+            case DAILY:
+                return periodStart.minusDays(periods);
+            case WEEKLY:
+                return periodStart.minusWeeks(periods);
+            default:
+                return periodStart.minusMonths(3L * periods);
+        }
+    }
+}
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.knowledgeheroes.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import com.knowledgeheroes.dao.LevelDAO;
 
@@ -9,6 +10,16 @@ import com.knowledgeheroes.dao.LevelDAO;
  * Клас модел, представящ ниво в играта
  */
 public class Level {
+    /**
+     * Нивото няма изискване за отключване
+     */
+    public static final int NO_REQUIREMENT = 0;
+    
+    /**
+     * Изискването за отключване не може да бъде анализирано; нивото остава заключено
+     */
+    public static final int INVALID_REQUIREMENT = -1;
+    
     private int levelId;
     private String name;
     private String description;
@@ -16,6 +27,9 @@ public class Level {
     private String unlockRequirement;
     private String backgroundPath;
     
+    // Анализираното изискване за отключване; изчислява се при първо използване
+    private Integer requiredLevelId;
+    
     // Връзки към други обекти
     private List<Puzzle> puzzles;
     private List<Quiz> quizzes;
@@ -151,6 +165,48 @@ public class Level {
      */
     public void setUnlockRequirement(String unlockRequirement) {
         this.unlockRequirement = unlockRequirement;
+        this.requiredLevelId = null;
+    }
+    
+    /**
+     * Връща ID на нивото, което трябва да бъде завършено, за да се отключи това ниво.
+     * Изискването се анализира веднъж и се пази до следваща промяна.
+     * 
+     * @return ID на изискваното ниво, NO_REQUIREMENT или INVALID_REQUIREMENT
+     */
+    public int getRequiredLevelId() {
+        if (requiredLevelId == null) {
+            requiredLevelId = parseRequirement(unlockRequirement);
+        }
+        return requiredLevelId;
+    }
+    
+    /**
+     * Анализира изискване за отключване във формат "level:ID". Както досега, се
+     * чете само частта след първото двоеточие, а следващите части се пренебрегват
+     * ("level:5:x" изисква ниво 5).
+     * 
+     * @param requirement изискване за отключване
+     * @return ID на изискваното ниво, NO_REQUIREMENT или INVALID_REQUIREMENT
+     */
+    public static int parseRequirement(String requirement) {
+        if (requirement == null || requirement.isEmpty()) {
+            return NO_REQUIREMENT;
+        }
+        
+        if (requirement.startsWith("level:")) {
+            String[] parts = requirement.split(":");
+            if (parts.length > 1) {
+                try {
+                    int levelId = Integer.parseInt(parts[1]);
+                    return levelId > 0 ? levelId : INVALID_REQUIREMENT;
+                } catch (NumberFormatException e) {
+                    return INVALID_REQUIREMENT;
+                }
+            }
+        }
+        
+        return INVALID_REQUIREMENT;
     }
     
     /**
@@ -329,29 +385,33 @@ public class Level {
      * @return true ако нивото е отключено, false ако не е
      */
     public boolean isUnlocked(int playerId, LevelDAO levelDao) {
+        int required = getRequiredLevelId();
+        
         // Ако няма изискване за отключване, нивото е отключено по подразбиране
-        if (unlockRequirement == null || unlockRequirement.isEmpty()) {
+        if (required == NO_REQUIREMENT) {
             return true;
         }
         
-        // Ако изискването е за завършване на предишно ниво
-        if (unlockRequirement.startsWith("level:")) {
-            String[] parts = unlockRequirement.split(":");
-            if (parts.length > 1) {
-                try {
-                    int requiredLevelId = Integer.parseInt(parts[1]);
-                    
-                    // Проверка дали играчът е завършил изискваното ниво
-                    return levelDao.hasPlayerProgress(playerId, requiredLevelId) && 
-                           levelDao.getPlayerProgress(playerId, requiredLevelId).isCompleted();
-                } catch (NumberFormatException e) {
-                    return false;
-                }
-            }
+        // По подразбиране нивото е заключено, ако не може да се анализира изискването
+        if (required == INVALID_REQUIREMENT) {
+            return false;
         }
         
-        // По подразбиране нивото е заключено, ако не може да се анализира изискването
-        return false;
+        // Проверка дали играчът е завършил изискваното ниво
+        LevelDAO.LevelProgress progress = levelDao.getPlayerProgress(playerId, required);
+        return progress != null && progress.isCompleted();
+    }
+    
+    /**
+     * Проверява дали нивото е отключено спрямо вече заредените завършени нива на играча
+     * 
+     * @param completedLevelIds ID на завършените от играча нива
+     * @return true ако нивото е отключено, false ако не е
+     */
+    public boolean isUnlocked(Set<Integer> completedLevelIds) {
+        int required = getRequiredLevelId();
+        return required == NO_REQUIREMENT ||
+               (required != INVALID_REQUIREMENT && completedLevelIds.contains(required));
     }
     
     /**
@@ -1,26 +1,28 @@
 package com.knowledgeheroes.dao;
 
-import com.knowledgeheroes.config.DatabaseConfig;
+import com.knowledgeheroes.config.ConnectionPool;
+import com.knowledgeheroes.config.UnitOfWork;
 import com.knowledgeheroes.model.Level;
+import com.knowledgeheroes.model.LevelUnlockGraph;
 import com.knowledgeheroes.model.Puzzle;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Data Access Object за работа с нива в базата данни
  */
 public class LevelDAO {
-    private Connection connection;
-    
-    /**
-     * Конструктор, който инициализира връзката с базата данни
-     */
-    public LevelDAO() {
-        this.connection = DatabaseConfig.getConnection();
-    }
+    // Граф на отключване, общ за всички инстанции на DAO-то; строи се при първо използване
+    private static final AtomicLong unlockGraphVersion = new AtomicLong();
+    private static volatile UnlockGraphHolder unlockGraph;
     
     /**
      * Създава ново ниво в базата данни
@@ -29,41 +31,43 @@ public class LevelDAO {
      * @return true при успех, false при грешка
      */
     public boolean createLevel(Level level) {
-        String query = "INSERT INTO levels (name, description, difficulty, unlock_requirement, background_path) VALUES (?, ?, ?, ?, ?)";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setString(1, level.getName());
-            statement.setString(2, level.getDescription());
-            statement.setString(3, level.getDifficulty());
-            statement.setString(4, level.getUnlockRequirement());
-            statement.setString(5, level.getBackgroundPath());
-            
-            int affectedRows = statement.executeUpdate();
+        // Нивото и пъзелите му се записват в една транзакция
+        return UnitOfWork.execute(() -> {
+            String query = "INSERT INTO levels (name, description, difficulty, unlock_requirement, background_path) VALUES (?, ?, ?, ?, ?)";
             
-            if (affectedRows > 0) {
-                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        int levelId = generatedKeys.getInt(1);
-                        level.setLevelId(levelId);
-                        
-                        // Съхранение на пъзелите на нивото, ако има такива
-                        if (level.getPuzzles() != null && !level.getPuzzles().isEmpty()) {
-                            PuzzleDAO puzzleDAO = new PuzzleDAO();
-                            for (Puzzle puzzle : level.getPuzzles()) {
-                                puzzle.setLevelId(levelId);
-                                puzzleDAO.createPuzzle(puzzle);
+            try (Connection connection = ConnectionPool.getInstance().getConnection();
+                 PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                statement.setString(1, level.getName());
+                statement.setString(2, level.getDescription());
+                statement.setString(3, level.getDifficulty());
+                statement.setString(4, level.getUnlockRequirement());
+                statement.setString(5, level.getBackgroundPath());
+                
+                int affectedRows = statement.executeUpdate();
+                
+                if (affectedRows > 0) {
+                    try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            int levelId = generatedKeys.getInt(1);
+                            level.setLevelId(levelId);
+                            
+                            // Съхранение на пъзелите на нивото, ако има такива - на същата връзка,
+                            // така че неуспешен пъзел отменя и нивото
+                            if (level.getPuzzles() != null && !level.getPuzzles().isEmpty()) {
+                                insertPuzzles(connection, levelId, level.getPuzzles());
                             }
+                            
+                            invalidateUnlockGraph();
+                            return true;
                         }
-                        
-                        return true;
                     }
                 }
+                return false;
+            } catch (SQLException e) {
+                System.err.println("Грешка при създаване на ниво: " + e.getMessage());
+                return false;
             }
-            return false;
-        } catch (SQLException e) {
-            System.err.println("Грешка при създаване на ниво: " + e.getMessage());
-            return false;
-        }
+        });
     }
     
     /**
@@ -75,20 +79,22 @@ public class LevelDAO {
     public Level getLevelById(int levelId) {
         String query = "SELECT * FROM levels WHERE level_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, levelId);
             
+            Level level = null;
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    Level level = mapResultSetToLevel(resultSet);
-                    
-                    // Зареждане на пъзелите на нивото
-                    PuzzleDAO puzzleDAO = new PuzzleDAO();
-                    level.setPuzzles(puzzleDAO.getPuzzlesByLevelId(levelId));
-                    
-                    return level;
+                    level = mapResultSetToLevel(resultSet);
                 }
             }
+            
+            if (level != null) {
+                // Зареждане на пъзелите на нивото по същия начин като за списък от нива
+                loadPuzzles(connection, List.of(level));
+                return level;
+            }
         } catch (SQLException e) {
             System.err.println("Грешка при търсене на ниво по ID: " + e.getMessage());
         }
@@ -102,23 +108,31 @@ public class LevelDAO {
      * @return списък с Level обекти
      */
     public List<Level> getAllLevels() {
+        return getAllLevels(true);
+    }
+    
+    /**
+     * Взима списък с всички нива
+     * 
+     * @param withPuzzles дали да се заредят и пъзелите на нивата
+     * @return списък с Level обекти
+     */
+    public List<Level> getAllLevels(boolean withPuzzles) {
         List<Level> levels = new ArrayList<>();
         String query = "SELECT * FROM levels ORDER BY level_id";
         
-        try (Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(query)) {
-            
-            while (resultSet.next()) {
-                Level level = mapResultSetToLevel(resultSet);
-                levels.add(level);
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery(query)) {
+                while (resultSet.next()) {
+                    Level level = mapResultSetToLevel(resultSet);
+                    levels.add(level);
+                }
             }
             
-            // Зареждане на пъзелите за всички нива
-            if (!levels.isEmpty()) {
-                PuzzleDAO puzzleDAO = new PuzzleDAO();
-                for (Level level : levels) {
-                    level.setPuzzles(puzzleDAO.getPuzzlesByLevelId(level.getLevelId()));
-                }
+            // Зареждане на пъзелите за всички нива с една заявка
+            if (withPuzzles && !levels.isEmpty()) {
+                loadPuzzles(connection, levels);
             }
         } catch (SQLException e) {
             System.err.println("Грешка при извличане на всички нива: " + e.getMessage());
@@ -136,7 +150,8 @@ public class LevelDAO {
     public boolean updateLevel(Level level) {
         String query = "UPDATE levels SET name = ?, description = ?, difficulty = ?, unlock_requirement = ?, background_path = ? WHERE level_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, level.getName());
             statement.setString(2, level.getDescription());
             statement.setString(3, level.getDifficulty());
@@ -145,6 +160,7 @@ public class LevelDAO {
             statement.setInt(6, level.getLevelId());
             
             int affectedRows = statement.executeUpdate();
+            invalidateUnlockGraph();
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Грешка при актуализиране на ниво: " + e.getMessage());
@@ -159,22 +175,26 @@ public class LevelDAO {
      * @return true при успех, false при грешка
      */
     public boolean deleteLevel(int levelId) {
-        // Изтриване на пъзелите за нивото
-        PuzzleDAO puzzleDAO = new PuzzleDAO();
-        puzzleDAO.deletePuzzlesByLevelId(levelId);
-        
-        // Изтриване на нивото
-        String query = "DELETE FROM levels WHERE level_id = ?";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, levelId);
+        // Пъзелите и нивото се изтриват в една транзакция
+        return UnitOfWork.execute(() -> {
+            String query = "DELETE FROM levels WHERE level_id = ?";
             
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            System.err.println("Грешка при изтриване на ниво: " + e.getMessage());
-            return false;
-        }
+            try (Connection connection = ConnectionPool.getInstance().getConnection();
+                 PreparedStatement statement = connection.prepareStatement(query)) {
+                // Изтриване на пъзелите за нивото
+                deletePuzzles(connection, levelId);
+                
+                // Изтриване на нивото
+                statement.setInt(1, levelId);
+                
+                int affectedRows = statement.executeUpdate();
+                invalidateUnlockGraph();
+                return affectedRows > 0;
+            } catch (SQLException e) {
+                System.err.println("Грешка при изтриване на ниво: " + e.getMessage());
+                return false;
+            }
+        });
     }
     
     /**
@@ -184,10 +204,22 @@ public class LevelDAO {
      * @return списък с Level обекти
      */
     public List<Level> getLevelsByDifficulty(String difficulty) {
+        return getLevelsByDifficulty(difficulty, true);
+    }
+    
+    /**
+     * Взима списък с нива по трудност
+     * 
+     * @param difficulty трудност на нивата
+     * @param withPuzzles дали да се заредят и пъзелите на нивата
+     * @return списък с Level обекти
+     */
+    public List<Level> getLevelsByDifficulty(String difficulty, boolean withPuzzles) {
         List<Level> levels = new ArrayList<>();
         String query = "SELECT * FROM levels WHERE difficulty = ? ORDER BY level_id";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, difficulty);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -195,14 +227,11 @@ public class LevelDAO {
                     Level level = mapResultSetToLevel(resultSet);
                     levels.add(level);
                 }
-                
-                // Зареждане на пъзелите за всички нива
-                if (!levels.isEmpty()) {
-                    PuzzleDAO puzzleDAO = new PuzzleDAO();
-                    for (Level level : levels) {
-                        level.setPuzzles(puzzleDAO.getPuzzlesByLevelId(level.getLevelId()));
-                    }
-                }
+            }
+            
+            // Зареждане на пъзелите за всички нива с една заявка
+            if (withPuzzles && !levels.isEmpty()) {
+                loadPuzzles(connection, levels);
             }
         } catch (SQLException e) {
             System.err.println("Грешка при извличане на нива по трудност: " + e.getMessage());
@@ -212,49 +241,101 @@ public class LevelDAO {
     }
     
     /**
-     * Записва прогрес на играч за ниво
+     * Зарежда пъзелите на няколко нива с една заявка и ги разпределя по level_id
      * 
-     * @param playerId ID на играча
+     * @param connection връзка към базата данни
+     * @param levels нива, на които се задават пъзелите
+     */
+    private void loadPuzzles(Connection connection, List<Level> levels) throws SQLException {
+        Map<Integer, Level> levelsById = new HashMap<>();
+        StringBuilder placeholders = new StringBuilder();
+        for (Level level : levels) {
+            level.setPuzzles(new ArrayList<>());
+            levelsById.put(level.getLevelId(), level);
+            placeholders.append(placeholders.length() == 0 ? "?" : ", ?");
+        }
+        
+        String query = "SELECT * FROM puzzles WHERE level_id IN (" + placeholders + ") ORDER BY level_id, puzzle_id";
+        
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            int index = 1;
+            for (Level level : levels) {
+                statement.setInt(index++, level.getLevelId());
+            }
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Puzzle puzzle = mapResultSetToPuzzle(resultSet);
+                    Level level = levelsById.get(puzzle.getLevelId());
+                    if (level != null) {
+                        level.getPuzzles().add(puzzle);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Записва пъзелите на ниво с една пакетна заявка
+     * 
+     * @param connection връзка към базата данни
      * @param levelId ID на нивото
-     * @param completed дали нивото е завършено
-     * @param stars брой звезди (0-3)
-     * @param score резултат
-     * @return true при успех, false при грешка
+     * @param puzzles пъзели, на които се задават ниво и ID
+     * @throws SQLException ако някой пъзел не е записан
      */
-    public boolean savePlayerProgress(int playerId, int levelId, boolean completed, int stars, int score) {
-        // Проверка дали вече има запис за този играч и ниво
-        if (hasPlayerProgress(playerId, levelId)) {
-            // Актуализиране на съществуващия запис
-            return updatePlayerProgress(playerId, levelId, completed, stars, score);
-        } else {
-            // Създаване на нов запис
-            String query = "INSERT INTO player_progress (player_id, level_id, completed, completion_date, stars, score) VALUES (?, ?, ?, ?, ?, ?)";
+    private void insertPuzzles(Connection connection, int levelId, List<Puzzle> puzzles) throws SQLException {
+        String query = "INSERT INTO puzzles (level_id, name, description, puzzle_type, data, solution, time_limit) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        
+        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            for (Puzzle puzzle : puzzles) {
+                puzzle.setLevelId(levelId);
+                statement.setInt(1, levelId);
+                statement.setString(2, puzzle.getName());
+                statement.setString(3, puzzle.getDescription());
+                statement.setString(4, puzzle.getPuzzleType());
+                statement.setString(5, puzzle.getData());
+                statement.setString(6, puzzle.getSolution());
+                statement.setInt(7, puzzle.getTimeLimit());
+                statement.addBatch();
+            }
             
-            try (PreparedStatement statement = connection.prepareStatement(query)) {
-                statement.setInt(1, playerId);
-                statement.setInt(2, levelId);
-                statement.setBoolean(3, completed);
-                
-                if (completed) {
-                    statement.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
-                } else {
-                    statement.setNull(4, Types.TIMESTAMP);
+            for (int affectedRows : statement.executeBatch()) {
+                if (affectedRows == 0) {
+                    throw new SQLException("Пъзел на ниво " + levelId + " не е записан");
+                }
+            }
+            
+            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                for (Puzzle puzzle : puzzles) {
+                    if (!generatedKeys.next()) {
+                        break;
+                    }
+                    puzzle.setPuzzleId(generatedKeys.getInt(1));
                 }
-                
-                statement.setInt(5, stars);
-                statement.setInt(6, score);
-                
-                int affectedRows = statement.executeUpdate();
-                return affectedRows > 0;
-            } catch (SQLException e) {
-                System.err.println("Грешка при записване на прогрес на играч: " + e.getMessage());
-                return false;
             }
         }
     }
     
     /**
-     * Актуализира прогрес на играч за ниво
+     * Изтрива пъзелите на ниво
+     * 
+     * @param connection връзка към базата данни
+     * @param levelId ID на нивото
+     */
+    private void deletePuzzles(Connection connection, int levelId) throws SQLException {
+        String query = "DELETE FROM puzzles WHERE level_id = ?";
+        
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, levelId);
+            statement.executeUpdate();
+        }
+    }
+    
+    /**
+     * Записва прогрес на играч за ниво с една заявка. При повторно преминаване се пазят
+     * най-добрите звезди и резултат, а веднъж завършено ниво остава завършено с датата
+     * на първото завършване. Изисква уникалния ключ (player_id, level_id) в player_progress -
+     * виж migrations/player_progress_unique.sql.
      * 
      * @param playerId ID на играча
      * @param levelId ID на нивото
@@ -263,35 +344,38 @@ public class LevelDAO {
      * @param score резултат
      * @return true при успех, false при грешка
      */
-    private boolean updatePlayerProgress(int playerId, int levelId, boolean completed, int stars, int score) {
-        String query;
-        
-        if (completed) {
-            query = "UPDATE player_progress SET completed = ?, completion_date = ?, stars = ?, score = ? WHERE player_id = ? AND level_id = ?";
-        } else {
-            query = "UPDATE player_progress SET completed = ?, stars = ?, score = ? WHERE player_id = ? AND level_id = ?";
-        }
+    public boolean savePlayerProgress(int playerId, int levelId, boolean completed, int stars, int score) {
+        // completion_date се изчислява преди completed, защото MySQL прилага присвояванията отляво надясно;
+        // новите стойности се подават и като параметри на UPDATE частта вместо VALUES(...),
+        // която е остаряла от MySQL 8.0.20
+        String query = "INSERT INTO player_progress (player_id, level_id, completed, completion_date, stars, score) VALUES (?, ?, ?, ?, ?, ?) " +
+                      "ON DUPLICATE KEY UPDATE " +
+                      "completion_date = CASE WHEN completed THEN completion_date ELSE ? END, " +
+                      "completed = completed OR ?, " +
+                      "stars = GREATEST(stars, ?), " +
+                      "score = GREATEST(score, ?)";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setBoolean(1, completed);
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            Timestamp completionDate = completed ? Timestamp.valueOf(LocalDateTime.now()) : null;
             
-            if (completed) {
-                statement.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
-                statement.setInt(3, stars);
-                statement.setInt(4, score);
-                statement.setInt(5, playerId);
-                statement.setInt(6, levelId);
-            } else {
-                statement.setInt(2, stars);
-                statement.setInt(3, score);
-                statement.setInt(4, playerId);
-                statement.setInt(5, levelId);
-            }
+            statement.setInt(1, playerId);
+            statement.setInt(2, levelId);
+            statement.setBoolean(3, completed);
+            statement.setTimestamp(4, completionDate);
+            statement.setInt(5, stars);
+            statement.setInt(6, score);
             
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
+            statement.setTimestamp(7, completionDate);
+            statement.setBoolean(8, completed);
+            statement.setInt(9, stars);
+            statement.setInt(10, score);
+            
+            // При непроменен запис MySQL връща 0 засегнати реда, което също е успех
+            statement.executeUpdate();
+            return true;
         } catch (SQLException e) {
-            System.err.println("Грешка при актуализиране на прогрес на играч: " + e.getMessage());
+            System.err.println("Грешка при записване на прогрес на играч: " + e.getMessage());
             return false;
         }
     }
@@ -306,7 +390,8 @@ public class LevelDAO {
     public boolean hasPlayerProgress(int playerId, int levelId) {
         String query = "SELECT COUNT(*) FROM player_progress WHERE player_id = ? AND level_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, playerId);
             statement.setInt(2, levelId);
             
@@ -332,7 +417,8 @@ public class LevelDAO {
     public LevelProgress getPlayerProgress(int playerId, int levelId) {
         String query = "SELECT * FROM player_progress WHERE player_id = ? AND level_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, playerId);
             statement.setInt(2, levelId);
             
@@ -371,7 +457,8 @@ public class LevelDAO {
         List<LevelProgress> progressList = new ArrayList<>();
         String query = "SELECT * FROM player_progress WHERE player_id = ? ORDER BY level_id";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, playerId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -399,6 +486,106 @@ public class LevelDAO {
         return progressList;
     }
     
+    /**
+     * Взима ID на всички нива, завършени от играч, с една заявка
+     * 
+     * @param playerId ID на играча
+     * @return множество с ID на завършените нива
+     */
+    public Set<Integer> getCompletedLevelIds(int playerId) {
+        Set<Integer> levelIds = new HashSet<>();
+        String query = "SELECT level_id FROM player_progress WHERE player_id = ? AND completed = TRUE";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, playerId);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    levelIds.add(resultSet.getInt("level_id"));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при извличане на завършени нива на играч: " + e.getMessage());
+        }
+        
+        return levelIds;
+    }
+    
+    /**
+     * Взима ID на всички отключени за играча нива: една заявка за завършените нива
+     * и едно обхождане на графа на отключване
+     * 
+     * @param playerId ID на играча
+     * @return множество с ID на отключените нива
+     */
+    public Set<Integer> getUnlockedLevelIds(int playerId) {
+        LevelUnlockGraph graph = getUnlockGraph();
+        if (graph == null) {
+            return new HashSet<>();
+        }
+        
+        return graph.getUnlockedLevelIds(getCompletedLevelIds(playerId));
+    }
+    
+    /**
+     * Връща графа на отключване на нивата. Графът се строи веднъж и се преизгражда
+     * след създаване, промяна или изтриване на ниво.
+     * 
+     * @return граф на отключване или null при грешка
+     */
+    public LevelUnlockGraph getUnlockGraph() {
+        UnlockGraphHolder current = unlockGraph;
+        long version = unlockGraphVersion.get();
+        if (current != null && current.version == version) {
+            return current.graph;
+        }
+        
+        LevelUnlockGraph graph = loadUnlockGraph();
+        // Граф, построен по време на промяна, се използва само за текущата заявка
+        if (graph != null && unlockGraphVersion.get() == version) {
+            unlockGraph = new UnlockGraphHolder(graph, version);
+        }
+        return graph;
+    }
+    
+    /**
+     * Маркира графа на отключване като остарял
+     */
+    public static void invalidateUnlockGraph() {
+        unlockGraphVersion.incrementAndGet();
+        unlockGraph = null;
+        // Граф, зареден преди потвърждаването на транзакцията, също е остарял
+        UnitOfWork.afterCompletion(LevelDAO::invalidateUnlockGraph);
+    }
+    
+    /**
+     * Зарежда изискванията за отключване на всички нива и строи графа
+     * 
+     * @return граф на отключване или null при грешка
+     */
+    private LevelUnlockGraph loadUnlockGraph() {
+        List<Level> levels = new ArrayList<>();
+        String query = "SELECT level_id, unlock_requirement FROM levels ORDER BY level_id";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            
+            while (resultSet.next()) {
+                Level level = new Level();
+                level.setLevelId(resultSet.getInt("level_id"));
+                level.setUnlockRequirement(resultSet.getString("unlock_requirement"));
+                levels.add(level);
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при зареждане на изискванията за отключване на нивата: " + e.getMessage());
+            return null;
+        }
+        
+        return new LevelUnlockGraph(levels);
+    }
+    
     /**
      * Изтрива прогрес на играч за ниво
      * 
@@ -409,7 +596,8 @@ public class LevelDAO {
     public boolean deletePlayerProgress(int playerId, int levelId) {
         String query = "DELETE FROM player_progress WHERE player_id = ? AND level_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, playerId);
             statement.setInt(2, levelId);
             
@@ -439,6 +627,39 @@ public class LevelDAO {
         return level;
     }
     
+    /**
+     * Създава Puzzle обект от ResultSet
+     * 
+     * @param resultSet резултат от заявка
+     * @return Puzzle обект
+     */
+    private Puzzle mapResultSetToPuzzle(ResultSet resultSet) throws SQLException {
+        Puzzle puzzle = new Puzzle();
+        puzzle.setPuzzleId(resultSet.getInt("puzzle_id"));
+        puzzle.setLevelId(resultSet.getInt("level_id"));
+        puzzle.setName(resultSet.getString("name"));
+        puzzle.setDescription(resultSet.getString("description"));
+        puzzle.setPuzzleType(resultSet.getString("puzzle_type"));
+        puzzle.setData(resultSet.getString("data"));
+        puzzle.setSolution(resultSet.getString("solution"));
+        puzzle.setTimeLimit(resultSet.getInt("time_limit"));
+        
+        return puzzle;
+    }
+    
+    /**
+     * Граф на отключване заедно с версията, при която е построен
+     */
+    private static class UnlockGraphHolder {
+        private final LevelUnlockGraph graph;
+        private final long version;
+        
+        private UnlockGraphHolder(LevelUnlockGraph graph, long version) {
+            this.graph = graph;
+            this.version = version;
+        }
+    }
+    
     /**
      * Вътрешен клас за съхранение на прогрес на играч за ниво
      */
@@ -0,0 +1,164 @@
+package com.knowledgeheroes.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Граф на зависимостите между нивата, построен веднъж от изискванията им за отключване.
+ * 
+ * Всяко ниво сочи към нивото, което трябва да бъде завършено, за да се отключи.
+ * Нивата се пазят в топологичен ред (изискваното ниво е преди зависимите от него),
+ * така че състоянието на всички нива за даден играч се изчислява с едно обхождане
+ * на множеството му от завършени нива.
+ */
+public final class LevelUnlockGraph {
+    private final Map<Integer, Integer> requiredLevelIds;
+    private final Map<Integer, List<Integer>> dependentLevelIds;
+    private final List<Integer> orderedLevelIds;
+    
+    /**
+     * Създава граф от списък с нива
+     * 
+     * @param levels всички нива
+     */
+    public LevelUnlockGraph(List<Level> levels) {
+        Map<Integer, Integer> required = new HashMap<>();
+        Map<Integer, List<Integer>> dependents = new HashMap<>();
+        
+        for (Level level : levels) {
+            int requiredLevelId = level.getRequiredLevelId();
+            required.put(level.getLevelId(), requiredLevelId);
+            if (requiredLevelId > 0) {
+                dependents.computeIfAbsent(requiredLevelId, key -> new ArrayList<>()).add(level.getLevelId());
+            }
+        }
+        
+        this.requiredLevelIds = Collections.unmodifiableMap(required);
+        this.dependentLevelIds = Collections.unmodifiableMap(dependents);
+        this.orderedLevelIds = Collections.unmodifiableList(sortTopologically(levels, required, dependents));
+    }
+    
+    /**
+     * Проверява дали ниво е отключено
+     * 
+     * @param levelId ID на нивото
+     * @param completedLevelIds ID на завършените от играча нива
+     * @return true ако нивото е отключено, false ако не е или е непознато
+     */
+    public boolean isUnlocked(int levelId, Set<Integer> completedLevelIds) {
+        Integer required = requiredLevelIds.get(levelId);
+        if (required == null) {
+            return false;
+        }
+        
+        return required == Level.NO_REQUIREMENT ||
+               (required != Level.INVALID_REQUIREMENT && completedLevelIds.contains(required));
+    }
+    
+    /**
+     * Връща всички отключени нива за играч с едно обхождане на графа
+     * 
+     * @param completedLevelIds ID на завършените от играча нива
+     * @return ID на отключените нива в топологичен ред
+     */
+    public Set<Integer> getUnlockedLevelIds(Set<Integer> completedLevelIds) {
+        Set<Integer> unlocked = new LinkedHashSet<>();
+        for (int levelId : orderedLevelIds) {
+            if (isUnlocked(levelId, completedLevelIds)) {
+                unlocked.add(levelId);
+            }
+        }
+        return unlocked;
+    }
+    
+    /**
+     * Връща нивата, които изискват завършване на дадено ниво
+     * 
+     * @param levelId ID на нивото
+     * @return ID на зависимите нива
+     */
+    public List<Integer> getLevelsUnlockedBy(int levelId) {
+        List<Integer> dependents = dependentLevelIds.get(levelId);
+        return dependents != null ? Collections.unmodifiableList(dependents) : Collections.emptyList();
+    }
+    
+    /**
+     * Връща ID на нивото, което трябва да бъде завършено, за да се отключи дадено ниво
+     * 
+     * @param levelId ID на нивото
+     * @return ID на изискваното ниво, Level.NO_REQUIREMENT или Level.INVALID_REQUIREMENT
+     */
+    public int getRequiredLevelId(int levelId) {
+        return requiredLevelIds.getOrDefault(levelId, Level.INVALID_REQUIREMENT);
+    }
+    
+    /**
+     * Връща нивата в топологичен ред
+     * 
+     * @return ID на нивата
+     */
+    public List<Integer> getOrderedLevelIds() {
+        return orderedLevelIds;
+    }
+    
+    /**
+     * Връща броя нива в графа
+     * 
+     * @return брой нива
+     */
+    public int size() {
+        return requiredLevelIds.size();
+    }
+    
+    /**
+     * Подрежда нивата така, че всяко ниво да е след изискваното от него.
+     * Нива в цикъл не могат да бъдат отключени и се добавят накрая.
+     */
+    private static List<Integer> sortTopologically(List<Level> levels, Map<Integer, Integer> required,
+                                                   Map<Integer, List<Integer>> dependents) {
+        List<Integer> ordered = new ArrayList<>();
+        Set<Integer> visited = new LinkedHashSet<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        
+        // Начални нива: без изискване, с невалидно изискване или с изискване за непознато ниво
+        for (Level level : levels) {
+            Integer requiredLevelId = required.get(level.getLevelId());
+            if (requiredLevelId <= 0 || !required.containsKey(requiredLevelId)) {
+                queue.add(level.getLevelId());
+            }
+        }
+        
+        while (!queue.isEmpty()) {
+            int levelId = queue.poll();
+            if (!visited.add(levelId)) {
+                continue;
+            }
+            
+            ordered.add(levelId);
+            for (int dependent : dependents.getOrDefault(levelId, Collections.emptyList())) {
+                queue.add(dependent);
+            }
+        }
+        
+        for (Level level : levels) {
+            if (visited.add(level.getLevelId())) {
+                ordered.add(level.getLevelId());
+            }
+        }
+        return ordered;
+    }
+    
+    @Override
+    public String toString() {
+        return "LevelUnlockGraph{" +
+               "levels=" + requiredLevelIds.size() +
+               '}';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,557 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.config.UnitOfWork;
+import com.knowledgeheroes.model.Player;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Ограничен кеш на играчи с три индекса (ID, потребителско име и email) към един запис.
+ * 
+ * Изгонването следва W-TinyLFU: новите записи влизат в малък LRU прозорец (1%),
+ * а при излизане от него се допускат в основната част (SLRU с пробационен и
+ * защитен сегмент) само ако се използват по-често от записа, който биха
+ * изместили. Честотата се оценява с Count-Min скица с 4-битови броячи, които
+ * периодично се намаляват наполовина, така че старата популярност отшумява.
+ * Всеки запис изтича и след зададено време от зареждането си.
+ * 
+ * Четенето не заключва: индексите са ConcurrentHashMap, а използванията се
+ * отбелязват в буфер, разделен на ленти по нишки, и се прилагат към скицата и
+ * сегментите наведнъж, когато някоя лента се напълни или при запис. Когато
+ * лентата е пълна и друга нишка държи ключалката, използването се пропуска -
+ * губи се само малко от статистиката за честотата. Ключалката се взима само
+ * при запис, изгонване и прилагане на буфера.
+ * 
+ * Както при QuizCache, всяко премахване увеличава версията на кеша и заредените
+ * от базата данни играчи се записват само ако версията не се е променила.
+ * Потребителското име и email се сравняват без значение на малки и главни букви.
+ */
+public class PlayerCache {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+    private final long expireAfterNanos;
+    
+    private final Map<Integer, Node> byId = new ConcurrentHashMap<>();
+    private final Map<String, Node> byUsername = new ConcurrentHashMap<>();
+    private final Map<String, Node> byEmail = new ConcurrentHashMap<>();
+    // Сегментите и скицата се променят само под ключалката
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AccessBuffer accessBuffer = new AccessBuffer();
+    // Сегменти в LRU ред: първият елемент е най-отдавна използваният
+    private final LinkedHashMap<Integer, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Integer, Node> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Integer, Node> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    
+    /**
+     * Създава кеш
+     * 
+     * @param maximumSize максимален брой играчи
+     * @param expireAfterMillis време след зареждането, след което записът изтича
+     */
+    public PlayerCache(int maximumSize, long expireAfterMillis) {
+        this.maximumSize = Math.max(2, maximumSize);
+        this.windowMaximum = Math.max(1, this.maximumSize / 100);
+        this.protectedMaximum = (this.maximumSize - windowMaximum) * 80 / 100;
+        this.expireAfterNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterMillis);
+        this.sketch = new FrequencySketch(this.maximumSize);
+    }
+    
+    /**
+     * Взима играч по ID
+     * 
+     * @param playerId ID на играча
+     * @return копие на играча или null ако не е в кеша
+     */
+    public Player getById(int playerId) {
+        recordAccess(playerId);
+        return hit(byId.get(playerId));
+    }
+    
+    /**
+     * Взима играч по потребителско име
+     * 
+     * @param username потребителско име
+     * @return копие на играча или null ако не е в кеша
+     */
+    public Player getByUsername(String username) {
+        Node node = username != null ? byUsername.get(normalize(username)) : null;
+        if (node != null) {
+            recordAccess(node.playerId);
+        }
+        return hit(node);
+    }
+    
+    /**
+     * Взима играч по email
+     * 
+     * @param email email адрес
+     * @return копие на играча или null ако не е в кеша
+     */
+    public Player getByEmail(String email) {
+        Node node = email != null ? byEmail.get(normalize(email)) : null;
+        if (node != null) {
+            recordAccess(node.playerId);
+        }
+        return hit(node);
+    }
+    
+    /**
+     * Връща текущата версия. Трябва да се прочете преди зареждане от базата данни.
+     * 
+     * @return текуща версия
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    /**
+     * Записва играч в кеша, ако няма промени след началото на зареждането
+     * 
+     * @param player играч, зареден от базата данни
+     * @param loadedVersion версията, прочетена преди зареждането
+     * @return true ако играчът е записан
+     */
+    public boolean put(Player player, long loadedVersion) {
+        lock.lock();
+        try {
+            if (loadedVersion != version.get()) {
+                return false;
+            }
+            // Допускането сравнява честоти, затова чакащите използвания се прилагат първо
+            drainAccesses();
+            
+            Node existing = byId.get(player.getPlayerId());
+            if (existing != null) {
+                unindex(existing);
+                existing.player = copy(player);
+                existing.loadedAt = System.nanoTime();
+                index(existing);
+                return true;
+            }
+            
+            Node node = new Node(copy(player));
+            byId.put(node.playerId, node);
+            index(node);
+            sketch.increment(node.playerId);
+            
+            node.segment = WINDOW;
+            window.put(node.playerId, node);
+            if (window.size() > windowMaximum) {
+                // Най-старият запис от прозореца става кандидат за основната част
+                Node candidate = removeEldest(window);
+                candidate.segment = PROBATION;
+                probation.put(candidate.playerId, candidate);
+                if (byId.size() > maximumSize) {
+                    evict(candidate);
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Обновява датата на последно влизане на играч, ако е в кеша
+     * 
+     * @param playerId ID на играча
+     * @param lastLogin дата на последно влизане
+     */
+    public void updateLastLogin(int playerId, LocalDateTime lastLogin) {
+        lock.lock();
+        try {
+            Node node = byId.get(playerId);
+            if (node != null) {
+                // Четящите нишки копират играча без ключалка, затова той се заменя, а не се променя
+                Player updated = copy(node.player);
+                updated.setLastLogin(lastLogin);
+                node.player = updated;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Премахва играч от кеша. Извиква се след промяна в базата данни.
+     * 
+     * @param playerId ID на играча
+     */
+    public void invalidate(int playerId) {
+        lock.lock();
+        try {
+            version.incrementAndGet();
+            Node node = byId.get(playerId);
+            if (node != null) {
+                remove(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Играч, зареден преди потвърждаването на транзакцията, също е остарял
+        UnitOfWork.afterCompletion(() -> invalidate(playerId));
+    }
+    
+    /**
+     * Изчиства целия кеш
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            version.incrementAndGet();
+            byId.clear();
+            byUsername.clear();
+            byEmail.clear();
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Връща броя играчи в кеша
+     * 
+     * @return брой играчи
+     */
+    public int size() {
+        return byId.size();
+    }
+    
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    
+    public long getMissCount() {
+        return missCount.get();
+    }
+    
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+    
+    /**
+     * Връща дела на успешните търсения
+     * 
+     * @return число между 0 и 1
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total > 0 ? (double) hits / total : 0;
+    }
+    
+    private Player hit(Node node) {
+        if (node != null && System.nanoTime() - node.loadedAt > expireAfterNanos) {
+            expire(node);
+            node = null;
+        }
+        if (node == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        
+        hitCount.incrementAndGet();
+        return copy(node.player);
+    }
+    
+    /**
+     * Отбелязва използване в буфера и го прилага, ако лентата е пълна и ключалката е свободна
+     */
+    private void recordAccess(int playerId) {
+        if (accessBuffer.record(playerId) && lock.tryLock()) {
+            try {
+                drainAccesses();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Прилага чакащите използвания към скицата и сегментите. Извиква се под ключалката.
+     */
+    private void drainAccesses() {
+        accessBuffer.drain(playerId -> {
+            sketch.increment(playerId);
+            Node node = byId.get(playerId);
+            if (node != null) {
+                touch(node);
+            }
+        });
+    }
+    
+    private void expire(Node node) {
+        lock.lock();
+        try {
+            // Записът може вече да е премахнат или зареден отново
+            if (byId.get(node.playerId) == node && System.nanoTime() - node.loadedAt > expireAfterNanos) {
+                remove(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Отбелязва използване: в прозореца и защитения сегмент записът отива в края,
+     * а от пробационния сегмент преминава в защитения
+     */
+    private void touch(Node node) {
+        if (node.segment == WINDOW) {
+            window.get(node.playerId);
+        } else if (node.segment == PROTECTED) {
+            protectedSegment.get(node.playerId);
+        } else {
+            probation.remove(node.playerId);
+            node.segment = PROTECTED;
+            protectedSegment.put(node.playerId, node);
+            if (protectedSegment.size() > protectedMaximum) {
+                Node demoted = removeEldest(protectedSegment);
+                demoted.segment = PROBATION;
+                probation.put(demoted.playerId, demoted);
+            }
+        }
+    }
+    
+    /**
+     * Изгонва или кандидата, или най-отдавна използвания запис от основната част -
+     * този от двата, който се използва по-рядко
+     */
+    private void evict(Node candidate) {
+        Node victim = null;
+        for (Node node : probation.values()) {
+            if (node != candidate) {
+                victim = node;
+                break;
+            }
+        }
+        if (victim == null && !protectedSegment.isEmpty()) {
+            victim = protectedSegment.values().iterator().next();
+        }
+        
+        if (victim == null || sketch.frequency(candidate.playerId) <= sketch.frequency(victim.playerId)) {
+            remove(candidate);
+        } else {
+            remove(victim);
+        }
+        evictionCount.incrementAndGet();
+    }
+    
+    private void remove(Node node) {
+        byId.remove(node.playerId);
+        unindex(node);
+        if (node.segment == WINDOW) {
+            window.remove(node.playerId);
+        } else if (node.segment == PROBATION) {
+            probation.remove(node.playerId);
+        } else {
+            protectedSegment.remove(node.playerId);
+        }
+    }
+    
+    private void index(Node node) {
+        if (node.player.getUsername() != null) {
+            byUsername.put(normalize(node.player.getUsername()), node);
+        }
+        if (node.player.getEmail() != null) {
+            byEmail.put(normalize(node.player.getEmail()), node);
+        }
+    }
+    
+    private void unindex(Node node) {
+        if (node.player.getUsername() != null) {
+            byUsername.remove(normalize(node.player.getUsername()), node);
+        }
+        if (node.player.getEmail() != null) {
+            byEmail.remove(normalize(node.player.getEmail()), node);
+        }
+    }
+    
+    private static Node removeEldest(LinkedHashMap<Integer, Node> segment) {
+        Iterator<Node> iterator = segment.values().iterator();
+        Node eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+    
+    private static String normalize(String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+    
+    private static Player copy(Player player) {
+        return new Player(player.getPlayerId(), player.getUsername(), player.getPassword(), player.getEmail(),
+                          player.getRegistrationDate(), player.getLastLogin());
+    }
+    
+    /**
+     * Запис в кеша, достъпен от трите индекса
+     */
+    private static final class Node {
+        private final int playerId;
+        private volatile Player player;
+        private volatile long loadedAt = System.nanoTime();
+        private int segment;
+        
+        private Node(Player player) {
+            this.playerId = player.getPlayerId();
+            this.player = player;
+        }
+    }
+    
+    /**
+     * Буфер на използванията, разделен на ленти по нишки. Всяка лента е пръстен,
+     * в който пишат много нишки, а чете само нишката, която държи ключалката на кеша.
+     * Записът в пълна лента (или при състезание за същото място) се пропуска.
+     */
+    private static final class AccessBuffer {
+        private static final int STRIPE_SIZE = 32;
+        private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+        private static final int DRAIN_THRESHOLD = STRIPE_SIZE / 2;
+        // Маркер за попълнено място - празното място е 0
+        private static final long PRESENT = 1L << 32;
+        
+        private final Stripe[] stripes;
+        
+        private AccessBuffer() {
+            int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+            this.stripes = new Stripe[Math.min(count, 64)];
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+        
+        /**
+         * Отбелязва използване
+         * 
+         * @return true ако лентата трябва да бъде приложена
+         */
+        private boolean record(int playerId) {
+            Stripe stripe = stripes[stripeIndex()];
+            long tail = stripe.writes.get();
+            long size = tail - stripe.reads;
+            if (size >= STRIPE_SIZE) {
+                return true;
+            }
+            if (!stripe.writes.compareAndSet(tail, tail + 1)) {
+                return false;
+            }
+            stripe.slots.lazySet((int) (tail & STRIPE_MASK), PRESENT | (playerId & 0xFFFFFFFFL));
+            return size + 1 >= DRAIN_THRESHOLD;
+        }
+        
+        /**
+         * Подава чакащите използвания на всички ленти. Извиква се под ключалката на кеша.
+         */
+        private void drain(IntConsumer consumer) {
+            for (Stripe stripe : stripes) {
+                long head = stripe.reads;
+                long tail = stripe.writes.get();
+                while (head < tail) {
+                    int index = (int) (head & STRIPE_MASK);
+                    long value = stripe.slots.get(index);
+                    if (value == 0) {
+                        // Мястото е заето, но стойността още не е записана - остава за следващия път
+                        break;
+                    }
+                    stripe.slots.lazySet(index, 0);
+                    consumer.accept((int) value);
+                    head++;
+                }
+                stripe.reads = head;
+            }
+        }
+        
+        private int stripeIndex() {
+            int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+        }
+        
+        private static final class Stripe {
+            private final AtomicLongArray slots = new AtomicLongArray(STRIPE_SIZE);
+            private final AtomicLong writes = new AtomicLong();
+            private volatile long reads;
+        }
+    }
+    
+    /**
+     * Count-Min скица с 4 реда 4-битови броячи. След 10 * maximumSize увеличения
+     * всички броячи се намаляват наполовина.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+        
+        private FrequencySketch(int maximumSize) {
+            int width = Integer.highestOneBit(Math.max(16, maximumSize - 1)) << 1;
+            this.counters = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * maximumSize;
+        }
+        
+        private void increment(int key) {
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int index = indexOf(key, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+        
+        private int frequency(int key) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[row][indexOf(key, row)]);
+            }
+            return frequency;
+        }
+        
+        private void reset() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+        
+        private int indexOf(int key, int row) {
+            int hash = key * SEEDS[row];
+            hash ^= hash >>> 16;
+            return hash & mask;
+        }
+    }
+}
\ No newline at end of file
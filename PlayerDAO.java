@@ -1,25 +1,37 @@
 package com.knowledgeheroes.dao;
 
 import com.knowledgeheroes.model.Player;
-import com.knowledgeheroes.config.DatabaseConfig;
+import com.knowledgeheroes.model.PlayerPage;
+import com.knowledgeheroes.config.ConnectionPool;
+import com.knowledgeheroes.config.UnitOfWork;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Data Access Object за работа с играчи в базата данни
  */
 public class PlayerDAO {
-    private Connection connection;
-    
-    /**
-     * Конструктор, който инициализира връзката с базата данни
-     */
-    public PlayerDAO() {
-        this.connection = DatabaseConfig.getConnection();
-    }
+    // Общ за всички инстанции, за да се сливат влизанията на всички нишки
+    private static final LastLoginBuffer lastLogins = new LastLoginBuffer(
+            Long.getLong("knowledgeheroes.db.lastLogin.flushIntervalMillis", 5000),
+            Integer.getInteger("knowledgeheroes.db.lastLogin.maxPending", 500),
+            Integer.getInteger("knowledgeheroes.db.lastLogin.capacity", 10_000));
+    private static final PlayerCache cache = new PlayerCache(
+            Integer.getInteger("knowledgeheroes.db.playerCache.maxSize", 10_000),
+            Long.getLong("knowledgeheroes.db.playerCache.expireAfterMillis", 10 * 60 * 1000));
+    private static final PlayerNameFilter nameFilter = new PlayerNameFilter();
+    private static final int DEFAULT_PAGE_SIZE = Integer.getInteger("knowledgeheroes.db.players.pageSize", 1000);
+    private static final int MAX_PAGE_SIZE = 10_000;
     
     /**
      * Създава нов играч в базата данни
@@ -30,7 +42,8 @@ public class PlayerDAO {
     public boolean createPlayer(Player player) {
         String query = "INSERT INTO players (username, password, email, registration_date) VALUES (?, ?, ?, ?)";
         
-        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             statement.setString(1, player.getUsername());
             statement.setString(2, player.getPassword());
             statement.setString(3, player.getEmail());
@@ -42,6 +55,7 @@ public class PlayerDAO {
                 try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         player.setPlayerId(generatedKeys.getInt(1));
+                        nameFilter.added(player.getUsername(), player.getEmail());
                         return true;
                     }
                 }
@@ -60,14 +74,23 @@ public class PlayerDAO {
      * @return Player обект или null ако не е намерен
      */
     public Player getPlayerById(int playerId) {
+        Player cached = cache.getById(playerId);
+        if (cached != null) {
+            return withPendingLogin(cached);
+        }
+        
         String query = "SELECT * FROM players WHERE player_id = ?";
+        long version = cache.getVersion();
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, playerId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    return mapResultSetToPlayer(resultSet);
+                    Player player = mapResultSetToPlayer(resultSet);
+                    cache.put(player, version);
+                    return player;
                 }
             }
         } catch (SQLException e) {
@@ -84,14 +107,23 @@ public class PlayerDAO {
      * @return Player обект или null ако не е намерен
      */
     public Player getPlayerByUsername(String username) {
+        Player cached = cache.getByUsername(username);
+        if (cached != null) {
+            return withPendingLogin(cached);
+        }
+        
         String query = "SELECT * FROM players WHERE username = ?";
+        long version = cache.getVersion();
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, username);
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    return mapResultSetToPlayer(resultSet);
+                    Player player = mapResultSetToPlayer(resultSet);
+                    cache.put(player, version);
+                    return player;
                 }
             }
         } catch (SQLException e) {
@@ -108,14 +140,23 @@ public class PlayerDAO {
      * @return Player обект или null ако не е намерен
      */
     public Player getPlayerByEmail(String email) {
+        Player cached = cache.getByEmail(email);
+        if (cached != null) {
+            return withPendingLogin(cached);
+        }
+        
         String query = "SELECT * FROM players WHERE email = ?";
+        long version = cache.getVersion();
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, email);
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    return mapResultSetToPlayer(resultSet);
+                    Player player = mapResultSetToPlayer(resultSet);
+                    cache.put(player, version);
+                    return player;
                 }
             }
         } catch (SQLException e) {
@@ -134,13 +175,25 @@ public class PlayerDAO {
     public boolean updatePlayer(Player player) {
         String query = "UPDATE players SET username = ?, password = ?, email = ? WHERE player_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            // Старите име и email са нужни, за да се премахнат от филтъра
+            String[] previous = nameFilter.isLoaded() ? findNames(connection, player.getPlayerId()) : null;
+            
             statement.setString(1, player.getUsername());
             statement.setString(2, player.getPassword());
             statement.setString(3, player.getEmail());
             statement.setInt(4, player.getPlayerId());
             
             int affectedRows = statement.executeUpdate();
+            cache.invalidate(player.getPlayerId());
+            if (affectedRows > 0) {
+                nameFilter.added(player.getUsername(), player.getEmail());
+                if (previous != null) {
+                    // Старите име и email остават заети, докато промяната не бъде потвърдена
+                    afterCommit(() -> nameFilter.removed(previous[0], previous[1]));
+                }
+            }
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Грешка при актуализиране на играч: " + e.getMessage());
@@ -157,10 +210,17 @@ public class PlayerDAO {
     public boolean deletePlayer(int playerId) {
         String query = "DELETE FROM players WHERE player_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            String[] previous = nameFilter.isLoaded() ? findNames(connection, playerId) : null;
             statement.setInt(1, playerId);
             
             int affectedRows = statement.executeUpdate();
+            lastLogins.discard(playerId);
+            cache.invalidate(playerId);
+            if (affectedRows > 0 && previous != null) {
+                afterCommit(() -> nameFilter.removed(previous[0], previous[1]));
+            }
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Грешка при изтриване на играч: " + e.getMessage());
@@ -169,7 +229,9 @@ public class PlayerDAO {
     }
     
     /**
-     * Връща списък с всички играчи
+     * Връща списък с всички играчи.
+     * Зарежда цялата таблица в паметта; за голям брой играчи се използва
+     * {@link #streamAllPlayers()} или {@link #getPlayersPage(int, int)}.
      * 
      * @return списък с Player обекти
      */
@@ -177,7 +239,8 @@ public class PlayerDAO {
         List<Player> players = new ArrayList<>();
         String query = "SELECT * FROM players";
         
-        try (Statement statement = connection.createStatement();
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
             
             while (resultSet.next()) {
@@ -191,24 +254,161 @@ public class PlayerDAO {
     }
     
     /**
-     * Актуализира датата на последно влизане на играч
+     * Обхожда всички играчи, подредени по ID, на страници с размер
+     * knowledgeheroes.db.players.pageSize (по подразбиране 1000)
      * 
-     * @param playerId ID на играча
-     * @return true при успех, false при грешка
+     * @return поток от играчи
      */
-    public boolean updateLastLogin(int playerId) {
-        String query = "UPDATE players SET last_login = ? WHERE player_id = ?";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
-            statement.setInt(2, playerId);
+    public Stream<Player> streamAllPlayers() {
+        return streamAllPlayers(DEFAULT_PAGE_SIZE);
+    }
+    
+    /**
+     * Обхожда всички играчи, подредени по ID. Всяка страница се чете с отделна
+     * заявка, продължаваща след последния прочетен ID, и връзката се връща в пула
+     * между страниците, така че в паметта е най-много една страница.
+     * При грешка в базата данни потокът хвърля IllegalStateException (с
+     * SQLException като причина), за да не бъде сбъркан с пълен списък.
+     * 
+     * @param pageSize брой играчи в една заявка
+     * @return поток от играчи
+     */
+    public Stream<Player> streamAllPlayers(int pageSize) {
+        int limit = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        Spliterator<Player> spliterator = new Spliterators.AbstractSpliterator<Player>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+            private Iterator<Player> current = Collections.emptyIterator();
+            private int afterId = 0;
+            private boolean hasMore = true;
             
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
+            @Override
+            public boolean tryAdvance(Consumer<? super Player> action) {
+                while (!current.hasNext()) {
+                    if (!hasMore) {
+                        return false;
+                    }
+                    PlayerPage page;
+                    try {
+                        page = loadPlayersPage(afterId, limit);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Грешка при обхождане на играчите след ID " + afterId, e);
+                    }
+                    current = page.getPlayers().iterator();
+                    afterId = page.getNextAfterId();
+                    hasMore = page.hasMore();
+                }
+                action.accept(current.next());
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+    
+    /**
+     * Взима страница от играчите, подредени по ID
+     * 
+     * @param afterPlayerId курсор: ID, след който започва страницата (0 за първата страница)
+     * @param pageSize максимален брой играчи в страницата (най-много 10000)
+     * @return страница с играчи (празна и отбелязана с isFailed() при грешка)
+     */
+    public PlayerPage getPlayersPage(int afterPlayerId, int pageSize) {
+        try {
+            return loadPlayersPage(afterPlayerId, Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE)));
         } catch (SQLException e) {
-            System.err.println("Грешка при актуализиране на последно влизане: " + e.getMessage());
+            System.err.println("Грешка при взимане на страница с играчи: " + e.getMessage());
+            return new PlayerPage(new ArrayList<>(), afterPlayerId, false, true);
+        }
+    }
+    
+    /**
+     * Чете страница от играчите, подредени по ID
+     * 
+     * @param afterPlayerId курсор: ID, след който започва страницата
+     * @param limit максимален брой играчи в страницата
+     * @return страница с играчи
+     * @throws SQLException при грешка в базата данни
+     */
+    private PlayerPage loadPlayersPage(int afterPlayerId, int limit) throws SQLException {
+        List<Player> players = new ArrayList<>(Math.min(limit, DEFAULT_PAGE_SIZE));
+        // Един ред повече показва дали има следваща страница
+        String query = "SELECT * FROM players WHERE player_id > ? ORDER BY player_id LIMIT ?";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, afterPlayerId);
+            statement.setInt(2, limit + 1);
+            statement.setFetchSize(limit + 1);
+            
+            boolean hasMore = false;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    if (players.size() == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    players.add(mapResultSetToPlayer(resultSet));
+                }
+                int nextAfterId = players.isEmpty() ? afterPlayerId : players.get(players.size() - 1).getPlayerId();
+                return new PlayerPage(players, nextAfterId, hasMore);
+            }
+        }
+    }
+    
+    /**
+     * Актуализира датата на последно влизане на играч.
+     * Датата се записва в базата данни отложено, заедно с другите влизания
+     * (вижте {@link #flushLastLogins()}). Затова методът не проверява дали
+     * играчът съществува: true означава само, че влизането е прието, а запис
+     * за несъществуващ играч просто не променя нищо.
+     * 
+     * @param playerId ID на играча
+     * @return true ако влизането е прието за запис, false ако буферът е пълен,
+     *         защото базата данни не приема записи
+     */
+    public boolean updateLastLogin(int playerId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!lastLogins.record(playerId, now)) {
             return false;
         }
+        cache.updateLastLogin(playerId, now);
+        return true;
+    }
+    
+    /**
+     * Записва веднага всички чакащи дати на последно влизане
+     * 
+     * @return true при успех, false при грешка
+     */
+    public static boolean flushLastLogins() {
+        return lastLogins.flush();
+    }
+    
+    /**
+     * Връща броя влизания, отказани заради пълен буфер
+     * 
+     * @return брой отказани влизания
+     */
+    public static long getRejectedLastLoginCount() {
+        return lastLogins.getRejectedCount();
+    }
+    
+    /**
+     * Зарежда филтъра на заетите потребителски имена и email адреси.
+     * Извиква се при стартиране; без това филтърът се зарежда при първата проверка.
+     * 
+     * @return true при успех, false при грешка
+     */
+    public static boolean loadNameFilter() {
+        return nameFilter.load();
+    }
+    
+    /**
+     * Връща кеша на играчите (например за метрики)
+     * 
+     * @return кеш на играчите
+     */
+    public static PlayerCache getCache() {
+        return cache;
     }
     
     /**
@@ -218,9 +418,15 @@ public class PlayerDAO {
      * @return true ако съществува, false ако не съществува
      */
     public boolean usernameExists(String username) {
+        // Повечето свободни имена се отсяват без заявка
+        if (!nameFilter.mightContainUsername(username)) {
+            return false;
+        }
+        
         String query = "SELECT COUNT(*) FROM players WHERE username = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, username);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -242,9 +448,14 @@ public class PlayerDAO {
      * @return true ако съществува, false ако не съществува
      */
     public boolean emailExists(String email) {
+        if (!nameFilter.mightContainEmail(email)) {
+            return false;
+        }
+        
         String query = "SELECT COUNT(*) FROM players WHERE email = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, email);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -269,7 +480,8 @@ public class PlayerDAO {
     public boolean authenticate(String username, String password) {
         String query = "SELECT * FROM players WHERE username = ? AND password = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, username);
             statement.setString(2, password);
             
@@ -306,6 +518,54 @@ public class PlayerDAO {
             player.setLastLogin(lastLoginTimestamp.toLocalDateTime());
         }
         
+        return withPendingLogin(player);
+    }
+    
+    /**
+     * Изпълнява действие след потвърждаване на текущата транзакция или веднага,
+     * ако няма такава
+     * 
+     * @param action действието
+     */
+    private static void afterCommit(Runnable action) {
+        if (!UnitOfWork.afterCommit(action)) {
+            action.run();
+        }
+    }
+    
+    /**
+     * Взима текущите потребителско име и email на играч
+     * 
+     * @param connection връзка към базата данни
+     * @param playerId ID на играча
+     * @return масив {потребителско име, email} или null ако играчът не съществува
+     */
+    private String[] findNames(Connection connection, int playerId) throws SQLException {
+        String query = "SELECT username, email FROM players WHERE player_id = ?";
+        
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, playerId);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return new String[] {resultSet.getString("username"), resultSet.getString("email")};
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Добавя към играча влизане, което още не е записано в базата данни
+     * 
+     * @param player играч
+     * @return същият играч
+     */
+    private Player withPendingLogin(Player player) {
+        LocalDateTime pendingLogin = lastLogins.getPending(player.getPlayerId());
+        if (pendingLogin != null && (player.getLastLogin() == null || pendingLogin.isAfter(player.getLastLogin()))) {
+            player.setLastLogin(pendingLogin);
+        }
         return player;
     }
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.config.ConnectionPool;
+import com.knowledgeheroes.model.CuckooFilter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Филтър на заетите потребителски имена и email адреси.
+ * 
+ * Отговаря без заявка, когато име или email със сигурност не са заети; при
+ * положителен отговор проверката продължава в базата данни. Зарежда се с едно
+ * последователно четене на players и след това се поддържа от createPlayer,
+ * updatePlayer и deletePlayer. Докато филтърът не е зареден (или е бил
+ * отхвърлен поради препълване или промени по време на зареждането), всички
+ * проверки отиват в базата данни.
+ */
+class PlayerNameFilter {
+    private static final String USERNAME_PREFIX = "u:";
+    private static final String EMAIL_PREFIX = "e:";
+    private static final int FETCH_SIZE = 1000;
+    
+    private final AtomicLong version = new AtomicLong();
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile CuckooFilter filter;
+    private volatile boolean loadNeeded = true;
+    
+    /**
+     * Проверява дали потребителското име може да е заето
+     * 
+     * @param username потребителско име
+     * @return false ако името със сигурност е свободно
+     */
+    boolean mightContainUsername(String username) {
+        return mightContain(USERNAME_PREFIX, username);
+    }
+    
+    /**
+     * Проверява дали email адресът може да е зает
+     * 
+     * @param email email адрес
+     * @return false ако адресът със сигурност е свободен
+     */
+    boolean mightContainEmail(String email) {
+        return mightContain(EMAIL_PREFIX, email);
+    }
+    
+    boolean isLoaded() {
+        return filter != null;
+    }
+    
+    /**
+     * Отбелязва нов играч
+     */
+    synchronized void added(String username, String email) {
+        version.incrementAndGet();
+        CuckooFilter current = filter;
+        if (current != null) {
+            add(current, USERNAME_PREFIX, username);
+            add(current, EMAIL_PREFIX, email);
+        }
+    }
+    
+    /**
+     * Отбелязва изтрит играч
+     */
+    synchronized void removed(String username, String email) {
+        version.incrementAndGet();
+        CuckooFilter current = filter;
+        if (current != null) {
+            remove(current, USERNAME_PREFIX, username);
+            remove(current, EMAIL_PREFIX, email);
+        }
+    }
+    
+    /**
+     * Зарежда филтъра с всички имена и email адреси от базата данни
+     * 
+     * @return true при успех, false при грешка
+     */
+    boolean load() {
+        loadLock.lock();
+        try {
+            return loadLocked();
+        } finally {
+            loadLock.unlock();
+        }
+    }
+    
+    private boolean mightContain(String prefix, String value) {
+        if (value == null) {
+            return true;
+        }
+        
+        CuckooFilter current = filter;
+        if (current == null && loadNeeded && loadLock.tryLock()) {
+            // Първата проверка зарежда филтъра; междувременно другите нишки питат базата данни
+            try {
+                if (filter == null && loadNeeded) {
+                    loadLocked();
+                }
+            } finally {
+                loadLock.unlock();
+            }
+            current = filter;
+        }
+        return current == null || current.contains(key(prefix, value));
+    }
+    
+    private boolean loadLocked() {
+        long loadedVersion = version.get();
+        String countQuery = "SELECT COUNT(*) FROM players";
+        String query = "SELECT username, email FROM players";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection()) {
+            int players = 0;
+            try (PreparedStatement statement = connection.prepareStatement(countQuery);
+                 ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    players = resultSet.getInt(1);
+                }
+            }
+            
+            // Място за двойно повече регистрации, преди да е нужно ново зареждане
+            CuckooFilter loaded = new CuckooFilter(Math.max(1024, players * 4));
+            try (PreparedStatement statement = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(FETCH_SIZE);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        add(loaded, USERNAME_PREFIX, resultSet.getString("username"));
+                        add(loaded, EMAIL_PREFIX, resultSet.getString("email"));
+                    }
+                }
+            }
+            
+            synchronized (this) {
+                if (loaded.isFull() || version.get() != loadedVersion) {
+                    // Промени по време на четенето - следващата проверка ще зареди отново
+                    filter = null;
+                    loadNeeded = true;
+                    return false;
+                }
+                filter = loaded;
+                loadNeeded = false;
+                return true;
+            }
+        } catch (SQLException e) {
+            System.err.println("Грешка при зареждане на филтъра на имената: " + e.getMessage());
+            loadNeeded = false;
+            return false;
+        }
+    }
+    
+    private void add(CuckooFilter current, String prefix, String value) {
+        if (value != null && !current.add(key(prefix, value))) {
+            // Препълнен филтър - отхвърля се до следващото зареждане
+            filter = null;
+            loadNeeded = true;
+        }
+    }
+    
+    private static void remove(CuckooFilter current, String prefix, String value) {
+        if (value != null) {
+            current.remove(key(prefix, value));
+        }
+    }
+    
+    private static String key(String prefix, String value) {
+        return prefix + value.toLowerCase(Locale.ROOT);
+    }
+}
\ No newline at end of file
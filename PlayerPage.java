@@ -0,0 +1,81 @@
+package com.knowledgeheroes.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Една страница от списъка с играчи, подреден по ID.
+ * 
+ * Следващата страница се взима с {@link #getNextAfterId()} като курсор, така
+ * че заявката продължава от последния ID, вместо да пропуска редове с OFFSET.
+ * Страница, която не е прочетена заради грешка в базата данни, е празна и е
+ * отбелязана с {@link #isFailed()}, за да не бъде сбъркана с края на списъка.
+ */
+public final class PlayerPage {
+    private final List<Player> players;
+    private final int nextAfterId;
+    private final boolean hasMore;
+    private final boolean failed;
+    
+    /**
+     * Конструктор на успешно прочетена страница
+     * 
+     * @param players играчите в страницата, подредени по ID
+     * @param nextAfterId ID на последния играч в страницата
+     * @param hasMore дали има следваща страница
+     */
+    public PlayerPage(List<Player> players, int nextAfterId, boolean hasMore) {
+        this(players, nextAfterId, hasMore, false);
+    }
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param players играчите в страницата, подредени по ID
+     * @param nextAfterId ID на последния играч в страницата
+     * @param hasMore дали има следваща страница
+     * @param failed дали страницата не е прочетена заради грешка
+     */
+    public PlayerPage(List<Player> players, int nextAfterId, boolean hasMore, boolean failed) {
+        this.players = Collections.unmodifiableList(new ArrayList<>(players));
+        this.nextAfterId = nextAfterId;
+        this.hasMore = hasMore;
+        this.failed = failed;
+    }
+    
+    /**
+     * Връща играчите в страницата
+     * 
+     * @return неизменим списък с играчи
+     */
+    public List<Player> getPlayers() {
+        return players;
+    }
+    
+    /**
+     * Връща курсора за следващата страница
+     * 
+     * @return ID на последния играч в страницата (или подадения курсор за празна страница)
+     */
+    public int getNextAfterId() {
+        return nextAfterId;
+    }
+    
+    public boolean hasMore() {
+        return hasMore;
+    }
+    
+    /**
+     * Проверява дали страницата не е прочетена заради грешка в базата данни
+     * 
+     * @return true при грешка; тогава страницата е празна, а курсорът е подаденият
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+    
+    public int size() {
+        return players.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,178 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.dao.LevelDAO.LevelProgress;
+import com.knowledgeheroes.model.Ability;
+import com.knowledgeheroes.model.Card;
+import com.knowledgeheroes.model.Player;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменима снимка на всичко, нужно за началния екран на играч: данните му,
+ * колекцията му от карти, прогреса по нивата и позициите му в класациите.
+ * 
+ * Съдържа и колко време е отнело четенето на всяка част, за да се вижда коя
+ * от тях забавя зареждането. Създава се от {@link PlayerProfileLoader}.
+ * 
+ * Моделите (Player, Card, LevelProgress) са променливи, затова профилът пази
+ * свои копия и връща нови копия при всяко четене.
+ */
+public final class PlayerProfile {
+    private final Player player;
+    private final List<Card> cards;
+    private final List<LevelProgress> progress;
+    private final Map<Integer, Integer> ranks;
+    private final Map<String, Duration> timings;
+    private final Duration totalTime;
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param player играчът
+     * @param cards картите на играча
+     * @param progress прогресът на играча по нивата
+     * @param ranks позиция на играча по ID на класация (-1 ако не е в класацията)
+     * @param timings време за четене на всяка част, в реда на заявките
+     * @param totalTime общо време за зареждане на профила
+     */
+    public PlayerProfile(Player player, List<Card> cards, List<LevelProgress> progress,
+                         Map<Integer, Integer> ranks, Map<String, Duration> timings, Duration totalTime) {
+        this.player = copy(player);
+        this.cards = copyCards(cards);
+        this.progress = copyProgress(progress);
+        this.ranks = Collections.unmodifiableMap(new LinkedHashMap<>(ranks));
+        this.timings = Collections.unmodifiableMap(new LinkedHashMap<>(timings));
+        this.totalTime = totalTime;
+    }
+    
+    /**
+     * Връща данните на играча
+     * 
+     * @return копие на играча
+     */
+    public Player getPlayer() {
+        return copy(player);
+    }
+    
+    /**
+     * Връща картите на играча
+     * 
+     * @return неизменим списък с копия на картите (количеството е в Card.getQuantity())
+     */
+    public List<Card> getCards() {
+        return copyCards(cards);
+    }
+    
+    /**
+     * Връща прогреса на играча по нивата
+     * 
+     * @return неизменим списък с копия на прогреса
+     */
+    public List<LevelProgress> getProgress() {
+        return copyProgress(progress);
+    }
+    
+    /**
+     * Връща позициите на играча в класациите
+     * 
+     * @return неизменима карта ID на класация -&gt; позиция (1-базирана или -1)
+     */
+    public Map<Integer, Integer> getRanks() {
+        return ranks;
+    }
+    
+    /**
+     * Връща позицията на играча в класация
+     * 
+     * @param leaderboardId ID на класацията
+     * @return позиция (1-базирана) или -1 ако играчът не е в класацията или тя не е заредена
+     */
+    public int getRank(int leaderboardId) {
+        return ranks.getOrDefault(leaderboardId, -1);
+    }
+    
+    /**
+     * Връща времето за четене на всяка част на профила
+     * 
+     * @return неизменима карта име на част -&gt; време, например "player", "cards", "rank:3"
+     */
+    public Map<String, Duration> getTimings() {
+        return timings;
+    }
+    
+    /**
+     * Връща общото време за зареждане. Частите се четат паралелно, затова то е
+     * близо до най-бавната част, а не до сумата им.
+     * 
+     * @return общо време
+     */
+    public Duration getTotalTime() {
+        return totalTime;
+    }
+    
+    /**
+     * Връща най-бавната част на профила
+     * 
+     * @return име на частта или null ако няма измервания
+     */
+    public String getSlowestPart() {
+        String slowest = null;
+        Duration slowestTime = Duration.ZERO;
+        for (Map.Entry<String, Duration> timing : timings.entrySet()) {
+            if (slowest == null || timing.getValue().compareTo(slowestTime) > 0) {
+                slowest = timing.getKey();
+                slowestTime = timing.getValue();
+            }
+        }
+        return slowest;
+    }
+    
+    private static Player copy(Player player) {
+        return new Player(player.getPlayerId(), player.getUsername(), player.getPassword(), player.getEmail(),
+                          player.getRegistrationDate(), player.getLastLogin());
+    }
+    
+    private static List<Card> copyCards(List<Card> cards) {
+        List<Card> result = new ArrayList<>(cards.size());
+        for (Card card : cards) {
+            Card copy = new Card(card.getCardId(), card.getName(), card.getDescription(), card.getCategoryId(),
+                                 card.getRarity(), card.getImagePath());
+            copy.setQuantity(card.getQuantity());
+            copy.setAcquisitionDate(card.getAcquisitionDate());
+            copy.setAbilities(copyAbilities(card.getAbilities()));
+            result.add(copy);
+        }
+        return Collections.unmodifiableList(result);
+    }
+    
+    private static List<Ability> copyAbilities(List<Ability> abilities) {
+        List<Ability> result = new ArrayList<>();
+        if (abilities != null) {
+            for (Ability ability : abilities) {
+                result.add(new Ability(ability.getAbilityId(), ability.getCardId(), ability.getName(),
+                                       ability.getDescription(), ability.getEffectType(), ability.getEffectValue()));
+            }
+        }
+        return result;
+    }
+    
+    private static List<LevelProgress> copyProgress(List<LevelProgress> progress) {
+        List<LevelProgress> result = new ArrayList<>(progress.size());
+        for (LevelProgress source : progress) {
+            LevelProgress copy = new LevelProgress();
+            copy.setPlayerId(source.getPlayerId());
+            copy.setLevelId(source.getLevelId());
+            copy.setCompleted(source.isCompleted());
+            copy.setCompletionDate(source.getCompletionDate());
+            copy.setStars(source.getStars());
+            copy.setScore(source.getScore());
+            result.add(copy);
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.dao.LevelDAO.LevelProgress;
+import com.knowledgeheroes.model.Card;
+import com.knowledgeheroes.model.Leaderboard;
+import com.knowledgeheroes.model.Player;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Зарежда {@link PlayerProfile} с паралелни заявки.
+ * 
+ * Играчът, картите му, прогресът по нивата и позицията във всяка класация се
+ * четат едновременно чрез {@link AsyncDAO}, така че общото време е близо до
+ * най-бавната заявка, а не до сумата им. Всяка част се чете на отделна връзка и
+ * затова не участва в UnitOfWork на извикващата нишка.
+ */
+public class PlayerProfileLoader {
+    private final PlayerDAO playerDAO;
+    private final CardDAO cardDAO;
+    private final LevelDAO levelDAO;
+    private final LeaderboardDAO leaderboardDAO;
+    private final AsyncDAO async;
+    
+    /**
+     * Конструктор по подразбиране - използва нови DAO обекти и общия изпълнител
+     */
+    public PlayerProfileLoader() {
+        this(new PlayerDAO(), new CardDAO(), new LevelDAO(), new LeaderboardDAO(), AsyncDAO.getInstance());
+    }
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param playerDAO DAO за играчи
+     * @param cardDAO DAO за карти
+     * @param levelDAO DAO за нива
+     * @param leaderboardDAO DAO за класации
+     * @param async изпълнител на заявките
+     */
+    public PlayerProfileLoader(PlayerDAO playerDAO, CardDAO cardDAO, LevelDAO levelDAO,
+                               LeaderboardDAO leaderboardDAO, AsyncDAO async) {
+        this.playerDAO = playerDAO;
+        this.cardDAO = cardDAO;
+        this.levelDAO = levelDAO;
+        this.leaderboardDAO = leaderboardDAO;
+        this.async = async;
+    }
+    
+    /**
+     * Зарежда профила на играч с позициите му в глобалните класации.
+     * Не бива да се извиква от задача на AsyncDAO - там се използва loadAsync.
+     * 
+     * @param playerId ID на играча
+     * @return профил или null ако играчът не е намерен или е възникнала грешка
+     */
+    public PlayerProfile load(int playerId) {
+        return join(loadAsync(playerId));
+    }
+    
+    /**
+     * Зарежда профила на играч с позициите му в дадени класации.
+     * Не бива да се извиква от задача на AsyncDAO - там се използва loadAsync.
+     * 
+     * @param playerId ID на играча
+     * @param leaderboardIds ID на класациите
+     * @return профил или null ако играчът не е намерен или е възникнала грешка
+     */
+    public PlayerProfile load(int playerId, List<Integer> leaderboardIds) {
+        return join(loadAsync(playerId, leaderboardIds));
+    }
+    
+    /**
+     * Асинхронно зарежда профила на играч с позициите му в глобалните класации.
+     * Списъкът с глобални класации се чете паралелно с останалите части.
+     * 
+     * @param playerId ID на играча
+     * @return future с профила или с null ако играчът не е намерен
+     */
+    public CompletableFuture<PlayerProfile> loadAsync(int playerId) {
+        Load load = new Load();
+        CompletableFuture<Map<Integer, Integer>> ranks =
+                load.part("leaderboards", leaderboardDAO::getGlobalLeaderboards)
+                        .thenCompose(leaderboards -> {
+                            List<Integer> leaderboardIds = new ArrayList<>();
+                            for (Leaderboard leaderboard : leaderboards) {
+                                leaderboardIds.add(leaderboard.getLeaderboardId());
+                            }
+                            return load.ranks(playerId, leaderboardIds);
+                        });
+        return load.profile(playerId, ranks);
+    }
+    
+    /**
+     * Асинхронно зарежда профила на играч с позициите му в дадени класации
+     * 
+     * @param playerId ID на играча
+     * @param leaderboardIds ID на класациите
+     * @return future с профила или с null ако играчът не е намерен
+     */
+    public CompletableFuture<PlayerProfile> loadAsync(int playerId, List<Integer> leaderboardIds) {
+        Load load = new Load();
+        return load.profile(playerId, load.ranks(playerId, new ArrayList<>(leaderboardIds)));
+    }
+    
+    private static PlayerProfile join(CompletableFuture<PlayerProfile> profile) {
+        try {
+            return profile.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("Грешка при зареждане на профил на играч: " + cause.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Едно зареждане на профил: стартира частите и събира времената им
+     */
+    private class Load {
+        private final long start = System.nanoTime();
+        private final Map<String, Duration> timings = new ConcurrentHashMap<>();
+        // Имената на частите по реда на стартиране, за подредени времена в профила
+        private final List<String> parts = new ArrayList<>();
+        
+        private synchronized void started(String name) {
+            parts.add(name);
+        }
+        
+        private <T> CompletableFuture<T> part(String name, Supplier<T> read) {
+            started(name);
+            return async.supply(() -> {
+                long partStart = System.nanoTime();
+                try {
+                    return read.get();
+                } finally {
+                    timings.put(name, Duration.ofNanos(System.nanoTime() - partStart));
+                }
+            });
+        }
+        
+        private CompletableFuture<Map<Integer, Integer>> ranks(int playerId, List<Integer> leaderboardIds) {
+            List<CompletableFuture<Integer>> reads = new ArrayList<>();
+            for (int leaderboardId : leaderboardIds) {
+                reads.add(part("rank:" + leaderboardId, () -> leaderboardDAO.getPlayerRank(leaderboardId, playerId)));
+            }
+            return CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                Map<Integer, Integer> ranks = new LinkedHashMap<>();
+                for (int i = 0; i < leaderboardIds.size(); i++) {
+                    ranks.put(leaderboardIds.get(i), reads.get(i).join());
+                }
+                return ranks;
+            });
+        }
+        
+        private CompletableFuture<PlayerProfile> profile(int playerId, CompletableFuture<Map<Integer, Integer>> ranks) {
+            CompletableFuture<Player> player = part("player", () -> playerDAO.getPlayerById(playerId));
+            CompletableFuture<List<Card>> cards = part("cards", () -> cardDAO.getPlayerCards(playerId));
+            CompletableFuture<List<LevelProgress>> progress = part("progress", () -> levelDAO.getAllPlayerProgress(playerId));
+            
+            return CompletableFuture.allOf(player, cards, progress, ranks).thenApply(done -> {
+                if (player.join() == null) {
+                    return null;
+                }
+                return new PlayerProfile(player.join(), cards.join(), progress.join(), ranks.join(),
+                        orderedTimings(), Duration.ofNanos(System.nanoTime() - start));
+            });
+        }
+        
+        private synchronized Map<String, Duration> orderedTimings() {
+            Map<String, Duration> ordered = new LinkedHashMap<>();
+            for (String name : parts) {
+                Duration time = timings.get(name);
+                if (time != null) {
+                    ordered.put(name, time);
+                }
+            }
+            return ordered;
+        }
+    }
+}
\ No newline at end of file
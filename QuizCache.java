@@ -0,0 +1,126 @@
+package com.knowledgeheroes.dao;
+
+import com.knowledgeheroes.config.UnitOfWork;
+import com.knowledgeheroes.model.QuizSnapshot;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кеш в паметта с неизменими снимки на куизове по ID на куиза.
+ * 
+ * Всяка промяна на съдържанието увеличава версията на кеша. Снимка, заредена
+ * от базата данни, се записва в кеша само ако междувременно версията не се е
+ * променила, така че остарели данни не могат да попаднат в кеша.
+ */
+public class QuizCache {
+    private final ConcurrentHashMap<Integer, QuizSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    
+    /**
+     * Взима снимка от кеша
+     * 
+     * @param quizId ID на куиза
+     * @return снимка или null ако куизът не е в кеша
+     */
+    public QuizSnapshot get(int quizId) {
+        QuizSnapshot snapshot = snapshots.get(quizId);
+        if (snapshot != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Връща текущата версия на съдържанието. Трябва да се прочете преди зареждане от базата данни.
+     * 
+     * @return текуща версия
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    /**
+     * Записва снимка в кеша, ако съдържанието не е променяно след началото на зареждането
+     * 
+     * @param snapshot снимка, заредена при версията, записана в нея
+     * @return true ако снимката е записана
+     */
+    public boolean put(QuizSnapshot snapshot) {
+        if (snapshot.getVersion() != version.get()) {
+            return false;
+        }
+        
+        snapshots.put(snapshot.getQuizId(), snapshot);
+        
+        // Повторна проверка: ако междувременно е имало промяна, тя може да не е видяла тази снимка
+        if (snapshot.getVersion() != version.get()) {
+            snapshots.remove(snapshot.getQuizId(), snapshot);
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Премахва куиз от кеша. Извиква се след промяна в базата данни.
+     * 
+     * @param quizId ID на куиза
+     */
+    public void invalidateQuiz(int quizId) {
+        version.incrementAndGet();
+        snapshots.remove(quizId);
+        // Снимка, заредена преди потвърждаването на транзакцията, също е остаряла
+        UnitOfWork.afterCompletion(() -> invalidateQuiz(quizId));
+    }
+    
+    /**
+     * Премахва от кеша всички куизове, които съдържат въпроса
+     * 
+     * @param questionId ID на въпроса
+     */
+    public void invalidateQuestion(int questionId) {
+        version.incrementAndGet();
+        snapshots.values().removeIf(snapshot -> snapshot.containsQuestion(questionId));
+        UnitOfWork.afterCompletion(() -> invalidateQuestion(questionId));
+    }
+    
+    /**
+     * Премахва от кеша всички куизове, които съдържат отговора
+     * 
+     * @param answerId ID на отговора
+     */
+    public void invalidateAnswer(int answerId) {
+        version.incrementAndGet();
+        snapshots.values().removeIf(snapshot -> snapshot.containsAnswer(answerId));
+        UnitOfWork.afterCompletion(() -> invalidateAnswer(answerId));
+    }
+    
+    /**
+     * Изчиства целия кеш
+     */
+    public void clear() {
+        version.incrementAndGet();
+        snapshots.clear();
+    }
+    
+    /**
+     * Връща броя куизове в кеша
+     * 
+     * @return брой куизове
+     */
+    public int size() {
+        return snapshots.size();
+    }
+    
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
\ No newline at end of file
@@ -1,9 +1,11 @@
 package com.knowledgeheroes.dao;
 
-import com.knowledgeheroes.config.DatabaseConfig;
+import com.knowledgeheroes.config.ConnectionPool;
+import com.knowledgeheroes.config.UnitOfWork;
 import com.knowledgeheroes.model.Answer;
 import com.knowledgeheroes.model.Question;
 import com.knowledgeheroes.model.Quiz;
+import com.knowledgeheroes.model.QuizSnapshot;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -13,14 +15,8 @@ import java.util.List;
  * Data Access Object за работа с куизове, въпроси и отговори в базата данни
  */
 public class QuizDAO {
-    private Connection connection;
-    
-    /**
-     * Конструктор, който инициализира връзката с базата данни
-     */
-    public QuizDAO() {
-        this.connection = DatabaseConfig.getConnection();
-    }
+    // Кеш с неизменими снимки на куизове, общ за всички инстанции на DAO-то
+    private static final QuizCache cache = new QuizCache();
     
     /**
      * Създава нов куиз в базата данни
@@ -31,7 +27,8 @@ public class QuizDAO {
     public boolean createQuiz(Quiz quiz) {
         String query = "INSERT INTO quizzes (level_id, name, description, time_limit) VALUES (?, ?, ?, ?)";
         
-        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             if (quiz.getLevelId() != 0) {
                 statement.setInt(1, quiz.getLevelId());
             } else {
@@ -75,24 +72,86 @@ public class QuizDAO {
     }
     
     /**
-     * Взима куиз по ID
+     * Взима куиз по ID. Връща нов, изменим обект; за четене без копиране се използва {@link #getQuizSnapshot(int)}.
      * 
      * @param quizId ID на куиза
      * @return Quiz обект или null ако не е намерен
      */
     public Quiz getQuizById(int quizId) {
-        String query = "SELECT * FROM quizzes WHERE quiz_id = ?";
+        QuizSnapshot snapshot = getQuizSnapshot(quizId);
+        return snapshot != null ? snapshot.toQuiz() : null;
+    }
+    
+    /**
+     * Взима неизменима снимка на куиз с въпросите и отговорите му. Снимките се
+     * кешират в паметта до следваща промяна на съдържанието на куиза.
+     * 
+     * @param quizId ID на куиза
+     * @return снимка на куиза или null ако не е намерен
+     */
+    public QuizSnapshot getQuizSnapshot(int quizId) {
+        QuizSnapshot snapshot = cache.get(quizId);
+        if (snapshot != null) {
+            return snapshot;
+        }
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        // Версията се взима преди зареждането, за да не се кешира съдържание, променено междувременно
+        long version = cache.getVersion();
+        Quiz quiz = loadQuiz(quizId);
+        if (quiz == null) {
+            return null;
+        }
+        
+        snapshot = QuizSnapshot.of(quiz, version);
+        cache.put(snapshot);
+        return snapshot;
+    }
+    
+    /**
+     * Връща кеша на куизовете
+     * 
+     * @return кеш на куизовете
+     */
+    public static QuizCache getCache() {
+        return cache;
+    }
+    
+    /**
+     * Зарежда куиз с въпросите и отговорите му от базата данни
+     * 
+     * @param quizId ID на куиза
+     * @return Quiz обект или null ако не е намерен
+     */
+    private Quiz loadQuiz(int quizId) {
+        // Куизът, подредените въпроси и всички отговори се зареждат с една заявка
+        String query = "SELECT qz.quiz_id, qz.level_id, qz.name, qz.description, qz.time_limit, " +
+                      "qq.question_order, q.question_id, q.category_id, q.text, q.difficulty, " +
+                      "a.answer_id, a.text AS answer_text, a.is_correct " +
+                      "FROM quizzes qz " +
+                      "LEFT JOIN quiz_questions qq ON qq.quiz_id = qz.quiz_id " +
+                      "LEFT JOIN questions q ON q.question_id = qq.question_id " +
+                      "LEFT JOIN answers a ON a.question_id = q.question_id " +
+                      "WHERE qz.quiz_id = ? " +
+                      "ORDER BY qq.question_order, q.question_id, a.answer_id";
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, quizId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
-                if (resultSet.next()) {
-                    Quiz quiz = mapResultSetToQuiz(resultSet);
-                    
-                    // Зареждане на въпросите за куиза
-                    quiz.setQuestions(getQuestionsForQuiz(quizId));
+                Quiz quiz = null;
+                QuestionAssembler assembler = new QuestionAssembler();
+                
+                while (resultSet.next()) {
+                    if (quiz == null) {
+                        quiz = mapResultSetToQuiz(resultSet);
+                    }
                     
+                    assembler.addRow(resultSet);
+                }
+                
+                if (quiz != null) {
+                    quiz.setQuestions(assembler.getQuestions());
                     return quiz;
                 }
             }
@@ -112,7 +171,8 @@ public class QuizDAO {
         List<Quiz> quizzes = new ArrayList<>();
         String query = "SELECT * FROM quizzes";
         
-        try (Statement statement = connection.createStatement();
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
             
             while (resultSet.next()) {
@@ -141,7 +201,8 @@ public class QuizDAO {
         List<Quiz> quizzes = new ArrayList<>();
         String query = "SELECT * FROM quizzes WHERE level_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, levelId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -171,7 +232,8 @@ public class QuizDAO {
     public boolean updateQuiz(Quiz quiz) {
         String query = "UPDATE quizzes SET level_id = ?, name = ?, description = ?, time_limit = ? WHERE quiz_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             if (quiz.getLevelId() != 0) {
                 statement.setInt(1, quiz.getLevelId());
             } else {
@@ -204,6 +266,7 @@ public class QuizDAO {
                     }
                 }
                 
+                cache.invalidateQuiz(quiz.getQuizId());
                 return true;
             }
             
@@ -221,21 +284,26 @@ public class QuizDAO {
      * @return true при успех, false при грешка
      */
     public boolean deleteQuiz(int quizId) {
-        // Изтриване на връзките между куиза и въпросите
-        removeQuestionsFromQuiz(quizId);
-        
-        // Изтриване на куиза
-        String query = "DELETE FROM quizzes WHERE quiz_id = ?";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, quizId);
+        // Връзките с въпросите и куизът се изтриват в една транзакция
+        return UnitOfWork.execute(() -> {
+            // Изтриване на връзките между куиза и въпросите
+            removeQuestionsFromQuiz(quizId);
             
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            System.err.println("Грешка при изтриване на куиз: " + e.getMessage());
-            return false;
-        }
+            // Изтриване на куиза
+            String query = "DELETE FROM quizzes WHERE quiz_id = ?";
+            
+            try (Connection connection = ConnectionPool.getInstance().getConnection();
+                 PreparedStatement statement = connection.prepareStatement(query)) {
+                statement.setInt(1, quizId);
+                
+                int affectedRows = statement.executeUpdate();
+                cache.invalidateQuiz(quizId);
+                return affectedRows > 0;
+            } catch (SQLException e) {
+                System.err.println("Грешка при изтриване на куиз: " + e.getMessage());
+                return false;
+            }
+        });
     }
     
     /**
@@ -247,7 +315,8 @@ public class QuizDAO {
     public boolean createQuestion(Question question) {
         String query = "INSERT INTO questions (category_id, text, difficulty) VALUES (?, ?, ?)";
         
-        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             if (question.getCategoryId() != 0) {
                 statement.setInt(1, question.getCategoryId());
             } else {
@@ -293,7 +362,8 @@ public class QuizDAO {
     public Question getQuestionById(int questionId) {
         String query = "SELECT * FROM questions WHERE question_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, questionId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -322,7 +392,8 @@ public class QuizDAO {
         List<Question> questions = new ArrayList<>();
         String query = "SELECT * FROM questions";
         
-        try (Statement statement = connection.createStatement();
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
             
             while (resultSet.next()) {
@@ -351,7 +422,8 @@ public class QuizDAO {
         List<Question> questions = new ArrayList<>();
         String query = "SELECT * FROM questions WHERE category_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, categoryId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -382,7 +454,8 @@ public class QuizDAO {
         List<Question> questions = new ArrayList<>();
         String query = "SELECT * FROM questions WHERE difficulty = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, difficulty);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -412,7 +485,8 @@ public class QuizDAO {
     public boolean updateQuestion(Question question) {
         String query = "UPDATE questions SET category_id = ?, text = ?, difficulty = ? WHERE question_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             if (question.getCategoryId() != 0) {
                 statement.setInt(1, question.getCategoryId());
             } else {
@@ -438,6 +512,7 @@ public class QuizDAO {
                     }
                 }
                 
+                cache.invalidateQuestion(question.getQuestionId());
                 return true;
             }
             
@@ -455,24 +530,29 @@ public class QuizDAO {
      * @return true при успех, false при грешка
      */
     public boolean deleteQuestion(int questionId) {
-        // Изтриване на отговорите на въпроса
-        deleteAnswersForQuestion(questionId);
-        
-        // Изтриване на връзките между въпроса и куизовете
-        removeQuestionFromAllQuizzes(questionId);
-        
-        // Изтриване на въпроса
-        String query = "DELETE FROM questions WHERE question_id = ?";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, questionId);
+        // Отговорите, връзките и въпросът се изтриват в една транзакция
+        return UnitOfWork.execute(() -> {
+            // Изтриване на отговорите на въпроса
+            deleteAnswersForQuestion(questionId);
             
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            System.err.println("Грешка при изтриване на въпрос: " + e.getMessage());
-            return false;
-        }
+            // Изтриване на връзките между въпроса и куизовете
+            removeQuestionFromAllQuizzes(questionId);
+            
+            // Изтриване на въпроса
+            String query = "DELETE FROM questions WHERE question_id = ?";
+            
+            try (Connection connection = ConnectionPool.getInstance().getConnection();
+                 PreparedStatement statement = connection.prepareStatement(query)) {
+                statement.setInt(1, questionId);
+                
+                int affectedRows = statement.executeUpdate();
+                cache.invalidateQuestion(questionId);
+                return affectedRows > 0;
+            } catch (SQLException e) {
+                System.err.println("Грешка при изтриване на въпрос: " + e.getMessage());
+                return false;
+            }
+        });
     }
     
     /**
@@ -484,7 +564,8 @@ public class QuizDAO {
     public boolean createAnswer(Answer answer) {
         String query = "INSERT INTO answers (question_id, text, is_correct) VALUES (?, ?, ?)";
         
-        try (PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             statement.setInt(1, answer.getQuestionId());
             statement.setString(2, answer.getText());
             statement.setBoolean(3, answer.isCorrect());
@@ -495,6 +576,7 @@ public class QuizDAO {
                 try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         answer.setAnswerId(generatedKeys.getInt(1));
+                        cache.invalidateQuestion(answer.getQuestionId());
                         return true;
                     }
                 }
@@ -515,7 +597,8 @@ public class QuizDAO {
     public Answer getAnswerById(int answerId) {
         String query = "SELECT * FROM answers WHERE answer_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, answerId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -539,13 +622,16 @@ public class QuizDAO {
     public boolean updateAnswer(Answer answer) {
         String query = "UPDATE answers SET question_id = ?, text = ?, is_correct = ? WHERE answer_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, answer.getQuestionId());
             statement.setString(2, answer.getText());
             statement.setBoolean(3, answer.isCorrect());
             statement.setInt(4, answer.getAnswerId());
             
             int affectedRows = statement.executeUpdate();
+            cache.invalidateAnswer(answer.getAnswerId());
+            cache.invalidateQuestion(answer.getQuestionId());
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Грешка при актуализиране на отговор: " + e.getMessage());
@@ -562,10 +648,12 @@ public class QuizDAO {
     public boolean deleteAnswer(int answerId) {
         String query = "DELETE FROM answers WHERE answer_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, answerId);
             
             int affectedRows = statement.executeUpdate();
+            cache.invalidateAnswer(answerId);
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Грешка при изтриване на отговор: " + e.getMessage());
@@ -580,30 +668,8 @@ public class QuizDAO {
      * @return списък с Question обекти
      */
     public List<Question> getQuestionsForQuiz(int quizId) {
-        List<Question> questions = new ArrayList<>();
-        String query = "SELECT q.* FROM questions q " +
-                      "JOIN quiz_questions qq ON q.question_id = qq.question_id " +
-                      "WHERE qq.quiz_id = ? " +
-                      "ORDER BY qq.question_order";
-        
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, quizId);
-            
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    Question question = mapResultSetToQuestion(resultSet);
-                    
-                    // Зареждане на отговорите на въпроса
-                    question.setAnswers(getAnswersForQuestion(question.getQuestionId()));
-                    
-                    questions.add(question);
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Грешка при извличане на въпроси за куиз: " + e.getMessage());
-        }
-        
-        return questions;
+        QuizSnapshot snapshot = getQuizSnapshot(quizId);
+        return snapshot != null ? snapshot.toQuiz().getQuestions() : new ArrayList<>();
     }
     
     /**
@@ -616,7 +682,8 @@ public class QuizDAO {
         List<Answer> answers = new ArrayList<>();
         String query = "SELECT * FROM answers WHERE question_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, questionId);
             
             try (ResultSet resultSet = statement.executeQuery()) {
@@ -642,12 +709,14 @@ public class QuizDAO {
     public boolean linkQuestionToQuiz(int quizId, int questionId, int order) {
         String query = "INSERT INTO quiz_questions (quiz_id, question_id, question_order) VALUES (?, ?, ?)";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, quizId);
             statement.setInt(2, questionId);
             statement.setInt(3, order);
             
             int affectedRows = statement.executeUpdate();
+            cache.invalidateQuiz(quizId);
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Грешка при свързване на въпрос с куиз: " + e.getMessage());
@@ -665,11 +734,13 @@ public class QuizDAO {
     public boolean unlinkQuestionFromQuiz(int quizId, int questionId) {
         String query = "DELETE FROM quiz_questions WHERE quiz_id = ? AND question_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, quizId);
             statement.setInt(2, questionId);
             
             int affectedRows = statement.executeUpdate();
+            cache.invalidateQuiz(quizId);
             return affectedRows > 0;
         } catch (SQLException e) {
             System.err.println("Грешка при премахване на връзка между въпрос и куиз: " + e.getMessage());
@@ -686,10 +757,12 @@ public class QuizDAO {
     public boolean removeQuestionsFromQuiz(int quizId) {
         String query = "DELETE FROM quiz_questions WHERE quiz_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, quizId);
             
             statement.executeUpdate();
+            cache.invalidateQuiz(quizId);
             return true;
         } catch (SQLException e) {
             System.err.println("Грешка при премахване на всички въпроси от куиз: " + e.getMessage());
@@ -706,10 +779,12 @@ public class QuizDAO {
     public boolean removeQuestionFromAllQuizzes(int questionId) {
         String query = "DELETE FROM quiz_questions WHERE question_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, questionId);
             
             statement.executeUpdate();
+            cache.invalidateQuestion(questionId);
             return true;
         } catch (SQLException e) {
             System.err.println("Грешка при премахване на въпрос от всички куизове: " + e.getMessage());
@@ -726,10 +801,12 @@ public class QuizDAO {
     public boolean deleteAnswersForQuestion(int questionId) {
         String query = "DELETE FROM answers WHERE question_id = ?";
         
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, questionId);
             
             statement.executeUpdate();
+            cache.invalidateQuestion(questionId);
             return true;
         } catch (SQLException e) {
             System.err.println("Грешка при изтриване на отговори за въпрос: " + e.getMessage());
@@ -799,4 +876,54 @@ public class QuizDAO {
         
         return answer;
     }
+    
+    /**
+     * Сглобява въпроси с отговорите им при едно обхождане на резултат,
+     * подреден по ред на въпроса в куиза и ID на отговора
+     */
+    private class QuestionAssembler {
+        private final List<Question> questions = new ArrayList<>();
+        private Question current;
+        private int currentOrder;
+        
+        /**
+         * Обработва един ред от резултата
+         * 
+         * @param resultSet резултат, позициониран на текущия ред
+         */
+        private void addRow(ResultSet resultSet) throws SQLException {
+            int questionId = resultSet.getInt("question_id");
+            if (resultSet.wasNull()) {
+                // Куиз без въпроси
+                return;
+            }
+            
+            int questionOrder = resultSet.getInt("question_order");
+            if (current == null || current.getQuestionId() != questionId || currentOrder != questionOrder) {
+                current = mapResultSetToQuestion(resultSet);
+                currentOrder = questionOrder;
+                questions.add(current);
+            }
+            
+            int answerId = resultSet.getInt("answer_id");
+            if (!resultSet.wasNull()) {
+                Answer answer = new Answer();
+                answer.setAnswerId(answerId);
+                answer.setQuestionId(questionId);
+                answer.setText(resultSet.getString("answer_text"));
+                answer.setCorrect(resultSet.getBoolean("is_correct"));
+                
+                current.getAnswers().add(answer);
+            }
+        }
+        
+        /**
+         * Връща сглобените въпроси
+         * 
+         * @return списък с Question обекти
+         */
+        private List<Question> getQuestions() {
+            return questions;
+        }
+    }
 }
\ No newline at end of file
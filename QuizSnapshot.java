@@ -0,0 +1,237 @@
+package com.knowledgeheroes.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Неизменима моментна снимка на куиз с въпросите и отговорите му.
+ * 
+ * Снимките се споделят между нишките без копиране, затова нито една от тях
+ * не предлага методи за промяна. За редактиране се използва {@link #toQuiz()}.
+ */
+public final class QuizSnapshot {
+    private final int quizId;
+    private final int levelId;
+    private final String name;
+    private final String description;
+    private final int timeLimit;
+    private final long version;
+    private final List<QuestionSnapshot> questions;
+    
+    /**
+     * Конструктор с всички параметри
+     * 
+     * @param quizId ID на куиза
+     * @param levelId ID на нивото
+     * @param name име на куиза
+     * @param description описание на куиза
+     * @param timeLimit времеви лимит в секунди
+     * @param version версия на съдържанието, от която е направена снимката
+     * @param questions въпросите на куиза в реда им
+     */
+    public QuizSnapshot(int quizId, int levelId, String name, String description, int timeLimit,
+                        long version, List<QuestionSnapshot> questions) {
+        this.quizId = quizId;
+        this.levelId = levelId;
+        this.name = name;
+        this.description = description;
+        this.timeLimit = timeLimit;
+        this.version = version;
+        this.questions = Collections.unmodifiableList(new ArrayList<>(questions));
+    }
+    
+    /**
+     * Създава снимка от зареден куиз
+     * 
+     * @param quiz куиз с въпроси и отговори
+     * @param version версия на съдържанието
+     * @return неизменима снимка на куиза
+     */
+    public static QuizSnapshot of(Quiz quiz, long version) {
+        List<QuestionSnapshot> questions = new ArrayList<>();
+        if (quiz.getQuestions() != null) {
+            for (Question question : quiz.getQuestions()) {
+                List<AnswerSnapshot> answers = new ArrayList<>();
+                if (question.getAnswers() != null) {
+                    for (Answer answer : question.getAnswers()) {
+                        answers.add(new AnswerSnapshot(answer.getAnswerId(), answer.getQuestionId(),
+                                                       answer.getText(), answer.isCorrect()));
+                    }
+                }
+                
+                questions.add(new QuestionSnapshot(question.getQuestionId(), question.getCategoryId(),
+                                                   question.getText(), question.getDifficulty(), answers));
+            }
+        }
+        
+        return new QuizSnapshot(quiz.getQuizId(), quiz.getLevelId(), quiz.getName(), quiz.getDescription(),
+                                quiz.getTimeLimit(), version, questions);
+    }
+    
+    /**
+     * Създава нов, изменим Quiz обект със същото съдържание
+     * 
+     * @return Quiz обект с въпроси и отговори
+     */
+    public Quiz toQuiz() {
+        Quiz quiz = new Quiz(quizId, levelId, name, description, timeLimit);
+        List<Question> quizQuestions = new ArrayList<>();
+        
+        for (QuestionSnapshot snapshot : questions) {
+            Question question = new Question(snapshot.getQuestionId(), snapshot.getCategoryId(),
+                                             snapshot.getText(), snapshot.getDifficulty());
+            for (AnswerSnapshot answer : snapshot.getAnswers()) {
+                question.getAnswers().add(new Answer(answer.getAnswerId(), answer.getQuestionId(),
+                                                     answer.getText(), answer.isCorrect()));
+            }
+            quizQuestions.add(question);
+        }
+        
+        quiz.setQuestions(quizQuestions);
+        return quiz;
+    }
+    
+    /**
+     * Проверява дали куизът съдържа въпрос
+     * 
+     * @param questionId ID на въпроса
+     * @return true ако въпросът е в куиза
+     */
+    public boolean containsQuestion(int questionId) {
+        for (QuestionSnapshot question : questions) {
+            if (question.getQuestionId() == questionId) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Проверява дали куизът съдържа отговор
+     * 
+     * @param answerId ID на отговора
+     * @return true ако отговорът е в някой от въпросите на куиза
+     */
+    public boolean containsAnswer(int answerId) {
+        for (QuestionSnapshot question : questions) {
+            for (AnswerSnapshot answer : question.getAnswers()) {
+                if (answer.getAnswerId() == answerId) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    public int getQuizId() {
+        return quizId;
+    }
+    
+    public int getLevelId() {
+        return levelId;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public int getTimeLimit() {
+        return timeLimit;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public List<QuestionSnapshot> getQuestions() {
+        return questions;
+    }
+    
+    @Override
+    public String toString() {
+        return "QuizSnapshot{" +
+               "quizId=" + quizId +
+               ", name='" + name + '\'' +
+               ", version=" + version +
+               ", questions=" + questions.size() +
+               '}';
+    }
+    
+    /**
+     * Неизменима снимка на въпрос
+     */
+    public static final class QuestionSnapshot {
+        private final int questionId;
+        private final int categoryId;
+        private final String text;
+        private final String difficulty;
+        private final List<AnswerSnapshot> answers;
+        
+        public QuestionSnapshot(int questionId, int categoryId, String text, String difficulty,
+                                List<AnswerSnapshot> answers) {
+            this.questionId = questionId;
+            this.categoryId = categoryId;
+            this.text = text;
+            this.difficulty = difficulty;
+            this.answers = Collections.unmodifiableList(new ArrayList<>(answers));
+        }
+        
+        public int getQuestionId() {
+            return questionId;
+        }
+        
+        public int getCategoryId() {
+            return categoryId;
+        }
+        
+        public String getText() {
+            return text;
+        }
+        
+        public String getDifficulty() {
+            return difficulty;
+        }
+        
+        public List<AnswerSnapshot> getAnswers() {
+            return answers;
+        }
+    }
+    
+    /**
+     * Неизменима снимка на отговор
+     */
+    public static final class AnswerSnapshot {
+        private final int answerId;
+        private final int questionId;
+        private final String text;
+        private final boolean correct;
+        
+        public AnswerSnapshot(int answerId, int questionId, String text, boolean correct) {
+            this.answerId = answerId;
+            this.questionId = questionId;
+            this.text = text;
+            this.correct = correct;
+        }
+        
+        public int getAnswerId() {
+            return answerId;
+        }
+        
+        public int getQuestionId() {
+            return questionId;
+        }
+        
+        public String getText() {
+            return text;
+        }
+        
+        public boolean isCorrect() {
+            return correct;
+        }
+    }
+}
\ No newline at end of file
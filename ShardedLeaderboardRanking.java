@@ -0,0 +1,297 @@
+package com.knowledgeheroes.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Класация в паметта, разделена на независими части по хеш на ID на играча.
+ * 
+ * Всяка част е отделна {@link LeaderboardRanking} със собствено заключване,
+ * затова резултати на различни играчи се записват паралелно. Най-добрите
+ * записи на цялата класация се пазят отделно и се обновяват при всеки резултат,
+ * който влиза в тях; останалите резултати не докосват общи данни. Позицията и
+ * записите около играч се изчисляват от всички части - O(s log n) и
+ * O(s (log n + k)) за s части. Четене по време на запис може да види някои
+ * части преди, а други след него.
+ */
+public class ShardedLeaderboardRanking {
+    private final LeaderboardRanking[] shards;
+    private final int topSize;
+    
+    // Най-добрите topSize записа от всички части, подредени като в LeaderboardRanking
+    private final Object topLock = new Object();
+    private final TreeSet<LeaderboardEntry> top = new TreeSet<>(LeaderboardRanking::compareEntries);
+    private final Map<Integer, LeaderboardEntry> topByPlayer = new HashMap<>();
+    private boolean topValid = true;
+    // Най-ниският резултат в пълния списък; по-ниските резултати не го променят
+    private volatile int topThreshold = Integer.MIN_VALUE;
+    
+    /**
+     * Създава празна класация
+     * 
+     * @param shardCount брой части
+     * @param topSize брой най-добри записи, които се поддържат наготово
+     */
+    public ShardedLeaderboardRanking(int shardCount, int topSize) {
+        this.shards = new LeaderboardRanking[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new LeaderboardRanking();
+        }
+        this.topSize = Math.max(1, topSize);
+    }
+    
+    /**
+     * Връща частта, към която принадлежи играч
+     * 
+     * @param playerId ID на играча
+     * @param shardCount брой части
+     * @return индекс на частта (от 0 до shardCount - 1)
+     */
+    public static int shardOf(int playerId, int shardCount) {
+        // Последователните ID се разпределят равномерно
+        int hash = playerId * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shardCount);
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    /**
+     * Добавя резултат, като запазва само най-добрия резултат на играча
+     * 
+     * @param entry запис с резултат
+     * @return true ако класацията е променена, false ако играчът вече има по-добър или равен резултат
+     */
+    public boolean submit(LeaderboardEntry entry) {
+        LeaderboardRanking shard = shardFor(entry.getPlayerId());
+        if (!shard.submit(entry)) {
+            return false;
+        }
+        
+        if (entry.getScore() >= topThreshold) {
+            updateTop(shard.getEntry(entry.getPlayerId()));
+        }
+        return true;
+    }
+    
+    /**
+     * Премахва играч от класацията
+     * 
+     * @param playerId ID на играча
+     * @return true ако играчът е премахнат, false ако не е бил в класацията
+     */
+    public boolean remove(int playerId) {
+        if (!shardFor(playerId).remove(playerId)) {
+            return false;
+        }
+        
+        synchronized (topLock) {
+            if (topByPlayer.containsKey(playerId)) {
+                // Мястото му се заема от запис, който списъкът не пази - изгражда се отново при четене
+                topValid = false;
+                topThreshold = Integer.MIN_VALUE;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Задава името на играч, ако записът му още няма име
+     * 
+     * @param playerId ID на играча
+     * @param playerName потребителско име
+     */
+    public void setPlayerName(int playerId, String playerName) {
+        shardFor(playerId).setPlayerName(playerId, playerName);
+        
+        synchronized (topLock) {
+            LeaderboardEntry entry = topByPlayer.get(playerId);
+            if (entry != null && entry.getPlayerName() == null) {
+                entry.setPlayerName(playerName);
+            }
+        }
+    }
+    
+    /**
+     * Връща ранга на играч; играчи с равен резултат делят един и същ ранг
+     * 
+     * @param playerId ID на играча
+     * @return ранг (1-базиран) или -1 ако играчът не е в класацията
+     */
+    public int getRank(int playerId) {
+        LeaderboardEntry entry = shardFor(playerId).getEntry(playerId);
+        if (entry == null) {
+            return -1;
+        }
+        
+        int higher = 0;
+        for (LeaderboardRanking shard : shards) {
+            higher += shard.countAbove(entry.getScore());
+        }
+        return higher + 1;
+    }
+    
+    /**
+     * Връща най-добрия резултат на играч
+     * 
+     * @param playerId ID на играча
+     * @return най-добър резултат или -1 ако играчът не е в класацията
+     */
+    public int getScore(int playerId) {
+        return shardFor(playerId).getScore(playerId);
+    }
+    
+    public boolean contains(int playerId) {
+        return shardFor(playerId).contains(playerId);
+    }
+    
+    /**
+     * Връща броя играчи в класацията
+     * 
+     * @return брой играчи
+     */
+    public int size() {
+        int size = 0;
+        for (LeaderboardRanking shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+    
+    /**
+     * Връща най-добрите N записи. До topSize записа се връщат от поддържания
+     * списък, а повече - със сливане на най-добрите записи на всяка част.
+     * 
+     * @param limit максимален брой записи
+     * @return списък със записи, подредени по резултат
+     */
+    public List<LeaderboardEntry> getTopEntries(int limit) {
+        List<LeaderboardEntry> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        
+        if (limit > topSize) {
+            List<LeaderboardEntry> merged = new ArrayList<>();
+            for (LeaderboardRanking shard : shards) {
+                merged.addAll(shard.getTopEntries(limit));
+            }
+            merged.sort(LeaderboardRanking::compareEntries);
+            return new ArrayList<>(merged.subList(0, Math.min(limit, merged.size())));
+        }
+        
+        synchronized (topLock) {
+            if (!topValid) {
+                rebuildTop();
+            }
+            for (LeaderboardEntry entry : top) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(copy(entry));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Връща записите около играч: до k записа преди него, неговия запис и до k записа след него
+     * 
+     * @param playerId ID на играча
+     * @param k брой съседи от всяка страна
+     * @return списък със записи или празен списък ако играчът не е в класацията
+     */
+    public List<LeaderboardEntry> getEntriesAround(int playerId, int k) {
+        List<LeaderboardEntry> result = new ArrayList<>();
+        LeaderboardEntry player = shardFor(playerId).getEntry(playerId);
+        if (player == null) {
+            return result;
+        }
+        
+        List<LeaderboardEntry> above = new ArrayList<>();
+        List<LeaderboardEntry> below = new ArrayList<>();
+        for (LeaderboardRanking shard : shards) {
+            for (LeaderboardEntry entry : shard.getEntriesAround(player, k)) {
+                if (LeaderboardRanking.compareEntries(entry, player) < 0) {
+                    above.add(entry);
+                } else {
+                    below.add(entry);
+                }
+            }
+        }
+        above.sort(LeaderboardRanking::compareEntries);
+        below.sort(LeaderboardRanking::compareEntries);
+        
+        result.addAll(above.subList(Math.max(0, above.size() - k), above.size()));
+        result.add(player);
+        result.addAll(below.subList(0, Math.min(k, below.size())));
+        return result;
+    }
+    
+    private LeaderboardRanking shardFor(int playerId) {
+        return shards[shardOf(playerId, shards.length)];
+    }
+    
+    /**
+     * Отразява подобрен резултат в списъка с най-добрите записи
+     * 
+     * @param entry текущият запис на играча в неговата част
+     */
+    private void updateTop(LeaderboardEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        
+        synchronized (topLock) {
+            if (!topValid) {
+                return;
+            }
+            
+            // Резултатите само се подобряват, затова по-стар запис не заменя по-нов
+            LeaderboardEntry current = topByPlayer.get(entry.getPlayerId());
+            if (current != null) {
+                if (current.getScore() >= entry.getScore()) {
+                    return;
+                }
+                top.remove(current);
+            }
+            top.add(entry);
+            topByPlayer.put(entry.getPlayerId(), entry);
+            
+            if (top.size() > topSize) {
+                topByPlayer.remove(top.pollLast().getPlayerId());
+            }
+            updateThreshold();
+        }
+    }
+    
+    private void rebuildTop() {
+        top.clear();
+        topByPlayer.clear();
+        for (LeaderboardRanking shard : shards) {
+            for (LeaderboardEntry entry : shard.getTopEntries(topSize)) {
+                top.add(entry);
+                topByPlayer.put(entry.getPlayerId(), entry);
+                if (top.size() > topSize) {
+                    topByPlayer.remove(top.pollLast().getPlayerId());
+                }
+            }
+        }
+        topValid = true;
+        updateThreshold();
+    }
+    
+    private void updateThreshold() {
+        topThreshold = top.size() >= topSize ? top.last().getScore() : Integer.MIN_VALUE;
+    }
+    
+    private static LeaderboardEntry copy(LeaderboardEntry entry) {
+        return new LeaderboardEntry(entry.getEntryId(), entry.getLeaderboardId(), entry.getPlayerId(),
+                                    entry.getPlayerName(), entry.getScore(), entry.getDate());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,495 @@
+package com.knowledgeheroes.config;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Лог на бавните заявки.
+ * 
+ * Всяко изпълнение на заявка през пула, което отнема поне зададения праг, се
+ * записва като един JSON ред: време, DAO метод, SQL, параметри (паролите са
+ * скрити), продължителност и брой редове. Записът става във фонова нишка през
+ * ограничена опашка, така че извикващата нишка не чака диска; при пълна опашка
+ * записите се отхвърлят и се броят. Файлът се ротира при достигане на максималния
+ * размер (slow-queries.log, slow-queries.log.1, ...).
+ * 
+ * Настройки (системни свойства):
+ * knowledgeheroes.db.slowlog.thresholdMillis - праг в милисекунди (по подразбиране 500, отрицателен изключва лога),
+ * knowledgeheroes.db.slowlog.file - път до файла (по подразбиране logs/slow-queries.log),
+ * knowledgeheroes.db.slowlog.maxBytes - максимален размер на файла (по подразбиране 10 MB),
+ * knowledgeheroes.db.slowlog.maxFiles - брой пазени стари файлове (по подразбиране 5).
+ */
+public class SlowQueryLog {
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int MAX_VALUE_LENGTH = 200;
+    private static final String REDACTED = "***";
+    
+    // Колона, сравнявана с параметър: "password = ?", "p.score >= ?", "username LIKE ?"
+    private static final Pattern COMPARED_COLUMN = Pattern.compile(
+            "([A-Za-z_][\\w.]*)\\s*(?:=|<>|!=|<=|>=|<|>|\\bLIKE)\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern INSERT_COLUMNS = Pattern.compile(
+            "^\\s*(?:INSERT|REPLACE)\\s+(?:IGNORE\\s+)?INTO\\s+\\S+\\s*\\(([^)]*)\\)\\s*VALUES\\s*",
+            Pattern.CASE_INSENSITIVE);
+    
+    private static final SlowQueryLog INSTANCE = new SlowQueryLog(
+            Long.getLong("knowledgeheroes.db.slowlog.thresholdMillis", 500),
+            Paths.get(System.getProperty("knowledgeheroes.db.slowlog.file", "logs/slow-queries.log")),
+            Long.getLong("knowledgeheroes.db.slowlog.maxBytes", 10L * 1024 * 1024),
+            Integer.getInteger("knowledgeheroes.db.slowlog.maxFiles", 5));
+    
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private volatile long thresholdNanos;
+    private volatile boolean closed;
+    
+    private Thread writer;
+    private BufferedWriter out;
+    private long fileSize;
+    
+    /**
+     * Създава лог на бавните заявки
+     * 
+     * @param thresholdMillis праг в милисекунди; отрицателен изключва лога
+     * @param file път до файла
+     * @param maxBytes максимален размер на файла преди ротация
+     * @param maxFiles брой пазени стари файлове
+     */
+    public SlowQueryLog(long thresholdMillis, Path file, long maxBytes, int maxFiles) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = Math.max(0, maxFiles);
+        setThresholdMillis(thresholdMillis);
+    }
+    
+    /**
+     * Връща общия лог на бавните заявки
+     * 
+     * @return лог на бавните заявки
+     */
+    public static SlowQueryLog getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Задава прага, над който заявката се записва
+     * 
+     * @param thresholdMillis праг в милисекунди; отрицателен изключва лога
+     */
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+    
+    public long getThresholdMillis() {
+        return thresholdNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+    
+    public boolean isEnabled() {
+        return thresholdNanos >= 0 && !closed;
+    }
+    
+    /**
+     * Връща броя записи, отхвърлени поради пълна опашка
+     * 
+     * @return брой отхвърлени записи
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+    
+    /**
+     * Връща броя записи, записани във файла
+     * 
+     * @return брой записи
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+    
+    /**
+     * Започва проследяване на заявка
+     * 
+     * @param sql SQL на подготвената заявка или null за обикновен Statement
+     * @return проследяване или null ако логът е изключен
+     */
+    Trace trace(String sql) {
+        return isEnabled() ? new Trace(sql) : null;
+    }
+    
+    /**
+     * Спира фоновата нишка, след като запише чакащите записи
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            thread = writer;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void submit(Entry entry) {
+        if (!queue.offer(entry)) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        startWriter();
+    }
+    
+    private synchronized void startWriter() {
+        if (writer != null || closed) {
+            return;
+        }
+        writer = new Thread(this::writeLoop, "slow-query-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "slow-query-log-shutdown"));
+    }
+    
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                // Затваряне - записват се останалите записи
+            }
+            queue.drainTo(batch);
+            write(batch);
+            batch.clear();
+        }
+        closeFile();
+    }
+    
+    private void write(List<Entry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            for (Entry entry : batch) {
+                String line = entry.toJson() + System.lineSeparator();
+                long length = line.getBytes(StandardCharsets.UTF_8).length;
+                if (out == null || fileSize + length > maxBytes && fileSize > 0) {
+                    openFile(out != null);
+                }
+                out.write(line);
+                fileSize += length;
+                writtenCount.incrementAndGet();
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Грешка при запис в лога на бавните заявки: " + e.getMessage());
+            closeFile();
+        }
+    }
+    
+    /**
+     * Отваря файла за добавяне, като при нужда първо ротира старите файлове
+     */
+    private void openFile(boolean rotate) throws IOException {
+        closeFile();
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        
+        if (rotate || Files.exists(file) && Files.size(file) >= maxBytes) {
+            if (maxFiles == 0) {
+                Files.deleteIfExists(file);
+            } else {
+                Files.deleteIfExists(rotated(maxFiles));
+                for (int i = maxFiles - 1; i >= 1; i--) {
+                    if (Files.exists(rotated(i))) {
+                        Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                if (Files.exists(file)) {
+                    Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        
+        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileSize = Files.size(file);
+    }
+    
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+    
+    private void closeFile() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("Грешка при затваряне на лога на бавните заявки: " + e.getMessage());
+        }
+        out = null;
+    }
+    
+    /**
+     * Определя името на колоната за всеки параметър на заявката, за да могат
+     * паролите да се скрият. За неразпознатите параметри името е null.
+     */
+    static String[] parameterNames(String sql, int count) {
+        String[] names = new String[count];
+        if (sql == null) {
+            return names;
+        }
+        
+        Matcher insert = INSERT_COLUMNS.matcher(sql);
+        if (insert.find()) {
+            String[] columns = insert.group(1).split(",");
+            List<Integer> placeholders = placeholders(sql, insert.end());
+            if (!placeholders.isEmpty() && placeholders.size() % columns.length == 0) {
+                for (int i = 0; i < placeholders.size() && i < count; i++) {
+                    names[i] = columns[i % columns.length].trim();
+                }
+                return names;
+            }
+        }
+        
+        List<Integer> placeholders = placeholders(sql, 0);
+        for (int i = 0; i < placeholders.size() && i < count; i++) {
+            Matcher column = COMPARED_COLUMN.matcher(sql.substring(0, placeholders.get(i)));
+            if (column.find()) {
+                names[i] = column.group(1);
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * Позициите на '?' извън низови литерали, започвайки от дадена позиция
+     */
+    private static List<Integer> placeholders(String sql, int from) {
+        List<Integer> positions = new ArrayList<>();
+        boolean quoted = false;
+        for (int i = from; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == '?' && !quoted) {
+                positions.add(i);
+            }
+        }
+        return positions;
+    }
+    
+    private static boolean isSecret(String column) {
+        return column != null && column.toLowerCase(Locale.ROOT).contains("password");
+    }
+    
+    /**
+     * Проследяване на изпълненията на един Statement. Използва се само от нишката, която го е създала.
+     */
+    final class Trace {
+        private final String preparedSql;
+        private Object[] parameters = new Object[8];
+        private int parameterCount;
+        private int batchSize;
+        
+        private String sql;
+        private Object[] executedParameters;
+        private int executedBatchSize;
+        private long startNanos;
+        private long rows;
+        private boolean running;
+        
+        private Trace(String preparedSql) {
+            this.preparedSql = preparedSql;
+        }
+        
+        void setParameter(int index, Object value) {
+            if (index < 1) {
+                return;
+            }
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+        
+        void clearParameters() {
+            Arrays.fill(parameters, 0, parameterCount, null);
+            parameterCount = 0;
+        }
+        
+        void addBatch() {
+            batchSize++;
+        }
+        
+        /**
+         * Отбелязва началото на изпълнение
+         * 
+         * @param sql SQL, подаден директно на execute, или null за подготвената заявка
+         */
+        void start(String sql) {
+            this.sql = sql != null ? sql : preparedSql;
+            this.executedParameters = Arrays.copyOf(parameters, parameterCount);
+            this.executedBatchSize = batchSize;
+            this.batchSize = 0;
+            this.rows = 0;
+            this.startNanos = System.nanoTime();
+            this.running = true;
+        }
+        
+        void onRow() {
+            rows++;
+        }
+        
+        void onUpdateCount(long count) {
+            if (count > 0) {
+                rows += count;
+            }
+        }
+        
+        /**
+         * Приключва текущото изпълнение и го записва, ако е над прага
+         * 
+         * @param call извикването, към което принадлежи заявката, или null
+         */
+        void finish(DaoMetrics.Call call) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            
+            long elapsed = System.nanoTime() - startNanos;
+            long threshold = thresholdNanos;
+            if (threshold < 0 || elapsed < threshold || closed) {
+                return;
+            }
+            
+            String method = call != null ? call.getMethod() : DaoMetrics.callerMethod();
+            submit(new Entry(System.currentTimeMillis(), method, sql, executedParameters, executedBatchSize, elapsed, rows));
+        }
+    }
+    
+    /**
+     * Един запис в лога
+     */
+    private static final class Entry {
+        private final long timestamp;
+        private final String method;
+        private final String sql;
+        private final Object[] parameters;
+        private final int batchSize;
+        private final long elapsedNanos;
+        private final long rows;
+        
+        private Entry(long timestamp, String method, String sql, Object[] parameters, int batchSize,
+                      long elapsedNanos, long rows) {
+            this.timestamp = timestamp;
+            this.method = method;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.batchSize = batchSize;
+            this.elapsedNanos = elapsedNanos;
+            this.rows = rows;
+        }
+        
+        private String toJson() {
+            StringBuilder json = new StringBuilder(256);
+            json.append("{\"time\":\"").append(Instant.ofEpochMilli(timestamp)).append('"');
+            json.append(",\"method\":");
+            appendString(json, method);
+            json.append(",\"elapsedMillis\":").append(String.format(Locale.ROOT, "%.3f", elapsedNanos / 1_000_000.0));
+            json.append(",\"rows\":").append(rows);
+            if (batchSize > 0) {
+                json.append(",\"batchSize\":").append(batchSize);
+            }
+            json.append(",\"sql\":");
+            appendString(json, sql);
+            
+            // Имената на колоните се определят само за записаните заявки
+            String[] names = parameterNames(sql, parameters.length);
+            json.append(",\"params\":[");
+            for (int i = 0; i < parameters.length; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                Object value = parameters[i];
+                if (isSecret(names[i])) {
+                    appendString(json, REDACTED);
+                } else if (value == null) {
+                    json.append("null");
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    json.append(value);
+                } else if (value instanceof byte[]) {
+                    appendString(json, "<" + ((byte[]) value).length + " bytes>");
+                } else {
+                    String text = String.valueOf(value);
+                    appendString(json, text.length() > MAX_VALUE_LENGTH ? text.substring(0, MAX_VALUE_LENGTH) + "..." : text);
+                }
+            }
+            json.append("]}");
+            return json.toString();
+        }
+        
+        private static void appendString(StringBuilder json, String value) {
+            if (value == null) {
+                json.append("null");
+                return;
+            }
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        json.append("\\\"");
+                        break;
+                    case '\\':
+                        json.append("\\\\");
+                        break;
+                    case '\n':
+                        json.append("\\n");
+                        break;
+                    case '\r':
+                        json.append("\\r");
+                        break;
+                    case '\t':
+                        json.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                }
+            }
+            json.append('"');
+        }
+    }
+}
\ No newline at end of file
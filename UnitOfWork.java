@@ -0,0 +1,230 @@
+package com.knowledgeheroes.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Група DAO операции, изпълнени на една връзка в една транзакция.
+ * 
+ * Докато работата се изпълнява, текущата нишка държи връзка от пула, затова
+ * всички DAO методи, извикани в нея, получават същата връзка. Транзакцията се
+ * потвърждава накрая и се отменя, ако работата хвърли изключение, ако операция
+ * върне false, или ако някоя заявка е завършила със SQLException - дори DAO
+ * методът да я е прихванал. Вложените единици се включват във външната.
+ * 
+ * Пример:
+ * <pre>
+ * boolean deleted = UnitOfWork.execute(() -&gt; quizDAO.deleteQuiz(quizId));
+ * </pre>
+ */
+public final class UnitOfWork {
+    private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+    
+    private final List<Runnable> commitCallbacks = new ArrayList<>();
+    private final List<Runnable> completionCallbacks = new ArrayList<>();
+    private boolean rollbackOnly;
+    
+    private UnitOfWork() {
+    }
+    
+    /**
+     * Работа, която връща резултат
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        T execute() throws SQLException;
+    }
+    
+    /**
+     * Операция в стила на DAO методите: false означава неуспех
+     */
+    @FunctionalInterface
+    public interface Operation {
+        boolean execute();
+    }
+    
+    /**
+     * Изпълнява операция в транзакция
+     * 
+     * @param operation операцията
+     * @return true ако операцията е успешна и транзакцията е потвърдена, false иначе
+     */
+    public static boolean execute(Operation operation) {
+        try {
+            Outcome<Boolean> outcome = transact(() -> {
+                if (!operation.execute()) {
+                    setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
+            return outcome.committed && outcome.result;
+        } catch (SQLException e) {
+            System.err.println("Грешка при изпълнение на транзакция: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Изпълнява работа в транзакция и връща резултата й
+     * 
+     * @param work работата
+     * @return резултатът на работата
+     * @throws SQLException при грешка или ако транзакцията е отменена
+     */
+    public static <T> T run(Work<T> work) throws SQLException {
+        Outcome<T> outcome = transact(work);
+        if (!outcome.committed) {
+            throw new SQLException("Транзакцията е отменена");
+        }
+        return outcome.result;
+    }
+    
+    private static <T> Outcome<T> transact(Work<T> work) throws SQLException {
+        UnitOfWork outer = current.get();
+        if (outer != null) {
+            // Вложена единица - включва се във външната транзакция
+            T result = work.execute();
+            return new Outcome<>(result, !outer.rollbackOnly);
+        }
+        
+        UnitOfWork unit = new UnitOfWork();
+        Connection connection = ConnectionPool.getInstance().getConnection();
+        boolean ownTransaction = false;
+        boolean committed = false;
+        try {
+            // Ако връзката вече е в транзакция, управлявана от извикващия, работата се включва в нея
+            ownTransaction = connection.getAutoCommit();
+            if (ownTransaction) {
+                connection.setAutoCommit(false);
+            }
+            current.set(unit);
+            
+            try {
+                T result = work.execute();
+                if (unit.rollbackOnly) {
+                    if (ownTransaction) {
+                        connection.rollback();
+                    }
+                    return new Outcome<>(result, false);
+                }
+                if (ownTransaction) {
+                    connection.commit();
+                }
+                committed = true;
+                return new Outcome<>(result, true);
+            } catch (SQLException | RuntimeException | Error e) {
+                if (ownTransaction) {
+                    rollbackQuietly(connection);
+                }
+                throw e;
+            }
+        } finally {
+            current.remove();
+            try {
+                if (ownTransaction) {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                System.err.println("Грешка при възстановяване на autocommit: " + e.getMessage());
+            } finally {
+                connection.close();
+                if (committed) {
+                    runCallbacks(unit.commitCallbacks);
+                }
+                runCallbacks(unit.completionCallbacks);
+            }
+        }
+    }
+    
+    /**
+     * Проверява дали текущата нишка изпълнява единица работа
+     * 
+     * @return true ако има активна транзакция
+     */
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+    
+    /**
+     * Отбелязва текущата транзакция за отменяне
+     */
+    public static void setRollbackOnly() {
+        UnitOfWork unit = current.get();
+        if (unit != null) {
+            unit.rollbackOnly = true;
+        }
+    }
+    
+    /**
+     * Регистрира действие, което се изпълнява след края на текущата транзакция
+     * (потвърдена или отменена), например изчистване на кеш
+     * 
+     * @param callback действието
+     * @return true ако е регистрирано, false ако няма активна транзакция
+     */
+    public static boolean afterCompletion(Runnable callback) {
+        UnitOfWork unit = current.get();
+        if (unit == null) {
+            return false;
+        }
+        unit.completionCallbacks.add(callback);
+        return true;
+    }
+    
+    /**
+     * Регистрира действие, което се изпълнява само ако текущата транзакция бъде
+     * потвърдена, например премахване на стойност, която е заета до потвърждаването
+     * 
+     * @param callback действието
+     * @return true ако е регистрирано, false ако няма активна транзакция
+     */
+    public static boolean afterCommit(Runnable callback) {
+        UnitOfWork unit = current.get();
+        if (unit == null) {
+            return false;
+        }
+        unit.commitCallbacks.add(callback);
+        return true;
+    }
+    
+    /**
+     * Извиква се от пула, когато заявка в текущата нишка завърши със SQLException
+     */
+    static void onError() {
+        setRollbackOnly();
+    }
+    
+    private static void runCallbacks(List<Runnable> callbacks) {
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                System.err.println("Грешка след края на транзакция: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Резултат на работата и дали транзакцията е потвърдена
+     */
+    private static final class Outcome<T> {
+        private final T result;
+        private final boolean committed;
+        
+        private Outcome(T result, boolean committed) {
+            this.result = result;
+            this.committed = committed;
+        }
+    }
+    
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            System.err.println("Грешка при отменяне на транзакция: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
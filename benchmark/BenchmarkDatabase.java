@@ -0,0 +1,366 @@
+package com.knowledgeheroes.benchmark;
+
+import com.knowledgeheroes.config.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Вградена база данни (H2 в режим MySQL) за бенчмарковете.
+ * 
+ * Създава схемата, която DAO класовете очакват, пълни я с реалистични обеми
+ * и инсталира общ ConnectionPool към нея. Обемите се задават със системните
+ * свойства knowledgeheroes.bench.* (по подразбиране 1M играчи, 100k записа
+ * в класациите и 10k въпроса).
+ */
+public final class BenchmarkDatabase {
+    public static final String URL = "jdbc:h2:mem:knowledgeheroes;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    
+    private static final int BATCH_SIZE = 10_000;
+    private static final String[] RARITIES = {"common", "uncommon", "rare", "epic", "legendary"};
+    private static final String[] DIFFICULTIES = {"easy", "medium", "hard", "expert"};
+    
+    private final int players;
+    private final int leaderboards;
+    private final int leaderboardEntries;
+    private final int questions;
+    private final int questionsPerQuiz;
+    private final int cards;
+    private final int collectors;
+    private final int cardsPerCollector;
+    private final int levels;
+    
+    /**
+     * Конструктор с обеми от системните свойства
+     */
+    public BenchmarkDatabase() {
+        this(Integer.getInteger("knowledgeheroes.bench.players", 1_000_000),
+             Integer.getInteger("knowledgeheroes.bench.leaderboardEntries", 100_000),
+             Integer.getInteger("knowledgeheroes.bench.questions", 10_000));
+    }
+    
+    /**
+     * Конструктор с основните обеми; останалите се изчисляват от тях
+     * 
+     * @param players брой играчи
+     * @param leaderboardEntries общ брой записи в класациите
+     * @param questions брой въпроси
+     */
+    public BenchmarkDatabase(int players, int leaderboardEntries, int questions) {
+        this.players = players;
+        this.leaderboards = 10;
+        this.leaderboardEntries = Math.min(leaderboardEntries, players * leaderboards);
+        this.questions = questions;
+        this.questionsPerQuiz = 10;
+        this.cards = 200;
+        this.collectors = Math.min(players, 10_000);
+        this.cardsPerCollector = 20;
+        this.levels = 50;
+    }
+    
+    /**
+     * Инсталира общ пул от връзки към вградената база данни
+     * 
+     * @param maxSize размер на пула
+     * @param counter брояч на обръщенията или null
+     * @return инсталираният пул
+     */
+    public static ConnectionPool installPool(int maxSize, RoundTripCounter counter) {
+        ConnectionPool pool = new ConnectionPool(() -> {
+            Connection connection = DriverManager.getConnection(URL, "sa", "");
+            return counter != null ? counter.wrap(connection) : connection;
+        }, maxSize, 5000, 30000, 0);
+        ConnectionPool.setInstance(pool);
+        return pool;
+    }
+    
+    /**
+     * Създава схемата и я пълни с данни
+     * 
+     * @param seed начална стойност на генератора на случайни числа
+     * @throws SQLException при грешка в базата данни
+     */
+    public void create(long seed) throws SQLException {
+        Random random = new Random(seed);
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+            connection.setAutoCommit(false);
+            createSchema(connection);
+            seedPlayers(connection);
+            seedLeaderboards(connection, random);
+            seedQuizzes(connection, random);
+            seedCards(connection, random);
+            seedLevels(connection);
+            connection.commit();
+        }
+    }
+    
+    /**
+     * Изтрива цялата база данни
+     * 
+     * @throws SQLException при грешка в базата данни
+     */
+    public static void drop() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+    }
+    
+    public int getPlayers() {
+        return players;
+    }
+    
+    public int getLeaderboards() {
+        return leaderboards;
+    }
+    
+    public int getQuizzes() {
+        return questions / questionsPerQuiz;
+    }
+    
+    public int getCollectors() {
+        return collectors;
+    }
+    
+    public int getLevels() {
+        return levels;
+    }
+    
+    /**
+     * Потребителско име на играч по номер (паролата е същата)
+     * 
+     * @param playerId ID на играча
+     * @return потребителско име
+     */
+    public static String username(int playerId) {
+        return "player" + playerId;
+    }
+    
+    private static void createSchema(Connection connection) throws SQLException {
+        String[] ddl = {
+            "CREATE TABLE players (player_id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) NOT NULL UNIQUE, " +
+                "password VARCHAR(255) NOT NULL, email VARCHAR(100) NOT NULL UNIQUE, " +
+                "registration_date TIMESTAMP, last_login TIMESTAMP)",
+            "CREATE TABLE leaderboards (leaderboard_id INT AUTO_INCREMENT PRIMARY KEY, level_id INT, " +
+                "category VARCHAR(50), name VARCHAR(100))",
+            "CREATE TABLE leaderboard_entries (entry_id INT AUTO_INCREMENT PRIMARY KEY, leaderboard_id INT NOT NULL, " +
+                "player_id INT NOT NULL, score INT NOT NULL, date TIMESTAMP)",
+            "CREATE INDEX idx_entries_board_score ON leaderboard_entries (leaderboard_id, score)",
+            // Един запис на играч в класация - изисква се от записа с ON DUPLICATE KEY UPDATE
+            "CREATE UNIQUE INDEX uk_leaderboard_player ON leaderboard_entries (leaderboard_id, player_id)",
+            "CREATE TABLE quizzes (quiz_id INT AUTO_INCREMENT PRIMARY KEY, level_id INT, name VARCHAR(100), " +
+                "description VARCHAR(500), time_limit INT)",
+            "CREATE TABLE questions (question_id INT AUTO_INCREMENT PRIMARY KEY, category_id INT, " +
+                "text VARCHAR(500), difficulty VARCHAR(20))",
+            "CREATE TABLE quiz_questions (quiz_id INT NOT NULL, question_id INT NOT NULL, question_order INT, " +
+                "PRIMARY KEY (quiz_id, question_id))",
+            "CREATE TABLE answers (answer_id INT AUTO_INCREMENT PRIMARY KEY, question_id INT NOT NULL, " +
+                "text VARCHAR(500), is_correct BOOLEAN)",
+            "CREATE INDEX idx_answers_question ON answers (question_id)",
+            "CREATE TABLE cards (card_id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(100), description VARCHAR(500), " +
+                "category_id INT, rarity VARCHAR(20), image_path VARCHAR(255))",
+            "CREATE TABLE abilities (ability_id INT AUTO_INCREMENT PRIMARY KEY, card_id INT NOT NULL, name VARCHAR(100), " +
+                "description VARCHAR(500), effect_type VARCHAR(20), effect_value INT)",
+            "CREATE TABLE player_cards (player_id INT NOT NULL, card_id INT NOT NULL, quantity INT NOT NULL, " +
+                "acquisition_date TIMESTAMP, PRIMARY KEY (player_id, card_id))",
+            "CREATE TABLE levels (level_id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(100), description VARCHAR(500), " +
+                "difficulty VARCHAR(20), unlock_requirement VARCHAR(50), background_path VARCHAR(255))",
+            "CREATE TABLE puzzles (puzzle_id INT AUTO_INCREMENT PRIMARY KEY, level_id INT NOT NULL, name VARCHAR(100), " +
+                "description VARCHAR(500), puzzle_type VARCHAR(20), data VARCHAR(1000), solution VARCHAR(255), time_limit INT)",
+            "CREATE INDEX idx_puzzles_level ON puzzles (level_id)",
+            "CREATE TABLE player_progress (player_id INT NOT NULL, level_id INT NOT NULL, completed BOOLEAN, " +
+                "completion_date TIMESTAMP, stars INT, score INT, PRIMARY KEY (player_id, level_id))"
+        };
+        
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : ddl) {
+                statement.execute(sql);
+            }
+        }
+    }
+    
+    private void seedPlayers(Connection connection) throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO players (username, password, email, registration_date) VALUES (?, ?, ?, ?)")) {
+            for (int i = 1; i <= players; i++) {
+                statement.setString(1, username(i));
+                statement.setString(2, username(i));
+                statement.setString(3, username(i) + "@example.com");
+                statement.setTimestamp(4, now);
+                addBatch(connection, statement, i);
+            }
+            statement.executeBatch();
+        }
+    }
+    
+    private void seedLeaderboards(Connection connection, Random random) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO leaderboards (level_id, category, name) VALUES (NULL, ?, ?)")) {
+            for (int i = 1; i <= leaderboards; i++) {
+                statement.setString(1, "category" + i);
+                statement.setString(2, "Класация " + i);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        
+        // Различни играчи във всяка класация
+        int perBoard = leaderboardEntries / leaderboards;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO leaderboard_entries (leaderboard_id, player_id, score, date) VALUES (?, ?, ?, ?)")) {
+            int count = 0;
+            for (int board = 1; board <= leaderboards; board++) {
+                int offset = random.nextInt(players);
+                for (int i = 0; i < perBoard; i++) {
+                    statement.setInt(1, board);
+                    statement.setInt(2, (offset + i) % players + 1);
+                    statement.setInt(3, random.nextInt(100_000));
+                    statement.setTimestamp(4, now);
+                    addBatch(connection, statement, ++count);
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+    
+    private void seedQuizzes(Connection connection, Random random) throws SQLException {
+        try (PreparedStatement questionStatement = connection.prepareStatement(
+                 "INSERT INTO questions (category_id, text, difficulty) VALUES (?, ?, ?)");
+             PreparedStatement answerStatement = connection.prepareStatement(
+                 "INSERT INTO answers (question_id, text, is_correct) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= questions; i++) {
+                questionStatement.setInt(1, random.nextInt(20) + 1);
+                questionStatement.setString(2, "Въпрос " + i);
+                questionStatement.setString(3, DIFFICULTIES[random.nextInt(DIFFICULTIES.length)]);
+                addBatch(connection, questionStatement, i);
+                
+                int correct = random.nextInt(4);
+                for (int a = 0; a < 4; a++) {
+                    answerStatement.setInt(1, i);
+                    answerStatement.setString(2, "Отговор " + i + "." + a);
+                    answerStatement.setBoolean(3, a == correct);
+                    answerStatement.addBatch();
+                }
+                if (i % BATCH_SIZE == 0) {
+                    answerStatement.executeBatch();
+                }
+            }
+            questionStatement.executeBatch();
+            answerStatement.executeBatch();
+        }
+        
+        int quizzes = getQuizzes();
+        try (PreparedStatement quizStatement = connection.prepareStatement(
+                 "INSERT INTO quizzes (level_id, name, description, time_limit) VALUES (?, ?, ?, ?)");
+             PreparedStatement linkStatement = connection.prepareStatement(
+                 "INSERT INTO quiz_questions (quiz_id, question_id, question_order) VALUES (?, ?, ?)")) {
+            for (int quiz = 1; quiz <= quizzes; quiz++) {
+                quizStatement.setInt(1, (quiz - 1) % levels + 1);
+                quizStatement.setString(2, "Куиз " + quiz);
+                quizStatement.setString(3, "Описание " + quiz);
+                quizStatement.setInt(4, 300);
+                quizStatement.addBatch();
+                
+                for (int order = 1; order <= questionsPerQuiz; order++) {
+                    linkStatement.setInt(1, quiz);
+                    linkStatement.setInt(2, (quiz - 1) * questionsPerQuiz + order);
+                    linkStatement.setInt(3, order);
+                    linkStatement.addBatch();
+                }
+            }
+            quizStatement.executeBatch();
+            linkStatement.executeBatch();
+        }
+    }
+    
+    private void seedCards(Connection connection, Random random) throws SQLException {
+        try (PreparedStatement cardStatement = connection.prepareStatement(
+                 "INSERT INTO cards (name, description, category_id, rarity, image_path) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement abilityStatement = connection.prepareStatement(
+                 "INSERT INTO abilities (card_id, name, description, effect_type, effect_value) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= cards; i++) {
+                // По-редките карти са по-малко
+                int rarity = Math.min(RARITIES.length - 1, (int) (random.nextDouble() * random.nextDouble() * RARITIES.length));
+                cardStatement.setString(1, "Карта " + i);
+                cardStatement.setString(2, "Описание " + i);
+                cardStatement.setInt(3, random.nextInt(10) + 1);
+                cardStatement.setString(4, RARITIES[rarity]);
+                cardStatement.setString(5, "cards/" + i + ".png");
+                cardStatement.addBatch();
+                
+                for (int a = 1; a <= 2; a++) {
+                    abilityStatement.setInt(1, i);
+                    abilityStatement.setString(2, "Умение " + i + "." + a);
+                    abilityStatement.setString(3, "Описание");
+                    abilityStatement.setString(4, a == 1 ? "attack" : "heal");
+                    abilityStatement.setInt(5, random.nextInt(50) + 1);
+                    abilityStatement.addBatch();
+                }
+            }
+            cardStatement.executeBatch();
+            abilityStatement.executeBatch();
+        }
+        
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO player_cards (player_id, card_id, quantity, acquisition_date) VALUES (?, ?, ?, ?)")) {
+            int count = 0;
+            for (int player = 1; player <= collectors; player++) {
+                int offset = random.nextInt(cards);
+                for (int i = 0; i < cardsPerCollector; i++) {
+                    statement.setInt(1, player);
+                    statement.setInt(2, (offset + i) % cards + 1);
+                    statement.setInt(3, random.nextInt(3) + 1);
+                    statement.setTimestamp(4, now);
+                    addBatch(connection, statement, ++count);
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+    
+    private void seedLevels(Connection connection) throws SQLException {
+        try (PreparedStatement levelStatement = connection.prepareStatement(
+                 "INSERT INTO levels (name, description, difficulty, unlock_requirement, background_path) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement puzzleStatement = connection.prepareStatement(
+                 "INSERT INTO puzzles (level_id, name, description, puzzle_type, data, solution, time_limit) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= levels; i++) {
+                levelStatement.setString(1, "Ниво " + i);
+                levelStatement.setString(2, "Описание " + i);
+                levelStatement.setString(3, DIFFICULTIES[(i - 1) * DIFFICULTIES.length / levels]);
+                levelStatement.setString(4, i == 1 ? null : "level:" + (i - 1));
+                levelStatement.setString(5, "levels/" + i + ".png");
+                levelStatement.addBatch();
+                
+                for (int p = 1; p <= 5; p++) {
+                    puzzleStatement.setInt(1, i);
+                    puzzleStatement.setString(2, "Пъзел " + i + "." + p);
+                    puzzleStatement.setString(3, "Описание");
+                    puzzleStatement.setString(4, "riddle");
+                    puzzleStatement.setString(5, "{}");
+                    puzzleStatement.setString(6, "answer");
+                    puzzleStatement.setInt(7, 120);
+                    puzzleStatement.addBatch();
+                }
+            }
+            levelStatement.executeBatch();
+            puzzleStatement.executeBatch();
+        }
+    }
+    
+    private static void addBatch(Connection connection, PreparedStatement statement, int count) throws SQLException {
+        statement.addBatch();
+        if (count % BATCH_SIZE == 0) {
+            statement.executeBatch();
+            connection.commit();
+        }
+    }
+}
\ No newline at end of file
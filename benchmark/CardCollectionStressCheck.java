@@ -0,0 +1,117 @@
+package com.knowledgeheroes.benchmark;
+
+import com.knowledgeheroes.config.ConnectionPool;
+import com.knowledgeheroes.dao.CardDAO;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Паралелна проверка на добавянето и премахването на карти от колекция.
+ * 
+ * Няколко нишки едновременно добавят и премахват едни и същи карти на малко
+ * играчи срещу вградената база данни. Накрая количеството на всяка карта
+ * трябва да е началното плюс успешните добавяния минус успешните премахвания,
+ * без записи с количество 0 или по-малко. Завършва с код 1 при разминаване.
+ */
+public class CardCollectionStressCheck {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+    private static final int PLAYERS = 4;
+    private static final int CARDS = 2;
+    
+    public static void main(String[] args) throws Exception {
+        BenchmarkDatabase database = new BenchmarkDatabase(1_000, 1_000, 100);
+        database.create(7);
+        
+        ConnectionPool pool = BenchmarkDatabase.installPool(THREADS, null);
+        List<String> failures;
+        try {
+            failures = run();
+        } finally {
+            pool.close();
+            BenchmarkDatabase.drop();
+        }
+        
+        if (!failures.isEmpty()) {
+            System.err.println("Разминавания в колекциите: " + failures);
+            System.exit(1);
+        }
+        System.out.println("Колекциите са непротиворечиви след " + THREADS * OPERATIONS_PER_THREAD + " операции");
+    }
+    
+    private static List<String> run() throws Exception {
+        CardDAO cardDAO = new CardDAO();
+        int[] initial = new int[PLAYERS * CARDS];
+        for (int i = 0; i < initial.length; i++) {
+            initial[i] = cardDAO.getCardQuantity(playerOf(i), cardOf(i));
+        }
+        
+        AtomicIntegerArray added = new AtomicIntegerArray(initial.length);
+        AtomicIntegerArray removed = new AtomicIntegerArray(initial.length);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int n = 0; n < OPERATIONS_PER_THREAD; n++) {
+                    int i = random.nextInt(initial.length);
+                    // Малко повече премахвания, за да се стига често до количество 0
+                    if (random.nextInt(100) < 45) {
+                        if (cardDAO.addCardToPlayerCollection(playerOf(i), cardOf(i))) {
+                            added.incrementAndGet(i);
+                        }
+                    } else if (cardDAO.removeCardFromPlayerCollection(playerOf(i), cardOf(i))) {
+                        removed.incrementAndGet(i);
+                    }
+                }
+            }, "card-stress-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < initial.length; i++) {
+            int expected = initial[i] + added.get(i) - removed.get(i);
+            int actual = cardDAO.getCardQuantity(playerOf(i), cardOf(i));
+            System.out.printf("играч %d, карта %d: %d + %d - %d = %d, в базата %d%n", playerOf(i), cardOf(i),
+                              initial[i], added.get(i), removed.get(i), expected, actual);
+            if (expected != actual) {
+                failures.add("играч " + playerOf(i) + ", карта " + cardOf(i));
+            }
+        }
+        
+        try (Connection connection = ConnectionPool.getInstance().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM player_cards WHERE quantity <= 0")) {
+            resultSet.next();
+            if (resultSet.getInt(1) > 0) {
+                failures.add(resultSet.getInt(1) + " записа с количество <= 0");
+            }
+        }
+        return failures;
+    }
+    
+    private static int playerOf(int index) {
+        return index / CARDS + 1;
+    }
+    
+    private static int cardOf(int index) {
+        return index % CARDS + 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.knowledgeheroes.benchmark;
+
+import com.knowledgeheroes.config.ConnectionPool;
+import com.knowledgeheroes.dao.CardDAO;
+import com.knowledgeheroes.dao.LeaderboardDAO;
+import com.knowledgeheroes.dao.LevelDAO;
+import com.knowledgeheroes.dao.PlayerDAO;
+import com.knowledgeheroes.dao.QuizDAO;
+import com.knowledgeheroes.model.Card;
+import com.knowledgeheroes.model.LeaderboardEntry;
+import com.knowledgeheroes.model.Quiz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH бенчмаркове на основните операции на DAO класовете срещу вградена база данни.
+ * 
+ * Изисква на classpath: JMH (jmh-core и jmh-generator-annprocess) и H2.
+ * Обемите на данните се задават със системните свойства knowledgeheroes.bench.*
+ * (вижте BenchmarkDatabase), а размерът на пула - с knowledgeheroes.bench.poolSize.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DaoBenchmark {
+    private BenchmarkDatabase database;
+    private ConnectionPool pool;
+    
+    private final PlayerDAO playerDAO = new PlayerDAO();
+    private final QuizDAO quizDAO = new QuizDAO();
+    private final CardDAO cardDAO = new CardDAO();
+    private final LevelDAO levelDAO = new LevelDAO();
+    private final LeaderboardDAO leaderboardDAO = new LeaderboardDAO();
+    
+    @Setup
+    public void setUp() throws SQLException {
+        database = new BenchmarkDatabase();
+        database.create(42);
+        pool = BenchmarkDatabase.installPool(Integer.getInteger("knowledgeheroes.bench.poolSize", 16), null);
+    }
+    
+    @TearDown
+    public void tearDown() throws SQLException {
+        pool.close();
+        BenchmarkDatabase.drop();
+    }
+    
+    @Benchmark
+    public List<LeaderboardEntry> getLeaderboardEntries() {
+        return leaderboardDAO.getLeaderboardEntries(random(database.getLeaderboards()));
+    }
+    
+    @Benchmark
+    public Quiz getQuizById() {
+        return quizDAO.getQuizById(random(database.getQuizzes()));
+    }
+    
+    @Benchmark
+    public Quiz getQuizByIdUncached() {
+        // Всяко извикване зарежда куиза от базата данни
+        QuizDAO.getCache().clear();
+        return quizDAO.getQuizById(random(database.getQuizzes()));
+    }
+    
+    @Benchmark
+    public List<Card> getPlayerCards() {
+        return cardDAO.getPlayerCards(random(database.getCollectors()));
+    }
+    
+    @Benchmark
+    public boolean savePlayerProgress() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return levelDAO.savePlayerProgress(random(database.getPlayers()), random(database.getLevels()),
+                                           random.nextBoolean(), random.nextInt(4), random.nextInt(10_000));
+    }
+    
+    @Benchmark
+    public boolean authenticate() {
+        String username = BenchmarkDatabase.username(random(database.getPlayers()));
+        return playerDAO.authenticate(username, username);
+    }
+    
+    @Benchmark
+    public boolean updateOrAddLeaderboardEntry() {
+        return leaderboardDAO.updateOrAddLeaderboardEntry(random(database.getLeaderboards()),
+                                                          random(database.getPlayers()),
+                                                          ThreadLocalRandom.current().nextInt(100_000));
+    }
+    
+    /**
+     * Случайно ID между 1 и max
+     */
+    private static int random(int max) {
+        return ThreadLocalRandom.current().nextInt(max) + 1;
+    }
+}
\ No newline at end of file
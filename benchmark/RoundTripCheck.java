@@ -0,0 +1,130 @@
+package com.knowledgeheroes.benchmark;
+
+import com.knowledgeheroes.config.ConnectionPool;
+import com.knowledgeheroes.dao.CardDAO;
+import com.knowledgeheroes.dao.LeaderboardDAO;
+import com.knowledgeheroes.dao.LevelDAO;
+import com.knowledgeheroes.dao.PlayerDAO;
+import com.knowledgeheroes.dao.QuizDAO;
+import com.knowledgeheroes.model.Leaderboard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Проверка на броя обръщения към базата данни за една логическа операция.
+ * 
+ * Пуска всяка операция веднъж срещу вградената база данни и сравнява броя
+ * изпълнени заявки с очаквания максимум. Операциите, които четат цяла класация,
+ * се пускат и върху малка, и върху голяма класация и трябва да правят еднакъв
+ * брой обръщения. Завършва с код 1, ако някоя операция прави повече обръщения
+ * от очакваното или броят им зависи от размера на класацията.
+ */
+public class RoundTripCheck {
+    private final RoundTripCounter counter = new RoundTripCounter();
+    private final List<String> failures = new ArrayList<>();
+    
+    public static void main(String[] args) throws Exception {
+        BenchmarkDatabase database = new BenchmarkDatabase(10_000, 10_000, 1_000);
+        database.create(42);
+        
+        RoundTripCheck check = new RoundTripCheck();
+        ConnectionPool pool = BenchmarkDatabase.installPool(4, check.counter);
+        try {
+            check.run();
+        } finally {
+            pool.close();
+            BenchmarkDatabase.drop();
+        }
+        
+        if (!check.failures.isEmpty()) {
+            System.err.println("Операции с неочакван брой обръщения: " + check.failures);
+            System.exit(1);
+        }
+    }
+    
+    private void run() {
+        PlayerDAO playerDAO = new PlayerDAO();
+        QuizDAO quizDAO = new QuizDAO();
+        CardDAO cardDAO = new CardDAO();
+        LevelDAO levelDAO = new LevelDAO();
+        LeaderboardDAO leaderboardDAO = new LeaderboardDAO();
+        
+        // Нов запис и повторно преминаване: и двете са една заявка
+        expect("savePlayerProgress (нов запис)", 1, () -> levelDAO.savePlayerProgress(1, 1, true, 2, 500));
+        expect("savePlayerProgress (съществуващ запис)", 1, () -> levelDAO.savePlayerProgress(1, 1, true, 3, 400));
+        
+        expect("getQuizById (извън кеша)", 1, () -> quizDAO.getQuizById(1));
+        expect("getQuizById (от кеша)", 0, () -> quizDAO.getQuizById(1));
+        
+        expect("getAllLevels с пъзели", 2, () -> levelDAO.getAllLevels());
+        expect("getAllLevels без пъзели", 1, () -> levelDAO.getAllLevels(false));
+        levelDAO.getUnlockGraph();
+        expect("getUnlockedLevelIds", 1, () -> levelDAO.getUnlockedLevelIds(1));
+        
+        cardDAO.getCatalog();
+        expect("getPlayerCards", 1, () -> cardDAO.getPlayerCards(1));
+        expect("grantCards (5 карти)", 1, () -> cardDAO.grantCards(2, 1, 2, 2, 3, 4));
+        expect("addCardToPlayerCollection", 1, () -> cardDAO.addCardToPlayerCollection(3, 1));
+        
+        expect("authenticate", 1, () -> playerDAO.authenticate(BenchmarkDatabase.username(1), BenchmarkDatabase.username(1)));
+        
+        // Голямата класация е от началните данни, малката се създава тук
+        Leaderboard small = new Leaderboard("round-trip-check", "Малка класация");
+        leaderboardDAO.createLeaderboard(small);
+        for (int playerId = 1; playerId <= 3; playerId++) {
+            leaderboardDAO.addLeaderboardEntry(small.getLeaderboardId(), playerId, playerId * 100);
+        }
+        int large = 1;
+        expectSameForSizes("getLeaderboardEntries", 1,
+                           () -> leaderboardDAO.getLeaderboardEntries(small.getLeaderboardId()),
+                           () -> leaderboardDAO.getLeaderboardEntries(large));
+        expectSameForSizes("getLeaderboardById", 1,
+                           () -> leaderboardDAO.getLeaderboardById(small.getLeaderboardId()),
+                           () -> leaderboardDAO.getLeaderboardById(large));
+        
+        leaderboardDAO.loadRankings();
+        expect("getTopEntries (от класацията в паметта)", 0, () -> leaderboardDAO.getTopEntries(1, 10));
+        expect("updateOrAddLeaderboardEntry", -1, () -> leaderboardDAO.updateOrAddLeaderboardEntry(1, 5, 99_999));
+    }
+    
+    /**
+     * Изпълнява операция и проверява броя обръщения
+     * 
+     * @param name име на операцията
+     * @param expectedMax очакван максимален брой обръщения или -1 само за отчет
+     * @param operation операцията
+     * @return броят обръщения
+     */
+    private long expect(String name, int expectedMax, Runnable operation) {
+        counter.reset();
+        operation.run();
+        long roundTrips = counter.get();
+        
+        boolean ok = expectedMax < 0 || roundTrips <= expectedMax;
+        System.out.printf("%-45s %3d обръщения%s%n", name, roundTrips,
+                          expectedMax < 0 ? "" : " (очаквани <= " + expectedMax + ")" + (ok ? "" : " ГРЕШКА"));
+        if (!ok) {
+            failures.add(name);
+        }
+        return roundTrips;
+    }
+    
+    /**
+     * Изпълнява операция върху малка и голяма класация и проверява, че броят
+     * обръщения не зависи от размера
+     * 
+     * @param name име на операцията
+     * @param expectedMax очакван максимален брой обръщения
+     * @param onSmall операцията върху малката класация
+     * @param onLarge операцията върху голямата класация
+     */
+    private void expectSameForSizes(String name, int expectedMax, Runnable onSmall, Runnable onLarge) {
+        long small = expect(name + " (малка класация)", expectedMax, onSmall);
+        long large = expect(name + " (голяма класация)", expectedMax, onLarge);
+        if (small != large) {
+            System.out.printf("%-45s %d != %d ГРЕШКА%n", name + " (зависи от размера)", small, large);
+            failures.add(name + " (зависи от размера)");
+        }
+    }
+}
\ No newline at end of file
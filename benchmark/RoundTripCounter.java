@@ -0,0 +1,101 @@
+package com.knowledgeheroes.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Брояч на обръщенията към базата данни.
+ * 
+ * Обвива физическите връзки така, че всяко изпълнение на заявка (execute*,
+ * включително executeBatch) се брои като едно обръщение. Управлението на
+ * транзакции през връзката (commit, rollback, setAutoCommit) също изпраща
+ * команда към сървъра и се брои по същия начин.
+ */
+public class RoundTripCounter {
+    // Методи на връзката, които изпращат команда към сървъра
+    private static final Set<String> CONNECTION_ROUND_TRIPS = Set.of("commit", "rollback", "setAutoCommit");
+    
+    private final AtomicLong roundTrips = new AtomicLong();
+    
+    /**
+     * Обвива връзка, така че заявките през нея да се броят
+     * 
+     * @param connection физическа връзка
+     * @return обвита връзка
+     */
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+    }
+    
+    /**
+     * Връща броя обръщения от последното нулиране
+     * 
+     * @return брой обръщения
+     */
+    public long get() {
+        return roundTrips.get();
+    }
+    
+    /**
+     * Нулира брояча
+     */
+    public void reset() {
+        roundTrips.set(0);
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+        
+        private ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (CONNECTION_ROUND_TRIPS.contains(method.getName())) {
+                roundTrips.incrementAndGet();
+            }
+            Object result = RoundTripCounter.invoke(connection, method, args);
+            if (result instanceof Statement) {
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                        new StatementHandler((Statement) result));
+            }
+            return result;
+        }
+    }
+    
+    private class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        
+        private StatementHandler(Statement statement) {
+            this.statement = statement;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().startsWith("execute")) {
+                roundTrips.incrementAndGet();
+            }
+            return RoundTripCounter.invoke(statement, method, args);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.knowledgeheroes.config;
+
+import com.knowledgeheroes.benchmark.BenchmarkDatabase;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Заместител на DatabaseConfig за бенчмарковете, когато истинският клас не е
+ * в дървото. Свързва се с вградената база данни на BenchmarkDatabase; включва
+ * се от профила standin-database-config в benchmark/pom.xml.
+ */
+public class DatabaseConfig {
+    private DatabaseConfig() {
+    }
+    
+    /**
+     * Създава нова връзка към вградената база данни
+     * 
+     * @return нова връзка
+     * @throws SQLException при грешка при свързване
+     */
+    public static Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(BenchmarkDatabase.URL, "sa", "");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+-- Създава таблицата с резултатите по времеви прозорци (дневни, седмични,
+-- сезонни), която използват LeaderboardDAO.submitWindowScore, методите
+-- getWindow* и getPeriodTopEntries и expireWindowPeriods.
+--
+-- Изпълнява се веднъж при обновяване на схемата, преди да се пусне новата версия
+-- на приложението. Всеки играч има по един ред за всеки период; новият период
+-- започва просто с нов period_start, а старите редове се изтриват от
+-- expireWindowPeriods по индекса idx_period_expiry.
+
+CREATE TABLE IF NOT EXISTS leaderboard_period_entries (
+    leaderboard_id INT NOT NULL,
+    window_type VARCHAR(16) NOT NULL,
+    period_start DATE NOT NULL,
+    player_id INT NOT NULL,
+    score INT NOT NULL,
+    date DATETIME NOT NULL,
+    PRIMARY KEY (leaderboard_id, window_type, period_start, player_id),
+    INDEX idx_period_score (leaderboard_id, window_type, period_start, score),
+    INDEX idx_period_expiry (window_type, period_start)
+);
@@ -0,0 +1,19 @@
+-- Въвежда уникалния ключ (leaderboard_id, player_id) в leaderboard_entries,
+-- който изискват LeaderboardDAO.addLeaderboardEntry, updateOrAddLeaderboardEntry
+-- и submitScore.
+--
+-- Изпълнява се веднъж при обновяване на схемата, преди да се пусне новата версия
+-- на приложението. Повтарящите се записи на играч в класация се изтриват, като
+-- остава този с най-добър резултат (при равен резултат - най-ранният).
+
+-- Вложената производна таблица позволява на MySQL да изтрива от таблицата, която чете
+DELETE FROM leaderboard_entries WHERE entry_id IN (
+    SELECT entry_id FROM (
+        SELECT e.entry_id FROM leaderboard_entries e
+        JOIN leaderboard_entries b ON b.leaderboard_id = e.leaderboard_id AND b.player_id = e.player_id
+            AND (b.score > e.score OR (b.score = e.score AND b.entry_id < e.entry_id))
+    ) duplicates
+);
+
+ALTER TABLE leaderboard_entries
+    ADD CONSTRAINT uk_leaderboard_player UNIQUE (leaderboard_id, player_id);
@@ -0,0 +1,31 @@
+-- Въвежда уникалния ключ (player_id, card_id) в player_cards, който изискват
+-- CardDAO.addCardToPlayerCollection и grantCards.
+--
+-- Изпълнява се веднъж при обновяване на схемата, преди да се пусне новата версия
+-- на приложението. Повтарящите се редове на карта в колекцията на играч се
+-- обединяват в един, като количествата им се събират, а датата на придобиване
+-- е най-ранната.
+
+CREATE TEMPORARY TABLE player_cards_merged AS
+    SELECT player_id, card_id, SUM(quantity) AS quantity, MIN(acquisition_date) AS acquisition_date
+    FROM player_cards
+    GROUP BY player_id, card_id
+    HAVING COUNT(*) > 1;
+
+START TRANSACTION;
+
+DELETE FROM player_cards WHERE (player_id, card_id) IN (
+    SELECT player_id, card_id FROM player_cards_merged
+);
+
+-- Редове без останали карти не се връщат, както при removeCardFromPlayerCollection
+INSERT INTO player_cards (player_id, card_id, quantity, acquisition_date)
+    SELECT player_id, card_id, quantity, acquisition_date FROM player_cards_merged
+    WHERE quantity > 0;
+
+COMMIT;
+
+DROP TEMPORARY TABLE player_cards_merged;
+
+ALTER TABLE player_cards
+    ADD CONSTRAINT uk_player_card UNIQUE (player_id, card_id);
@@ -0,0 +1,30 @@
+-- Въвежда уникалния ключ (player_id, level_id) в player_progress, който изисква
+-- LevelDAO.savePlayerProgress.
+--
+-- Изпълнява се веднъж при обновяване на схемата, преди да се пусне новата версия
+-- на приложението. Повтарящите се редове за ниво на играч се обединяват в един,
+-- както би ги обединил savePlayerProgress: най-добрите звезди и резултат, нивото
+-- е завършено, ако е завършено в някой от редовете, с най-ранната дата на завършване.
+
+CREATE TEMPORARY TABLE player_progress_merged AS
+    SELECT player_id, level_id, MAX(completed) AS completed, MIN(completion_date) AS completion_date,
+           MAX(stars) AS stars, MAX(score) AS score
+    FROM player_progress
+    GROUP BY player_id, level_id
+    HAVING COUNT(*) > 1;
+
+START TRANSACTION;
+
+DELETE FROM player_progress WHERE (player_id, level_id) IN (
+    SELECT player_id, level_id FROM player_progress_merged
+);
+
+INSERT INTO player_progress (player_id, level_id, completed, completion_date, stars, score)
+    SELECT player_id, level_id, completed, completion_date, stars, score FROM player_progress_merged;
+
+COMMIT;
+
+DROP TEMPORARY TABLE player_progress_merged;
+
+ALTER TABLE player_progress
+    ADD CONSTRAINT uk_player_level UNIQUE (player_id, level_id);